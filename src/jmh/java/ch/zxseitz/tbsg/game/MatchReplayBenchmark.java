@@ -0,0 +1,81 @@
+package ch.zxseitz.tbsg.game;
+
+import ch.zxseitz.tbsg.game.othello.Board;
+import ch.zxseitz.tbsg.game.othello.BoardSnapshot;
+import org.bson.types.ObjectId;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.ArrayList;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * In memory part of the match recovery: restoring a match from its snapshot and replaying the logged turns
+ * after it, the turns per second are the score times the tail length.
+ * <p>
+ * On JDK 11.0.21 with a single vCPU, one fork of 5 x 1 s after 3 x 1 s warmup, about 8.5 to 10.8 million
+ * replayed turns per second:
+ * <pre>
+ * Benchmark  (tail)   Mode  Cnt       Score        Error  Units
+ * replay         16  thrpt    5  528766.754 ± 112338.655  ops/s
+ * replay         60  thrpt    5  179653.789 ±  64132.016  ops/s
+ * </pre>
+ * The mongo side of appending and recovering is measured by MatchLogLoadTest against a real database.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class MatchReplayBenchmark {
+    @Param({"16", "60"})
+    public int tail;
+
+    private ObjectId[] ids;
+    private BoardSnapshot snapshot;
+    private int snapshotTurn;
+    private int snapshotCurrent;
+    private int[] players;
+    private int[] moves;
+
+    @Setup
+    public void setup() {
+        ids = new ObjectId[]{ObjectId.get(), ObjectId.get(), ObjectId.get()};
+        // record a random game and keep the last tail turns
+        var random = new Random(42);
+        var match = new Match(ids[0], ids[1], ids[2]);
+        var recordedPlayers = new ArrayList<Integer>();
+        var recordedMoves = new ArrayList<Integer>();
+        var snapshots = new ArrayList<BoardSnapshot>();
+        var currents = new ArrayList<Integer>();
+        while (!match.isFinished()) {
+            snapshots.add(match.getBoard().snapshot());
+            currents.add(match.getCurrent());
+            var current = match.getCurrent();
+            var legal = match.getBoard().legalMoves(current);
+            var move = Board.PASS;
+            if (legal != 0) {
+                for (var skip = random.nextInt(Long.bitCount(legal)); skip > 0; skip--) {
+                    legal &= legal - 1;
+                }
+                move = Long.numberOfTrailingZeros(legal);
+            }
+            recordedPlayers.add(current);
+            recordedMoves.add(move);
+            match.apply(current, match.getTurn(), move);
+        }
+        var length = Math.min(tail, recordedMoves.size());
+        snapshotTurn = recordedMoves.size() - length;
+        snapshot = snapshots.get(snapshotTurn);
+        snapshotCurrent = currents.get(snapshotTurn);
+        players = recordedPlayers.subList(snapshotTurn, recordedMoves.size()).stream().mapToInt(i -> i).toArray();
+        moves = recordedMoves.subList(snapshotTurn, recordedMoves.size()).stream().mapToInt(i -> i).toArray();
+    }
+
+    @Benchmark
+    public Match replay() {
+        var match = new Match(ids[0], ids[1], ids[2], snapshot, snapshotTurn, snapshotCurrent, false);
+        for (var i = 0; i < moves.length; i++) {
+            match.apply(players[i], snapshotTurn + i, moves[i]);
+        }
+        return match;
+    }
+}
@@ -0,0 +1,81 @@
+package ch.zxseitz.tbsg.game.othello;
+
+import ch.zxseitz.tbsg.game.Match;
+import ch.zxseitz.tbsg.game.MoveResult;
+import org.bson.types.ObjectId;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Moves per second of random games, on the bare board and through {@link Match#apply(int, int, int)} with its
+ * validation. State is per thread, so running with -t N gives the scaling over N cores.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class BoardBenchmark {
+    private Board board;
+    private int player;
+    private boolean passed;
+    private Match match;
+    private long seed;
+
+    @Setup
+    public void setup() {
+        board = Board.initial();
+        player = 0;
+        passed = false;
+        match = newMatch();
+        seed = System.nanoTime() | 1;
+    }
+
+    @Benchmark
+    public long legalMoves() {
+        return board.legalMoves(player);
+    }
+
+    @Benchmark
+    public long boardMove() {
+        var moves = board.legalMoves(player);
+        if (moves == 0) {
+            if (passed) {
+                board = Board.initial();
+                player = 0;
+                passed = false;
+                return 0;
+            }
+            passed = true;
+            player = 1 - player;
+            return 0;
+        }
+        passed = false;
+        var flips = board.apply(player, pick(moves));
+        player = 1 - player;
+        return flips;
+    }
+
+    @Benchmark
+    public MoveResult matchMove() {
+        if (match.isFinished()) {
+            match = newMatch();
+        }
+        var current = match.getCurrent();
+        var moves = match.getBoard().legalMoves(current);
+        return match.apply(current, match.getTurn(), moves == 0 ? Board.PASS : pick(moves));
+    }
+
+    private int pick(long moves) {
+        // xorshift, then the first legal move at or after a random square
+        seed ^= seed << 13;
+        seed ^= seed >>> 7;
+        seed ^= seed << 17;
+        var offset = (int) (seed >>> 58);
+        var rotated = Long.rotateRight(moves, offset);
+        return (Long.numberOfTrailingZeros(rotated) + offset) & (Board.SQUARES - 1);
+    }
+
+    private static Match newMatch() {
+        return new Match(ObjectId.get(), ObjectId.get(), ObjectId.get());
+    }
+}
@@ -0,0 +1,90 @@
+package ch.zxseitz.tbsg.json;
+
+import ch.zxseitz.tbsg.model.Role;
+import ch.zxseitz.tbsg.model.User;
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.TypeAdapter;
+import org.bson.types.ObjectId;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Serialization of a user with the field strategies: a new gson per use, a shared gson and the cached
+ * adapters of the {@link SerializerRegistry}.
+ * <p>
+ * Baseline, one fork of 5 x 1 s after 3 x 1 s warmup on JDK 11.0.21 and a single vCPU:
+ * <pre>
+ * Benchmark            Mode  Cnt       Score       Error  Units
+ * blacklistNewGson     avgt    5  116862.309 ± 43273.160  ns/op
+ * blacklistRegistry    avgt    5    1171.890 ±   315.424  ns/op
+ * blacklistSharedGson  avgt    5    1439.913 ±   739.449  ns/op
+ * whitelistNewGson     avgt    5   79901.623 ± 29497.553  ns/op
+ * whitelistRegistry    avgt    5     704.521 ±   464.518  ns/op
+ * whitelistSharedGson  avgt    5     942.811 ±    45.447  ns/op
+ * </pre>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class UserSerializationBenchmark {
+    private User user;
+    private Gson whitelistGson;
+    private Gson blacklistGson;
+    private TypeAdapter<User> whitelistAdapter;
+    private TypeAdapter<User> blacklistAdapter;
+
+    @Setup
+    public void setup() {
+        user = new User(ObjectId.get(), "benchmark", "benchmark@zxseitz.ch", "hash", List.of(Role.User, Role.Admin));
+        whitelistGson = gson(new FieldWhitelistStrategy("id", "username", "roles"));
+        blacklistGson = gson(new FieldBlacklistStrategy("password"));
+        var registry = new SerializerRegistry();
+        whitelistAdapter = registry.getAdapter(User.class, new FieldWhitelistStrategy("id", "username", "roles"));
+        blacklistAdapter = registry.getAdapter(User.class, new FieldBlacklistStrategy("password"));
+    }
+
+    @Benchmark
+    public String whitelistNewGson() {
+        return gson(new FieldWhitelistStrategy("id", "username", "roles")).toJson(user);
+    }
+
+    @Benchmark
+    public String blacklistNewGson() {
+        return gson(new FieldBlacklistStrategy("password")).toJson(user);
+    }
+
+    @Benchmark
+    public String whitelistSharedGson() {
+        return whitelistGson.toJson(user);
+    }
+
+    @Benchmark
+    public String blacklistSharedGson() {
+        return blacklistGson.toJson(user);
+    }
+
+    @Benchmark
+    public String whitelistRegistry() {
+        return whitelistAdapter.toJson(user);
+    }
+
+    @Benchmark
+    public String blacklistRegistry() {
+        return blacklistAdapter.toJson(user);
+    }
+
+    private static Gson gson(FieldWhitelistStrategy strategy) {
+        return builder().setExclusionStrategies(strategy).create();
+    }
+
+    private static Gson gson(FieldBlacklistStrategy strategy) {
+        return builder().setExclusionStrategies(strategy).create();
+    }
+
+    private static GsonBuilder builder() {
+        return new GsonBuilder().registerTypeAdapter(ObjectId.class, new ObjectIdAdapter());
+    }
+}
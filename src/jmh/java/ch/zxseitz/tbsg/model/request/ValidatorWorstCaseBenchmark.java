@@ -0,0 +1,58 @@
+package ch.zxseitz.tbsg.model.request;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Long rejected inputs, each built to make the reference patterns backtrack: a host without a dot, a local part
+ * of many atoms without a domain and an unterminated address literal.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class ValidatorWorstCaseBenchmark {
+    @Param({"64", "1024", "16384"})
+    public int length;
+
+    @Param({"host", "atoms", "literal"})
+    public String shape;
+
+    private String email;
+    private String password;
+
+    @Setup
+    public void setup() {
+        switch (shape) {
+            case "host":
+                email = "a@" + "a".repeat(length);
+                break;
+            case "atoms":
+                email = "a.".repeat(length / 2) + "@";
+                break;
+            default:
+                email = "a@[1.2.3.a:" + "\\".repeat(length);
+        }
+        password = "a1".repeat(length / 2);
+    }
+
+    @Benchmark
+    public boolean emailRegex() {
+        return Validator.emailRegex.matcher(email).matches();
+    }
+
+    @Benchmark
+    public boolean checkEmail() {
+        return Validator.checkEmail(email);
+    }
+
+    @Benchmark
+    public boolean passwordRegex() {
+        return Validator.passwordRegex.matcher(password).matches();
+    }
+
+    @Benchmark
+    public boolean checkPassword() {
+        return Validator.checkPassword(password);
+    }
+}
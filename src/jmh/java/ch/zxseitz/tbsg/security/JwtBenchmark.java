@@ -0,0 +1,61 @@
+package ch.zxseitz.tbsg.security;
+
+import ch.zxseitz.tbsg.model.Role;
+import ch.zxseitz.tbsg.model.User;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.bson.types.ObjectId;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Signing a jwt and verifying it with and without the verified token cache.
+ * <p>
+ * Baseline, two forks of 10 x 1 s after 5 x 1 s warmup on JDK 11.0.21 and a single vCPU. The uncached
+ * verification allocates enough for gc pauses to dominate its error on one core:
+ * <pre>
+ * Benchmark          Mode  Cnt      Score       Error  Units
+ * createJwt          avgt   20   3852.972 ±   497.067  ns/op
+ * verifyJwtCached    avgt   20    167.344 ±     8.340  ns/op
+ * verifyJwtUncached  avgt   20  19806.717 ± 12072.168  ns/op
+ * </pre>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class JwtBenchmark {
+    // base64 encoded, as expected by jjwt
+    static final String SECRET = "c2VjcmV0LWtleS1mb3ItYmVuY2htYXJrcy1vbmx5LTEyMzQ1Njc4";
+
+    private User user;
+    private JwtUtils cachedJwtUtils;
+    private JwtUtils uncachedJwtUtils;
+    private String jwt;
+
+    @Setup
+    public void setup() {
+        user = new User(ObjectId.get(), "benchmark", "benchmark@zxseitz.ch", "hash", List.of(Role.User));
+        cachedJwtUtils = new JwtUtils(SECRET, new JwtCache(10000, new SimpleMeterRegistry()), new SimpleMeterRegistry());
+        uncachedJwtUtils = new JwtUtils(SECRET, new JwtCache(0, new SimpleMeterRegistry()), new SimpleMeterRegistry());
+        jwt = cachedJwtUtils.createJwt(user);
+        if (cachedJwtUtils.verifyJwt(jwt).isEmpty()) {
+            throw new IllegalStateException("Benchmark jwt does not verify");
+        }
+    }
+
+    @Benchmark
+    public String createJwt() {
+        return cachedJwtUtils.createJwt(user);
+    }
+
+    @Benchmark
+    public Object verifyJwtCached() {
+        return cachedJwtUtils.verifyJwt(jwt);
+    }
+
+    @Benchmark
+    public Object verifyJwtUncached() {
+        return uncachedJwtUtils.verifyJwt(jwt);
+    }
+}
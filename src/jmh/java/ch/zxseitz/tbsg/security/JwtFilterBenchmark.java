@@ -0,0 +1,57 @@
+package ch.zxseitz.tbsg.security;
+
+import ch.zxseitz.tbsg.model.Role;
+import ch.zxseitz.tbsg.model.User;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.bson.types.ObjectId;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.security.core.context.SecurityContextHolder;
+
+import javax.servlet.FilterChain;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Full pass of an authenticated request through the jwt filter, with and without the verified token cache.
+ * <p>
+ * Baseline, two forks of 10 x 1 s after 5 x 1 s warmup on JDK 11.0.21 and a single vCPU:
+ * <pre>
+ * Benchmark  (cacheSize)  Mode  Cnt      Score       Error  Units
+ * filter           10000  avgt   20    829.879 ±   104.008  ns/op
+ * filter               0  avgt   20  24211.146 ± 15757.971  ns/op
+ * </pre>
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class JwtFilterBenchmark {
+    @Param({"10000", "0"})
+    public int cacheSize;
+
+    private JwtFilter filter;
+    private MockHttpServletRequest request;
+    private MockHttpServletResponse response;
+    private FilterChain chain;
+
+    @Setup
+    public void setup() {
+        var meterRegistry = new SimpleMeterRegistry();
+        var jwtUtils = new JwtUtils(JwtBenchmark.SECRET, new JwtCache(cacheSize, meterRegistry), meterRegistry);
+        var user = new User(ObjectId.get(), "benchmark", "benchmark@zxseitz.ch", "hash", List.of(Role.User));
+        filter = new JwtFilter(jwtUtils, meterRegistry);
+        request = new MockHttpServletRequest("GET", "/api/v1/test/hello");
+        request.addHeader("Authorization", "Bearer " + jwtUtils.createJwt(user));
+        response = new MockHttpServletResponse();
+        chain = (req, res) -> {};
+    }
+
+    @Benchmark
+    public Object filter() throws Exception {
+        filter.doFilter(request, response, chain);
+        var authentication = SecurityContextHolder.getContext().getAuthentication();
+        SecurityContextHolder.clearContext();
+        return authentication;
+    }
+}
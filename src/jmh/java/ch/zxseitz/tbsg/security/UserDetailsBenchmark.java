@@ -0,0 +1,31 @@
+package ch.zxseitz.tbsg.security;
+
+import ch.zxseitz.tbsg.model.Role;
+import ch.zxseitz.tbsg.model.User;
+import org.bson.types.ObjectId;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Conversion of a user to the spring security user details, once per authentication.
+ * <p>
+ * Baseline on JDK 11.0.21 and a single vCPU, one fork of 5 x 1 s: 18.390 ± 9.603 ns/op.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class UserDetailsBenchmark {
+    private User user;
+
+    @Setup
+    public void setup() {
+        user = new User(ObjectId.get(), "benchmark", "benchmark@zxseitz.ch", "hash", List.of(Role.User, Role.Admin));
+    }
+
+    @Benchmark
+    public UserDetailsImpl create() {
+        return UserDetailsImpl.create(user);
+    }
+}
@@ -1,71 +1,132 @@
 package ch.zxseitz.tbsg.api;
 
 import ch.zxseitz.tbsg.model.response.JwtResponse;
+import ch.zxseitz.tbsg.repo.DuplicateFieldException;
 import ch.zxseitz.tbsg.repo.IUserRepository;
 import ch.zxseitz.tbsg.model.Role;
 import ch.zxseitz.tbsg.model.User;
 import ch.zxseitz.tbsg.model.request.LoginRequest;
 import ch.zxseitz.tbsg.model.request.RegisterRequest;
+import ch.zxseitz.tbsg.ranking.RatingService;
 import ch.zxseitz.tbsg.security.JwtUtils;
+import ch.zxseitz.tbsg.security.PasswordHashingService;
+import ch.zxseitz.tbsg.security.RateLimiter;
+import ch.zxseitz.tbsg.security.UserDetailsImpl;
 import org.bson.types.ObjectId;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.ResponseEntity;
-import org.springframework.security.authentication.AuthenticationManager;
-import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
-import org.springframework.security.core.Authentication;
-import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.security.authentication.AccountStatusException;
+import org.springframework.security.authentication.AccountStatusUserDetailsChecker;
 import org.springframework.web.bind.annotation.*;
 
 import java.util.Collections;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
 
+/**
+ * Only bcrypt runs on the hashing pool: credentials are looked up on the request thread, and new users are
+ * stored on the application task executor once their password is hashed. Logins are checked here instead of
+ * by the authentication manager, with the same account status checks.
+ */
 @CrossOrigin(origins = "*", maxAge = 3600)
 @RestController
 @RequestMapping("/api/v1/auth")
+@ConditionalOnProperty(name = "tbsg.api.mode", havingValue = "blocking", matchIfMissing = true)
 public class AuthController {
-    private final AuthenticationManager authenticationManager;
+    private static final AccountStatusUserDetailsChecker ACCOUNT_CHECKER = new AccountStatusUserDetailsChecker();
+
     private final IUserRepository userRepository;
-    private final PasswordEncoder encoder;
+    private final PasswordHashingService hashingService;
     private final JwtUtils jwtUtils;
+    private final RateLimiter loginLimiter;
+    private final RatingService ratingService;
+    private final Executor ioExecutor;
 
     @Autowired
-    public AuthController(AuthenticationManager authenticationManager, IUserRepository userRepository,
-                          PasswordEncoder encoder, JwtUtils jwtUtils) {
-        this.authenticationManager = authenticationManager;
+    public AuthController(IUserRepository userRepository, PasswordHashingService hashingService, JwtUtils jwtUtils,
+                          @Qualifier("username_limiter") RateLimiter loginLimiter, RatingService ratingService,
+                          @Qualifier("applicationTaskExecutor") Executor ioExecutor) {
         this.userRepository = userRepository;
-        this.encoder = encoder;
+        this.hashingService = hashingService;
         this.jwtUtils = jwtUtils;
+        this.loginLimiter = loginLimiter;
+        this.ratingService = ratingService;
+        this.ioExecutor = ioExecutor;
     }
 
     @PostMapping("/register")
-    public ResponseEntity<?> registerUser(@RequestBody RegisterRequest registerRequest) {
+    public CompletableFuture<ResponseEntity<?>> registerUser(@RequestBody RegisterRequest registerRequest) {
         if (!registerRequest.validate()) {
-            return ResponseEntity.status(400).body("Invalid request");
-        }
-        if (userRepository.getByUsername(registerRequest.getUsername()).isPresent()) {
-            return ResponseEntity.status(400).body("Username already taken");
+            return respond(400, "Invalid request");
         }
-        if (userRepository.getByEmail(registerRequest.getEmail()).isPresent()) {
-            return ResponseEntity.status(400).body("Email already taken");
+        try {
+            return hashingService.encode(registerRequest.getPassword()).<ResponseEntity<?>>thenApplyAsync(hash -> {
+                var user = new User(ObjectId.get(), registerRequest.getUsername(), registerRequest.getEmail(), hash,
+                        Collections.singletonList(Role.User));
+                try {
+                    userRepository.insert(user);
+                } catch (DuplicateFieldException e) {
+                    if ("username".equals(e.getField())) {
+                        return ResponseEntity.status(400).body("Username already taken");
+                    }
+                    return ResponseEntity.status(400).body("Email already taken");
+                }
+                ratingService.playerAdded(user);
+                return ResponseEntity.status(200).build();
+            }, ioExecutor);
+        } catch (RejectedExecutionException e) {
+            return respond(429, "Too many requests");
         }
-        userRepository.insert(new User(ObjectId.get(), registerRequest.getUsername(),
-                registerRequest.getEmail(), encoder.encode(registerRequest.getPassword()),
-                Collections.singletonList(Role.User)));
-        return ResponseEntity.status(200).build();
     }
 
     @PostMapping("/login")
-    public ResponseEntity<?> login(@RequestBody LoginRequest loginRequest) {
+    public CompletableFuture<ResponseEntity<?>> login(@RequestBody LoginRequest loginRequest) {
         if (!loginRequest.validate()) {
-            return ResponseEntity.status(400).body("Invalid request");
+            return respond(400, "Invalid request");
+        }
+        // throttles guessing against a single account, independent of how many addresses are used
+        var wait = loginLimiter.acquire(loginRequest.getUsername());
+        if (wait > 0) {
+            return CompletableFuture.completedFuture(ResponseEntity.status(429)
+                    .header(HttpHeaders.RETRY_AFTER, Long.toString(RateLimiter.toSeconds(wait)))
+                    .body("Too many requests"));
+        }
+        var user = userRepository.getCredentials(loginRequest.getUsername());
+        try {
+            // unknown usernames are hashed too, a fast 401 would tell which usernames exist
+            var matches = user.isPresent()
+                    ? hashingService.matches(loginRequest.getPassword(), user.get().getPassword())
+                    : hashingService.matchesUnknown(loginRequest.getPassword());
+            return matches.<ResponseEntity<?>>thenApply(match -> {
+                if (!match || !isUsable(user.get())) {
+                    return ResponseEntity.status(401).body("Bad credentials");
+                }
+                // only failed attempts count against the account
+                loginLimiter.release(loginRequest.getUsername());
+                return ResponseEntity.status(200).body(new JwtResponse(jwtUtils.createJwt(user.get())));
+            });
+        } catch (RejectedExecutionException e) {
+            return respond(429, "Too many requests");
         }
-        Authentication authentication = authenticationManager.authenticate(
-                new UsernamePasswordAuthenticationToken(loginRequest.getUsername(), loginRequest.getPassword()));
-        // todo attach user to authentication object
-        var user = userRepository.getByUsername(loginRequest.getUsername());
-        if (user.isPresent()) {
-            var jwt = jwtUtils.createJwt(user.get());
-            return ResponseEntity.status(200).body(new JwtResponse(jwt));
+    }
+
+    /**
+     * Same account status checks as the authentication manager.
+     */
+    static boolean isUsable(User user) {
+        try {
+            ACCOUNT_CHECKER.check(UserDetailsImpl.create(user));
+            return true;
+        } catch (AccountStatusException e) {
+            return false;
         }
-        return ResponseEntity.status(400).build();
+    }
+
+    private static CompletableFuture<ResponseEntity<?>> respond(int status, Object body) {
+        return CompletableFuture.completedFuture(ResponseEntity.status(status).body(body));
     }
 }
@@ -0,0 +1,84 @@
+package ch.zxseitz.tbsg.api;
+
+import ch.zxseitz.tbsg.model.response.LeaderboardEntry;
+import ch.zxseitz.tbsg.ranking.Leaderboard;
+import ch.zxseitz.tbsg.ranking.Rank;
+import ch.zxseitz.tbsg.ranking.RatingService;
+import ch.zxseitz.tbsg.repo.IUserRepository;
+import org.bson.types.ObjectId;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.List;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Ranks served from the in memory {@link Leaderboard}, only the usernames of a page are read from the
+ * repository.
+ */
+@RestController
+@RequestMapping("api/v1/leaderboard")
+public class LeaderboardController {
+    static final int MAX_PAGE_SIZE = 100;
+
+    private final Leaderboard leaderboard;
+    private final IUserRepository userRepository;
+
+    @Autowired
+    public LeaderboardController(RatingService ratingService,
+                                 @Qualifier("cached") IUserRepository userRepository) {
+        this.leaderboard = ratingService.getLeaderboard();
+        this.userRepository = userRepository;
+    }
+
+    @RequestMapping(method = RequestMethod.GET)
+    public ResponseEntity<?> getPage(@RequestParam(name = "offset", defaultValue = "0") int offset,
+                                     @RequestParam(name = "limit", defaultValue = "20") int limit) {
+        if (offset < 0) {
+            return ResponseEntity.status(400).body("Offset must not be negative");
+        }
+        if (limit < 1 || limit > MAX_PAGE_SIZE) {
+            return ResponseEntity.status(400).body(String.format("Limit must be between 1 and %d", MAX_PAGE_SIZE));
+        }
+        return ResponseEntity.status(200).body(entries(leaderboard.getPage(offset, limit)));
+    }
+
+    @RequestMapping(path = "{id}", method = RequestMethod.GET)
+    public ResponseEntity<?> getRank(@PathVariable("id") ObjectId id) {
+        var rank = leaderboard.getRank(id);
+        if (rank == null) {
+            return ResponseEntity.status(404).body(String.format("No ranked user found with id %s", id.toHexString()));
+        }
+        return ResponseEntity.status(200).body(entries(List.of(rank)).get(0));
+    }
+
+    @RequestMapping(path = "{id}/around", method = RequestMethod.GET)
+    public ResponseEntity<?> getAround(@PathVariable("id") ObjectId id,
+                                       @RequestParam(name = "count", defaultValue = "5") int count) {
+        if (count < 0 || 2 * count + 1 > MAX_PAGE_SIZE) {
+            return ResponseEntity.status(400).body(String.format("Count must be between 0 and %d",
+                    (MAX_PAGE_SIZE - 1) / 2));
+        }
+        var ranks = leaderboard.getAround(id, count);
+        if (ranks.isEmpty()) {
+            return ResponseEntity.status(404).body(String.format("No ranked user found with id %s", id.toHexString()));
+        }
+        return ResponseEntity.status(200).body(entries(ranks));
+    }
+
+    private List<LeaderboardEntry> entries(List<Rank> ranks) {
+        var users = userRepository.getAll(ranks.stream().map(Rank::getPlayer).collect(Collectors.toList()))
+                .stream()
+                .collect(Collectors.toMap(user -> user.id, Function.identity()));
+        return ranks.stream()
+                .map(rank -> {
+                    var user = users.get(rank.getPlayer());
+                    return new LeaderboardEntry(rank.getRank(), rank.getPlayer(),
+                            user != null ? user.getUsername() : null, rank.getRating());
+                })
+                .collect(Collectors.toList());
+    }
+}
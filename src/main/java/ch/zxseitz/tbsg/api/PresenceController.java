@@ -0,0 +1,47 @@
+package ch.zxseitz.tbsg.api;
+
+import ch.zxseitz.tbsg.model.Role;
+import ch.zxseitz.tbsg.model.RoleSet;
+import ch.zxseitz.tbsg.model.response.PresenceResponse;
+import ch.zxseitz.tbsg.presence.PresenceRegistry;
+import org.bson.types.ObjectId;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.List;
+import java.util.stream.Collectors;
+
+@RestController
+@RequestMapping("api/v1/presence")
+public class PresenceController {
+    static final int MAX_IDS = 1000;
+
+    private final PresenceRegistry presenceRegistry;
+
+    @Autowired
+    public PresenceController(PresenceRegistry presenceRegistry) {
+        this.presenceRegistry = presenceRegistry;
+    }
+
+    /**
+     * Returns the online users among the given ones, like the friend list of the client. The match is only
+     * returned for the caller, or to admins.
+     */
+    @RequestMapping(method = RequestMethod.GET)
+    public ResponseEntity<?> getOnline(@RequestParam("ids") List<ObjectId> ids) {
+        if (ids.size() > MAX_IDS) {
+            return ResponseEntity.status(400).body(String.format("At most %d ids per request", MAX_IDS));
+        }
+        var auth = SecurityContextHolder.getContext().getAuthentication();
+        var admin = RoleSet.of(auth.getAuthorities()).has(Role.ADMIN);
+        var now = System.currentTimeMillis();
+        var online = presenceRegistry.getOnline(ids).stream()
+                .map(presence -> new PresenceResponse(presence.getUser(),
+                        admin || auth.getPrincipal().equals(presence.getUser()) ? presence.getMatch() : null,
+                        now - presence.getLastSeen()))
+                .collect(Collectors.toList());
+        return ResponseEntity.status(200).body(online);
+    }
+}
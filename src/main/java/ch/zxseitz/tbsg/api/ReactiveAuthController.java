@@ -0,0 +1,106 @@
+package ch.zxseitz.tbsg.api;
+
+import ch.zxseitz.tbsg.model.Role;
+import ch.zxseitz.tbsg.model.User;
+import ch.zxseitz.tbsg.model.request.LoginRequest;
+import ch.zxseitz.tbsg.model.request.RegisterRequest;
+import ch.zxseitz.tbsg.model.response.JwtResponse;
+import ch.zxseitz.tbsg.ranking.RatingService;
+import ch.zxseitz.tbsg.repo.DuplicateFieldException;
+import ch.zxseitz.tbsg.repo.IReactiveUserRepository;
+import ch.zxseitz.tbsg.repo.cache.CachingUserRepository;
+import ch.zxseitz.tbsg.security.JwtUtils;
+import ch.zxseitz.tbsg.security.PasswordHashingService;
+import ch.zxseitz.tbsg.security.RateLimiter;
+import org.bson.types.ObjectId;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+import reactor.core.publisher.Mono;
+
+import java.util.Collections;
+import java.util.Optional;
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * Non-blocking variant of {@link AuthController}: no servlet thread waits for mongo or bcrypt. Credentials are
+ * loaded with the reactive repository and verified on the hashing pool, with the same account status checks
+ * as the blocking mode. Credentials are read from mongo on every login, the user cache only sits in front of
+ * the blocking repository and is invalidated after registrations.
+ */
+@CrossOrigin(origins = "*", maxAge = 3600)
+@RestController
+@RequestMapping("/api/v1/auth")
+@ConditionalOnProperty(name = "tbsg.api.mode", havingValue = "reactive")
+public class ReactiveAuthController {
+    private final IReactiveUserRepository userRepository;
+    private final PasswordHashingService hashingService;
+    private final JwtUtils jwtUtils;
+    private final RateLimiter loginLimiter;
+    private final RatingService ratingService;
+    private final CachingUserRepository userCache;
+
+    @Autowired
+    public ReactiveAuthController(IReactiveUserRepository userRepository, PasswordHashingService hashingService,
+                                  JwtUtils jwtUtils, @Qualifier("username_limiter") RateLimiter loginLimiter,
+                                  RatingService ratingService, CachingUserRepository userCache) {
+        this.userRepository = userRepository;
+        this.hashingService = hashingService;
+        this.jwtUtils = jwtUtils;
+        this.loginLimiter = loginLimiter;
+        this.ratingService = ratingService;
+        this.userCache = userCache;
+    }
+
+    @PostMapping("/register")
+    public Mono<ResponseEntity<?>> registerUser(@RequestBody RegisterRequest registerRequest) {
+        if (!registerRequest.validate()) {
+            return Mono.just(ResponseEntity.status(400).body("Invalid request"));
+        }
+        return Mono.defer(() -> Mono.fromFuture(hashingService.encode(registerRequest.getPassword())))
+                .map(hash -> new User(ObjectId.get(), registerRequest.getUsername(), registerRequest.getEmail(), hash,
+                        Collections.singletonList(Role.User)))
+                .flatMap(user -> userRepository.insert(user)
+                        .doFinally(signal -> userCache.invalidate(user.id))
+                        .then(Mono.fromRunnable(() -> ratingService.playerAdded(user))))
+                .<ResponseEntity<?>>then(Mono.just(ResponseEntity.status(200).build()))
+                .onErrorResume(DuplicateFieldException.class, e -> Mono.just("username".equals(e.getField())
+                        ? ResponseEntity.status(400).body("Username already taken")
+                        : ResponseEntity.status(400).body("Email already taken")))
+                .onErrorResume(RejectedExecutionException.class,
+                        e -> Mono.just(ResponseEntity.status(429).body("Too many requests")));
+    }
+
+    @PostMapping("/login")
+    public Mono<ResponseEntity<?>> login(@RequestBody LoginRequest loginRequest) {
+        if (!loginRequest.validate()) {
+            return Mono.just(ResponseEntity.status(400).body("Invalid request"));
+        }
+        var wait = loginLimiter.acquire(loginRequest.getUsername());
+        if (wait > 0) {
+            return Mono.just(ResponseEntity.status(429)
+                    .header(HttpHeaders.RETRY_AFTER, Long.toString(RateLimiter.toSeconds(wait)))
+                    .body("Too many requests"));
+        }
+        return userRepository.getCredentials(loginRequest.getUsername())
+                .map(Optional::of)
+                .defaultIfEmpty(Optional.empty())
+                // unknown usernames are hashed too, a fast 401 would tell which usernames exist
+                .flatMap(user -> Mono.fromFuture(user.isPresent()
+                        ? hashingService.matches(loginRequest.getPassword(), user.get().getPassword())
+                        : hashingService.matchesUnknown(loginRequest.getPassword()))
+                        .<ResponseEntity<?>>map(matches -> {
+                            if (!matches || !AuthController.isUsable(user.get())) {
+                                return ResponseEntity.status(401).body("Bad credentials");
+                            }
+                            // only failed attempts count against the account
+                            loginLimiter.release(loginRequest.getUsername());
+                            return ResponseEntity.status(200).body(new JwtResponse(jwtUtils.createJwt(user.get())));
+                        }))
+                .onErrorResume(RejectedExecutionException.class,
+                        e -> Mono.just(ResponseEntity.status(429).body("Too many requests")));
+    }
+}
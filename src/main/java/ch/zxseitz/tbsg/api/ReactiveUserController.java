@@ -0,0 +1,91 @@
+package ch.zxseitz.tbsg.api;
+
+import ch.zxseitz.tbsg.model.Role;
+import ch.zxseitz.tbsg.model.RoleSet;
+import ch.zxseitz.tbsg.model.User;
+import ch.zxseitz.tbsg.model.response.PageResponse;
+import ch.zxseitz.tbsg.model.response.UserResponse;
+import ch.zxseitz.tbsg.ranking.RatingService;
+import ch.zxseitz.tbsg.repo.IReactiveUserRepository;
+import ch.zxseitz.tbsg.repo.cache.CachingUserRepository;
+import org.bson.types.ObjectId;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.web.bind.annotation.*;
+import reactor.core.publisher.Mono;
+
+import java.util.stream.Collectors;
+
+/**
+ * Non-blocking variant of {@link UserController}. The security context is only available on the request
+ * thread, so authorization is checked before subscribing to the repository. Writes bypass the
+ * {@link CachingUserRepository}, which is invalidated once they completed.
+ */
+@RestController
+@RequestMapping("api/v1/user")
+@ConditionalOnProperty(name = "tbsg.api.mode", havingValue = "reactive")
+public class ReactiveUserController {
+    private final IReactiveUserRepository userRepository;
+    private final CachingUserRepository userCache;
+    private final RatingService ratingService;
+
+    @Autowired
+    public ReactiveUserController(IReactiveUserRepository userRepository, CachingUserRepository userCache,
+                                  RatingService ratingService) {
+        this.userRepository = userRepository;
+        this.userCache = userCache;
+        this.ratingService = ratingService;
+    }
+
+    @RequestMapping(method = RequestMethod.POST)
+    public Mono<Void> addUser(@RequestBody User user) {
+        //  password must be hashed!
+        var stored = UserController.withId(user);
+        return userRepository.insert(stored)
+                .doFinally(signal -> userCache.invalidate(stored.id))
+                .then(Mono.fromRunnable(() -> ratingService.playerAdded(stored)));
+    }
+
+    @RequestMapping(method = RequestMethod.GET)
+    public Mono<ResponseEntity<?>> getAllUsers(@RequestParam(name = "after", required = false) ObjectId after,
+                                               @RequestParam(name = "limit", defaultValue = "100") int limit) {
+        if (limit < 1 || limit > UserController.MAX_PAGE_SIZE) {
+            return Mono.just(ResponseEntity.status(400).body(String.format("Limit must be between 1 and %d",
+                    UserController.MAX_PAGE_SIZE)));
+        }
+        return userRepository.getPage(after, limit)
+                .collectList()
+                .map(users -> {
+                    var next = users.size() == limit ? users.get(users.size() - 1).id.toHexString() : null;
+                    return ResponseEntity.status(200).body(new PageResponse<>(
+                            users.stream().map(UserResponse::of).collect(Collectors.toList()), next));
+                });
+    }
+
+    @RequestMapping(path = "{id}", method = RequestMethod.GET)
+    public Mono<ResponseEntity<?>> getUser(@PathVariable("id") ObjectId id) {
+        var auth = SecurityContextHolder.getContext().getAuthentication();
+        if (!RoleSet.of(auth.getAuthorities()).has(Role.ADMIN)) {
+            // non admin scope
+            if (!auth.getPrincipal().equals(id)) {
+                return Mono.just(ResponseEntity.status(403).body("Your not allowed to access this user"));
+            }
+        }
+        return userRepository.getProfile(id)
+                .<ResponseEntity<?>>map(user -> ResponseEntity.status(200).body(user))
+                .defaultIfEmpty(ResponseEntity.status(404).body(String.format("No user found with id %s",
+                        id.toHexString())));
+    }
+
+    @RequestMapping(path = "{id}", method = RequestMethod.PUT)
+    public ResponseEntity<?> updateUser(@PathVariable("id") ObjectId id, @RequestBody User user) {
+        return ResponseEntity.status(200).build();
+    }
+
+    @RequestMapping(path = "{id}", method = RequestMethod.DELETE)
+    public ResponseEntity<?> deleteUser(@PathVariable("id") ObjectId id) {
+        return ResponseEntity.status(200).build();
+    }
+}
@@ -0,0 +1,128 @@
+package ch.zxseitz.tbsg.api;
+
+import ch.zxseitz.tbsg.json.SerializerRegistry;
+import ch.zxseitz.tbsg.model.response.BatchResponse;
+import ch.zxseitz.tbsg.model.response.UserResponse;
+import ch.zxseitz.tbsg.ranking.RatingService;
+import ch.zxseitz.tbsg.repo.IUserRepository;
+import ch.zxseitz.tbsg.security.JwtCache;
+import ch.zxseitz.tbsg.model.User;
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonWriter;
+import org.bson.types.ObjectId;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import java.io.BufferedWriter;
+import java.io.OutputStreamWriter;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+/**
+ * Export and batch endpoints, served by the blocking repository in both api modes.
+ */
+@RestController
+@RequestMapping("api/v1/user")
+public class UserBulkController {
+    private static final String NDJSON = "application/x-ndjson";
+    private static final int MAX_BATCH_SIZE = 10000;
+
+    private final IUserRepository userRepository;
+    private final RatingService ratingService;
+    private final JwtCache jwtCache;
+    private final TypeAdapter<UserResponse> userAdapter;
+
+    @Autowired
+    public UserBulkController(@Qualifier("cached") IUserRepository userRepository, RatingService ratingService,
+                              JwtCache jwtCache, SerializerRegistry serializers) {
+        this.userRepository = userRepository;
+        this.ratingService = ratingService;
+        this.jwtCache = jwtCache;
+        this.userAdapter = serializers.getAdapter(UserResponse.class);
+    }
+
+    @RequestMapping(method = RequestMethod.GET, produces = NDJSON)
+    public ResponseEntity<StreamingResponseBody> streamAllUsers(
+            @RequestParam(name = "after", required = false) ObjectId after) {
+        StreamingResponseBody body = out -> {
+            var writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8));
+            var jsonWriter = new JsonWriter(writer);
+            // one top level value per line
+            jsonWriter.setLenient(true);
+            try (var users = userRepository.stream(after)) {
+                var iterator = users.iterator();
+                while (iterator.hasNext()) {
+                    userAdapter.write(jsonWriter, UserResponse.of(iterator.next()));
+                    writer.write('\n');
+                }
+            }
+            writer.flush();
+        };
+        return ResponseEntity.status(200).contentType(MediaType.parseMediaType(NDJSON)).body(body);
+    }
+
+    @RequestMapping(path = "batch", method = RequestMethod.POST)
+    public ResponseEntity<?> addUsers(@RequestBody List<User> users) {
+        if (users.size() > MAX_BATCH_SIZE) {
+            return ResponseEntity.status(400).body(String.format("At most %d users per batch", MAX_BATCH_SIZE));
+        }
+        //  passwords must be hashed!
+        var stored = users.stream().map(UserController::withId).collect(Collectors.toList());
+        var result = userRepository.insertAll(stored);
+        for (var i = 0; i < stored.size(); i++) {
+            if (!result.getFailures().containsKey(i)) {
+                ratingService.playerAdded(stored.get(i));
+            }
+        }
+        var ids = stored.stream()
+                .map(user -> user.id != null ? user.id.toHexString() : null)
+                .collect(Collectors.toList());
+        return ResponseEntity.status(200).body(BatchResponse.create(result, ids));
+    }
+
+    @RequestMapping(path = "batch", method = RequestMethod.GET)
+    public ResponseEntity<?> getUsers(@RequestParam("ids") List<ObjectId> ids) {
+        if (ids.size() > MAX_BATCH_SIZE) {
+            return ResponseEntity.status(400).body(String.format("At most %d users per batch", MAX_BATCH_SIZE));
+        }
+        return ResponseEntity.status(200).body(userRepository.getAll(ids).stream()
+                .map(UserResponse::of)
+                .collect(Collectors.toList()));
+    }
+
+    @RequestMapping(path = "batch", method = RequestMethod.PUT)
+    public ResponseEntity<?> updateUsers(@RequestBody Map<String, User> users) {
+        if (users.size() > MAX_BATCH_SIZE) {
+            return ResponseEntity.status(400).body(String.format("At most %d users per batch", MAX_BATCH_SIZE));
+        }
+        var updates = new LinkedHashMap<ObjectId, User>();
+        for (var entry : users.entrySet()) {
+            if (!ObjectId.isValid(entry.getKey())) {
+                return ResponseEntity.status(400).body(String.format("Invalid id %s", entry.getKey()));
+            }
+            updates.put(new ObjectId(entry.getKey()), entry.getValue());
+        }
+        var result = userRepository.updateAll(updates);
+        return ResponseEntity.status(200).body(BatchResponse.create(result, new ArrayList<>(users.keySet())));
+    }
+
+    @RequestMapping(path = "batch", method = RequestMethod.DELETE)
+    public ResponseEntity<?> deleteUsers(@RequestParam("ids") List<ObjectId> ids) {
+        if (ids.size() > MAX_BATCH_SIZE) {
+            return ResponseEntity.status(400).body(String.format("At most %d users per batch", MAX_BATCH_SIZE));
+        }
+        var result = userRepository.deleteAll(ids);
+        ids.forEach(ratingService::playerRemoved);
+        ids.forEach(jwtCache::invalidate);
+        var hexIds = ids.stream().map(ObjectId::toHexString).collect(Collectors.toList());
+        return ResponseEntity.status(200).body(BatchResponse.create(result, hexIds));
+    }
+}
@@ -1,46 +1,67 @@
 package ch.zxseitz.tbsg.api;
 
+import ch.zxseitz.tbsg.model.response.PageResponse;
+import ch.zxseitz.tbsg.model.response.UserResponse;
+import ch.zxseitz.tbsg.ranking.RatingService;
 import ch.zxseitz.tbsg.repo.IUserRepository;
 import ch.zxseitz.tbsg.model.Role;
+import ch.zxseitz.tbsg.model.RoleSet;
 import ch.zxseitz.tbsg.model.User;
 import org.bson.types.ObjectId;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.web.bind.annotation.*;
 
+import java.util.stream.Collectors;
+
 @RestController
 @RequestMapping("api/v1/user")
+@ConditionalOnProperty(name = "tbsg.api.mode", havingValue = "blocking", matchIfMissing = true)
 public class UserController {
+    static final int MAX_PAGE_SIZE = 1000;
+
     private final IUserRepository userRepository;
+    private final RatingService ratingService;
 
     @Autowired
-    public UserController(@Qualifier("mongodb") IUserRepository userRepository) {
+    public UserController(@Qualifier("cached") IUserRepository userRepository, RatingService ratingService) {
         this.userRepository = userRepository;
+        this.ratingService = ratingService;
     }
 
     @RequestMapping(method = RequestMethod.POST)
     public void addUser(@RequestBody User user) {
         //  password must be hashed!
-        userRepository.insert(user);
+        var stored = withId(user);
+        userRepository.insert(stored);
+        ratingService.playerAdded(stored);
     }
 
     @RequestMapping(method = RequestMethod.GET)
-    public ResponseEntity<?> getAllUsers() {
-        return ResponseEntity.status(200).body(userRepository.getAll());
+    public ResponseEntity<?> getAllUsers(@RequestParam(name = "after", required = false) ObjectId after,
+                                         @RequestParam(name = "limit", defaultValue = "100") int limit) {
+        if (limit < 1 || limit > MAX_PAGE_SIZE) {
+            return ResponseEntity.status(400).body(String.format("Limit must be between 1 and %d", MAX_PAGE_SIZE));
+        }
+        var users = userRepository.getPage(after, limit);
+        var next = users.size() == limit ? users.get(users.size() - 1).id.toHexString() : null;
+        return ResponseEntity.status(200).body(new PageResponse<>(
+                users.stream().map(UserResponse::of).collect(Collectors.toList()), next));
     }
 
     @RequestMapping(path = "{id}", method = RequestMethod.GET)
     public ResponseEntity<?> getUser(@PathVariable("id") ObjectId id) {
         var auth = SecurityContextHolder.getContext().getAuthentication();
-        if (!auth.getAuthorities().contains(Role.Admin)) {
+        if (!RoleSet.of(auth.getAuthorities()).has(Role.ADMIN)) {
             // non admin scope
             if (!auth.getPrincipal().equals(id)) {
                 return ResponseEntity.status(403).body("Your not allowed to access this user");
             }
         }
-        var user = userRepository.get(id);
+        var user = userRepository.getProfile(id);
         if (user.isPresent()) {
             return ResponseEntity.status(200).body(user);
         }
@@ -56,4 +77,15 @@ public class UserController {
     public ResponseEntity<?> deleteUser(@PathVariable("id") ObjectId id) {
         return ResponseEntity.status(200).build();
     }
+
+    /**
+     * Assigns an id to a posted user without one, so it can be indexed right after the insert.
+     */
+    static User withId(User user) {
+        if (user.id != null) {
+            return user;
+        }
+        return new User(ObjectId.get(), user.getUsername(), user.getEmail(), user.getPassword(), user.getRoles(),
+                user.getRating());
+    }
 }
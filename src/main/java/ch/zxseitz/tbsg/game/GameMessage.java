@@ -0,0 +1,115 @@
+package ch.zxseitz.tbsg.game;
+
+import ch.zxseitz.tbsg.game.othello.BoardSnapshot;
+import ch.zxseitz.tbsg.json.BoardSnapshotAdapter;
+import ch.zxseitz.tbsg.json.HexLongAdapter;
+import com.google.gson.annotations.JsonAdapter;
+import com.google.gson.annotations.SerializedName;
+import org.bson.types.ObjectId;
+
+/**
+ * Message exchanged with game clients, fields not used by a message type are left at their defaults. Turns
+ * carry the discs flipped by the move, states the full board. Bitboards are hex strings in json, since they
+ * exceed the integer precision of javascript numbers.
+ */
+public class GameMessage {
+    public enum Type {
+        @SerializedName("join") JOIN,
+        @SerializedName("turn") TURN,
+        @SerializedName("state") STATE,
+        @SerializedName("error") ERROR,
+        @SerializedName("queue") QUEUE,
+        @SerializedName("leave") LEAVE,
+        @SerializedName("hint") HINT
+    }
+
+    private final Type type;
+    private final ObjectId match;
+    private final int turn;
+    private final int player;
+    private final int move;
+    private final int latency;
+    private final String message;
+    @JsonAdapter(HexLongAdapter.class)
+    private final Long flips;
+    @JsonAdapter(BoardSnapshotAdapter.class)
+    private final BoardSnapshot board;
+
+    public GameMessage(Type type, ObjectId match, int turn, int player, int move, int latency, String message) {
+        this(type, match, turn, player, move, latency, message, null, null);
+    }
+
+    public GameMessage(Type type, ObjectId match, int turn, int player, int move, int latency, String message,
+                       Long flips, BoardSnapshot board) {
+        this.type = type;
+        this.match = match;
+        this.turn = turn;
+        this.player = player;
+        this.move = move;
+        this.latency = latency;
+        this.message = message;
+        this.flips = flips;
+        this.board = board;
+    }
+
+    public Type getType() {
+        return type;
+    }
+
+    public ObjectId getMatch() {
+        return match;
+    }
+
+    public int getTurn() {
+        return turn;
+    }
+
+    public int getPlayer() {
+        return player;
+    }
+
+    public int getMove() {
+        return move;
+    }
+
+    public int getLatency() {
+        return latency;
+    }
+
+    public String getMessage() {
+        return message;
+    }
+
+    public Long getFlips() {
+        return flips;
+    }
+
+    public BoardSnapshot getBoard() {
+        return board;
+    }
+
+    public static GameMessage state(Match match, int player) {
+        return new GameMessage(Type.STATE, match.getId(), match.getTurn(), player, -1, 0, null,
+                null, match.getBoard().snapshot());
+    }
+
+    public static GameMessage turn(Match match, int turn, int player, int move) {
+        return new GameMessage(Type.TURN, match.getId(), turn, player, move, 0, null,
+                match.getLastFlips(), null);
+    }
+
+    /**
+     * Suggested move of the player for the given turn.
+     */
+    public static GameMessage hint(ObjectId match, int turn, int player, int move) {
+        return new GameMessage(Type.HINT, match, turn, player, move, 0, null);
+    }
+
+    public static GameMessage queued() {
+        return new GameMessage(Type.QUEUE, null, 0, 0, 0, 0, null);
+    }
+
+    public static GameMessage error(ObjectId match, String message) {
+        return new GameMessage(Type.ERROR, match, 0, 0, 0, 0, message);
+    }
+}
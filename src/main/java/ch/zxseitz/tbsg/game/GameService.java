@@ -0,0 +1,273 @@
+package ch.zxseitz.tbsg.game;
+
+import ch.zxseitz.tbsg.game.othello.SearchEngine;
+import ch.zxseitz.tbsg.presence.PresenceRegistry;
+import ch.zxseitz.tbsg.ranking.RatingService;
+import ch.zxseitz.tbsg.repo.IMatchLog;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.bson.types.ObjectId;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Holds the running matches, the connections of the players are kept by the {@link PresenceRegistry}. Each
+ * match is driven by its own {@link MatchActor}, there are no locks shared between matches. Turns are appended
+ * to the match log, and every snapshot interval turns the match state, so running matches are recovered after
+ * a restart. Timers of all matches share one {@link TimingWheel}. Hints are searched by the {@link SearchEngine}
+ * off the match actor, one at a time per user. The moves of the {@link #BOT} are searched the same way and told
+ * back to the actor as turns, bot matches are not rated.
+ */
+@Service
+public class GameService {
+    private static final Logger logger = LoggerFactory.getLogger(GameService.class);
+
+    /**
+     * Player id of the server side bot, it is no user and plays any number of matches at once.
+     */
+    public static final ObjectId BOT = new ObjectId("000000000000000000000000");
+
+    private final ConcurrentHashMap<ObjectId, MatchActor> matches;
+    private final PresenceRegistry presenceRegistry;
+    private final ExecutorService executor;
+    private final TimingWheel timingWheel;
+    private final IMatchLog matchLog;
+    private final RatingService ratingService;
+    private final int snapshotInterval;
+    private final SearchEngine searchEngine;
+    private final long hintTimeMs;
+    private final long botTimeMs;
+    private final Set<ObjectId> hinting;
+    // running match of each player, restored on the presence when the player connects
+    private final ConcurrentHashMap<ObjectId, ObjectId> playing;
+
+    @Autowired
+    public GameService(@Qualifier("mongo_match_log") IMatchLog matchLog, RatingService ratingService,
+                       PresenceRegistry presenceRegistry, SearchEngine searchEngine, MeterRegistry meterRegistry,
+                       @Value("${tbsg.game.threads:0}") int threads,
+                       @Value("${tbsg.game.timer-tick-ms:10}") long timerTickMs,
+                       @Value("${tbsg.matchlog.snapshot-interval:16}") int snapshotInterval,
+                       @Value("${tbsg.ai.hint-ms:200}") long hintTimeMs,
+                       @Value("${tbsg.ai.bot-ms:500}") long botTimeMs) {
+        this.matchLog = matchLog;
+        this.ratingService = ratingService;
+        this.snapshotInterval = snapshotInterval;
+        this.searchEngine = searchEngine;
+        this.hintTimeMs = hintTimeMs;
+        this.botTimeMs = botTimeMs;
+        this.hinting = ConcurrentHashMap.newKeySet();
+        this.matches = new ConcurrentHashMap<>();
+        this.playing = new ConcurrentHashMap<>();
+        this.presenceRegistry = presenceRegistry;
+        var counter = new AtomicInteger();
+        this.executor = Executors.newFixedThreadPool(threads > 0 ? threads : Runtime.getRuntime().availableProcessors(),
+                runnable -> {
+                    var thread = new Thread(runnable, "game-" + counter.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                });
+        this.timingWheel = new TimingWheel("game", timerTickMs, meterRegistry);
+    }
+
+    @PostConstruct
+    public void recover() {
+        // nothing calls MatchActor#schedule yet, turn deadlines would have to be scheduled again here
+        for (var match : matchLog.recover()) {
+            var actor = new MatchActor(match, executor, timingWheel);
+            matches.put(match.getId(), actor);
+            play(match.getPlayer(0), match.getId());
+            play(match.getPlayer(1), match.getId());
+            actor.tell(m -> playBot(actor, m));
+        }
+    }
+
+    public void connect(ObjectId user, IPlayerConnection connection) {
+        var previous = presenceRegistry.connect(user, connection);
+        if (previous != null) {
+            previous.getConnection().send(GameMessage.error(null, "Connected from another session"));
+            previous.getConnection().close();
+        }
+        var match = playing.get(user);
+        if (match != null) {
+            presenceRegistry.setMatch(user, match);
+        }
+    }
+
+    public void disconnect(ObjectId user, IPlayerConnection connection) {
+        presenceRegistry.disconnect(user, connection);
+    }
+
+    public Optional<MatchActor> getMatch(ObjectId id) {
+        return Optional.ofNullable(matches.get(id));
+    }
+
+    public ObjectId createMatch(ObjectId player1, ObjectId player2) {
+        var match = new Match(ObjectId.get(), player1, player2);
+        var actor = new MatchActor(match, executor, timingWheel);
+        matches.put(match.getId(), actor);
+        play(player1, match.getId());
+        play(player2, match.getId());
+        actor.tell(m -> {
+            matchLog.snapshot(m);
+            send(m.getPlayer(0), GameMessage.state(m, 0));
+            send(m.getPlayer(1), GameMessage.state(m, 1));
+            playBot(actor, m);
+        });
+        logger.info("Created match {}", match.getId().toHexString());
+        return match.getId();
+    }
+
+    /**
+     * Creates a match of the user against the bot, the user moves first.
+     */
+    public ObjectId createBotMatch(ObjectId user) {
+        return createMatch(user, BOT);
+    }
+
+    public void join(ObjectId user, ObjectId matchId) {
+        var actor = matches.get(matchId);
+        if (actor == null) {
+            send(user, GameMessage.error(matchId, "Unknown match"));
+            return;
+        }
+        actor.tell(match -> {
+            var player = match.indexOf(user);
+            if (player < 0) {
+                send(user, GameMessage.error(matchId, "Not a player of this match"));
+            } else {
+                presenceRegistry.setMatch(user, matchId);
+                send(user, GameMessage.state(match, player));
+            }
+        });
+    }
+
+    public void submitTurn(ObjectId user, ObjectId matchId, int turn, int move) {
+        var actor = matches.get(matchId);
+        if (actor == null) {
+            send(user, GameMessage.error(matchId, "Unknown match"));
+            return;
+        }
+        actor.tell(match -> applyTurn(actor, match, user, turn, move));
+    }
+
+    /**
+     * Searches the best move of the user for the current turn, answered with a hint message.
+     */
+    public void hint(ObjectId user, ObjectId matchId) {
+        var actor = matches.get(matchId);
+        if (actor == null) {
+            send(user, GameMessage.error(matchId, "Unknown match"));
+            return;
+        }
+        actor.tell(match -> {
+            var player = match.indexOf(user);
+            if (player < 0) {
+                send(user, GameMessage.error(matchId, "Not a player of this match"));
+                return;
+            }
+            if (match.isFinished() || match.getCurrent() != player) {
+                send(user, GameMessage.error(matchId, "No hint available"));
+                return;
+            }
+            if (!hinting.add(user)) {
+                send(user, GameMessage.error(matchId, "Hint already requested"));
+                return;
+            }
+            var turn = match.getTurn();
+            // the snapshot leaves the actor, the live board does not
+            searchEngine.search(match.getBoard().snapshot(), player, hintTimeMs).whenComplete((result, e) -> {
+                hinting.remove(user);
+                if (e != null) {
+                    logger.error("Hint search of match {} failed", matchId.toHexString(), e);
+                    send(user, GameMessage.error(matchId, "No hint available"));
+                } else {
+                    send(user, GameMessage.hint(matchId, turn, player, result.getMove()));
+                }
+            });
+        });
+    }
+
+    private void applyTurn(MatchActor actor, Match match, ObjectId user, int turn, int move) {
+        var matchId = match.getId();
+        var player = match.indexOf(user);
+        var result = match.apply(player, turn, move);
+        if (result != MoveResult.OK) {
+            if (BOT.equals(user)) {
+                logger.error("Bot move {} of match {} rejected with {}", move, matchId.toHexString(), result);
+            }
+            send(user, GameMessage.error(matchId, result.name()));
+            return;
+        }
+        matchLog.append(match, turn, player, move);
+        if (match.isFinished() || match.getTurn() % snapshotInterval == 0) {
+            matchLog.snapshot(match);
+        }
+        if (match.isFinished()) {
+            actor.cancelTimers();
+            playing.remove(match.getPlayer(0), matchId);
+            playing.remove(match.getPlayer(1), matchId);
+            if (match.indexOf(BOT) < 0) {
+                ratingService.matchFinished(match);
+            }
+        }
+        var message = GameMessage.turn(match, turn, player, move);
+        send(match.getPlayer(0), message);
+        send(match.getPlayer(1), message);
+        if (match.isFinished()) {
+            // later submissions are answered as unknown match
+            matches.remove(matchId, actor);
+        } else {
+            playBot(actor, match);
+        }
+    }
+
+    /**
+     * Searches the move of the bot if it is its turn, called on the match actor.
+     */
+    private void playBot(MatchActor actor, Match match) {
+        if (match.isFinished() || !BOT.equals(match.getPlayer(match.getCurrent()))) {
+            return;
+        }
+        var turn = match.getTurn();
+        searchEngine.search(match.getBoard().snapshot(), match.getCurrent(), botTimeMs).whenComplete((result, e) -> {
+            if (e != null) {
+                logger.error("Bot search of match {} failed", match.getId().toHexString(), e);
+            } else {
+                actor.tell(m -> applyTurn(actor, m, BOT, turn, result.getMove()));
+            }
+        });
+    }
+
+    private void play(ObjectId user, ObjectId matchId) {
+        if (BOT.equals(user)) {
+            return;
+        }
+        playing.put(user, matchId);
+        presenceRegistry.setMatch(user, matchId);
+    }
+
+    private void send(ObjectId user, GameMessage message) {
+        var connection = presenceRegistry.getConnection(user);
+        if (connection != null) {
+            connection.send(message);
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        timingWheel.close();
+        executor.shutdown();
+    }
+}
@@ -0,0 +1,12 @@
+package ch.zxseitz.tbsg.game;
+
+public interface IPlayerConnection {
+    void send(GameMessage message);
+
+    /**
+     * Asks the client for a sign of life, answered like any message by a heartbeat.
+     */
+    void ping();
+
+    void close();
+}
@@ -0,0 +1,137 @@
+package ch.zxseitz.tbsg.game;
+
+import ch.zxseitz.tbsg.game.othello.Board;
+import ch.zxseitz.tbsg.game.othello.BoardSnapshot;
+import org.bson.types.ObjectId;
+
+/**
+ * State of a running othello match between two players. Not thread safe, a match is only ever touched by the
+ * thread currently draining its {@link MatchActor}.
+ */
+public class Match {
+    private final ObjectId id;
+    private final ObjectId[] players;
+    private final Board board;
+    private int turn;
+    private int current;
+    private boolean finished;
+    private long lastFlips;
+
+    public Match(ObjectId id, ObjectId player1, ObjectId player2) {
+        this.id = id;
+        this.players = new ObjectId[]{player1, player2};
+        this.board = Board.initial();
+        this.turn = 0;
+        this.current = 0;
+        this.finished = false;
+        this.lastFlips = 0;
+    }
+
+    /**
+     * Restores a match from persisted state.
+     */
+    public Match(ObjectId id, ObjectId player1, ObjectId player2, BoardSnapshot board, int turn, int current,
+                 boolean finished) {
+        this.id = id;
+        this.players = new ObjectId[]{player1, player2};
+        this.board = board.toBoard();
+        this.turn = turn;
+        this.current = current;
+        this.finished = finished;
+        this.lastFlips = 0;
+    }
+
+    public ObjectId getId() {
+        return id;
+    }
+
+    public ObjectId getPlayer(int index) {
+        return players[index];
+    }
+
+    /**
+     * Returns the index of the user in this match or -1, if the user does not play this match.
+     */
+    public int indexOf(ObjectId user) {
+        if (players[0].equals(user)) {
+            return 0;
+        }
+        if (players[1].equals(user)) {
+            return 1;
+        }
+        return -1;
+    }
+
+    public int getTurn() {
+        return turn;
+    }
+
+    public int getCurrent() {
+        return current;
+    }
+
+    public boolean isFinished() {
+        return finished;
+    }
+
+    /**
+     * Live board of the match, only to be read by the actor thread. Use {@link Board#snapshot()} to hand it out.
+     */
+    public Board getBoard() {
+        return board;
+    }
+
+    /**
+     * Discs flipped by the last applied move, together with the move this is the diff of the last turn.
+     */
+    public long getLastFlips() {
+        return lastFlips;
+    }
+
+    /**
+     * Returns the index of the player with more discs, -1 if the match is a draw or still running.
+     */
+    public int getWinner() {
+        if (!finished) {
+            return -1;
+        }
+        var difference = board.count(0) - board.count(1);
+        return difference > 0 ? 0 : difference < 0 ? 1 : -1;
+    }
+
+    /**
+     * Applies the move of the player, turn is the turn number the client saw when submitting the move and
+     * guards against duplicated or outdated submissions. A move is a square or {@link Board#PASS}, which is
+     * only legal without any other legal move. The match finishes once neither player can move.
+     */
+    public MoveResult apply(int player, int turn, int move) {
+        if (finished) {
+            return MoveResult.FINISHED;
+        }
+        if (player < 0) {
+            return MoveResult.NOT_A_PLAYER;
+        }
+        if (player != current) {
+            return MoveResult.NOT_YOUR_TURN;
+        }
+        if (turn != this.turn) {
+            return MoveResult.WRONG_TURN;
+        }
+        if (move == Board.PASS) {
+            if (board.hasLegalMove(player)) {
+                return MoveResult.INVALID_MOVE;
+            }
+            lastFlips = 0;
+        } else {
+            var flips = board.apply(player, move);
+            if (flips == 0) {
+                return MoveResult.INVALID_MOVE;
+            }
+            lastFlips = flips;
+        }
+        this.turn++;
+        this.current = 1 - current;
+        this.finished = !board.hasLegalMove(current) && !board.hasLegalMove(1 - current);
+        return MoveResult.OK;
+    }
+}
@@ -0,0 +1,102 @@
+package ch.zxseitz.tbsg.game;
+
+import org.bson.types.ObjectId;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
+
+/**
+ * Single writer of a match. Tasks are queued lock free and drained by at most one thread of the shared
+ * executor at a time, so match state needs no further synchronization. Timers like turn deadlines and clocks
+ * run on the shared {@link TimingWheel} and are told to the actor when they fire.
+ */
+public class MatchActor implements Runnable {
+    private static final Logger logger = LoggerFactory.getLogger(MatchActor.class);
+    private static final int BATCH_SIZE = 64;
+
+    private final Match match;
+    private final Executor executor;
+    private final ConcurrentLinkedQueue<Consumer<Match>> mailbox;
+    private final AtomicBoolean scheduled;
+    private final TimingWheel timingWheel;
+    private final ConcurrentHashMap<ObjectId, TimingWheel.Timeout> timers;
+
+    public MatchActor(Match match, Executor executor, TimingWheel timingWheel) {
+        this.match = match;
+        this.executor = executor;
+        this.mailbox = new ConcurrentLinkedQueue<>();
+        this.scheduled = new AtomicBoolean();
+        this.timingWheel = timingWheel;
+        this.timers = new ConcurrentHashMap<>();
+    }
+
+    public Match getMatch() {
+        return match;
+    }
+
+    public void tell(Consumer<Match> task) {
+        mailbox.offer(task);
+        if (scheduled.compareAndSet(false, true)) {
+            executor.execute(this);
+        }
+    }
+
+    /**
+     * Tells the task to the actor after the delay, unless the timer is cancelled or replaced before it runs.
+     * Key is a player id for turn deadlines and player clocks, or the match id for match wide timers. A timer
+     * replaces the previous one of the same key.
+     */
+    public void schedule(ObjectId key, long delayMs, Consumer<Match> task) {
+        // scheduled under the lock of the key, a timeout firing at once cannot remove itself before it is put
+        timers.compute(key, (k, previous) -> {
+            if (previous != null) {
+                previous.cancel();
+            }
+            return timingWheel.schedule(delayMs, TimeUnit.MILLISECONDS, t -> tell(m -> {
+                // cancelled while queued in the mailbox
+                if (!t.isCancelled() && timers.remove(key, t)) {
+                    task.accept(m);
+                }
+            }));
+        });
+    }
+
+    public void cancel(ObjectId key) {
+        var timeout = timers.remove(key);
+        if (timeout != null) {
+            timeout.cancel();
+        }
+    }
+
+    public void cancelTimers() {
+        for (var key : timers.keySet()) {
+            cancel(key);
+        }
+    }
+
+    @Override
+    public void run() {
+        // drain a bounded batch, so a busy match cannot starve the others on the same thread
+        for (var i = 0; i < BATCH_SIZE; i++) {
+            var task = mailbox.poll();
+            if (task == null) {
+                break;
+            }
+            try {
+                task.accept(match);
+            } catch (Exception e) {
+                logger.error("Error in match {}", match.getId().toHexString(), e);
+            }
+        }
+        scheduled.set(false);
+        if (!mailbox.isEmpty() && scheduled.compareAndSet(false, true)) {
+            executor.execute(this);
+        }
+    }
+}
@@ -0,0 +1,10 @@
+package ch.zxseitz.tbsg.game;
+
+public enum MoveResult {
+    OK,
+    NOT_A_PLAYER,
+    NOT_YOUR_TURN,
+    WRONG_TURN,
+    INVALID_MOVE,
+    FINISHED
+}
@@ -0,0 +1,303 @@
+package ch.zxseitz.tbsg.game;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Consumer;
+
+/**
+ * Hierarchical timing wheel for large numbers of mostly cancelled timeouts, like turn deadlines. Five levels of
+ * 64 slots cover delays of up to 64^5 ticks, at the default tick of 10 ms about 124 days. Timeouts are linked
+ * into the slot of their deadline tick and moved one level down whenever the slot above is reached, so
+ * scheduling and cancelling are O(1), firing is amortized O(levels). The top level wraps around: a timeout
+ * that is still a full rotation away when its slot is reached is linked into the same slot again.
+ * <p>
+ * The slots belong to a single wheel thread. Other threads hand scheduled and cancelled timeouts over through
+ * lock free queues, which the wheel thread drains every tick. Timeouts fire at most one tick late, on the
+ * wheel thread: tasks must only hand the work over, e.g. to {@link MatchActor#tell(Consumer)}.
+ */
+public class TimingWheel implements AutoCloseable {
+    private static final Logger logger = LoggerFactory.getLogger(TimingWheel.class);
+    private static final int BITS = 6;
+    private static final int SLOTS = 1 << BITS;
+    private static final int LEVELS = 5;
+    private static final long SPAN = 1L << (BITS * LEVELS);
+
+    private final long tickNanos;
+    private final long start;
+    private final Slot[][] wheels;
+    private final ConcurrentLinkedQueue<Timeout> scheduled;
+    private final ConcurrentLinkedQueue<Timeout> cancelled;
+    private final AtomicLong pending;
+    private final Counter fired;
+    private final Thread thread;
+    private long tick;
+    private volatile boolean running;
+
+    public TimingWheel(String name, long tickMs, MeterRegistry meterRegistry) {
+        this(name, tickMs, 0, meterRegistry);
+    }
+
+    /**
+     * Starts the wheel as if it had already been running for the given number of ticks.
+     */
+    TimingWheel(String name, long tickMs, long elapsedTicks, MeterRegistry meterRegistry) {
+        this.tickNanos = TimeUnit.MILLISECONDS.toNanos(tickMs);
+        this.start = System.nanoTime() - elapsedTicks * tickNanos;
+        this.tick = elapsedTicks;
+        this.wheels = new Slot[LEVELS][SLOTS];
+        for (var level = 0; level < LEVELS; level++) {
+            for (var slot = 0; slot < SLOTS; slot++) {
+                wheels[level][slot] = new Slot();
+            }
+        }
+        this.scheduled = new ConcurrentLinkedQueue<>();
+        this.cancelled = new ConcurrentLinkedQueue<>();
+        this.pending = new AtomicLong();
+        this.fired = meterRegistry.counter("tbsg.timers.fired", "wheel", name);
+        Gauge.builder("tbsg.timers.pending", pending, AtomicLong::get)
+                .tag("wheel", name)
+                .register(meterRegistry);
+        this.running = true;
+        this.thread = new Thread(this::run, "timing-wheel-" + name);
+        this.thread.setDaemon(true);
+        this.thread.start();
+    }
+
+    /**
+     * Runs the task with its timeout on the wheel thread after the delay.
+     *
+     * @throws IllegalArgumentException if the delay exceeds the range of the wheel
+     */
+    public Timeout schedule(long delay, TimeUnit unit, Consumer<Timeout> task) {
+        var now = System.nanoTime() - start;
+        var deadlineTick = (now + unit.toNanos(delay) + tickNanos - 1) / tickNanos;
+        if (deadlineTick - now / tickNanos >= SPAN) {
+            throw new IllegalArgumentException(String.format("Delay of %d %s exceeds the timing wheel", delay, unit));
+        }
+        var timeout = new Timeout(this, deadlineTick, task);
+        pending.incrementAndGet();
+        scheduled.offer(timeout);
+        return timeout;
+    }
+
+    public long pending() {
+        return pending.get();
+    }
+
+    /**
+     * Stops the wheel thread, pending timeouts do not fire anymore. Waits for a firing tick to complete, unless
+     * the caller is interrupted, which keeps its interrupt status.
+     */
+    @Override
+    public void close() {
+        running = false;
+        LockSupport.unpark(thread);
+        try {
+            thread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void run() {
+        while (running) {
+            var now = (System.nanoTime() - start) / tickNanos;
+            if (now <= tick) {
+                LockSupport.parkNanos(start + (tick + 1) * tickNanos - System.nanoTime());
+                continue;
+            }
+            // handed over timeouts are linked as of the next tick, overdue ones fire with it
+            tick++;
+            unlinkCancelled();
+            linkScheduled();
+            advance(tick);
+            while (tick < now) {
+                advance(++tick);
+            }
+        }
+    }
+
+    private void unlinkCancelled() {
+        Timeout timeout;
+        while ((timeout = cancelled.poll()) != null) {
+            if (timeout.slot != null) {
+                timeout.slot.unlink(timeout);
+                pending.decrementAndGet();
+            }
+        }
+    }
+
+    private void linkScheduled() {
+        Timeout timeout;
+        while ((timeout = scheduled.poll()) != null) {
+            if (timeout.isCancelled()) {
+                pending.decrementAndGet();
+            } else {
+                link(timeout);
+            }
+        }
+    }
+
+    private void link(Timeout timeout) {
+        if (timeout.deadline <= tick) {
+            // due, the slot of the current tick is expired next
+            wheels[0][(int) (tick & (SLOTS - 1))].link(timeout);
+            return;
+        }
+        // lowest level on which deadline and current tick agree on all higher bits
+        var level = 0;
+        while (level < LEVELS - 1 && (timeout.deadline >>> (BITS * (level + 1))) != (tick >>> (BITS * (level + 1)))) {
+            level++;
+        }
+        wheels[level][(int) ((timeout.deadline >>> (BITS * level)) & (SLOTS - 1))].link(timeout);
+    }
+
+    private void advance(long tick) {
+        // move the reached slots of the upper levels down, highest first
+        for (var level = LEVELS - 1; level > 0; level--) {
+            if ((tick & ((1L << (BITS * level)) - 1)) == 0) {
+                // detached first, a timeout of the top level may go back into the same slot
+                var timeout = wheels[level][(int) ((tick >>> (BITS * level)) & (SLOTS - 1))].clear();
+                while (timeout != null) {
+                    var next = timeout.next;
+                    link(timeout);
+                    timeout = next;
+                }
+            }
+        }
+        var slot = wheels[0][(int) (tick & (SLOTS - 1))];
+        Timeout timeout;
+        while ((timeout = slot.poll()) != null) {
+            pending.decrementAndGet();
+            if (timeout.expire()) {
+                fired.increment();
+                try {
+                    timeout.task.accept(timeout);
+                } catch (Exception e) {
+                    logger.error("Error in timeout task", e);
+                }
+            }
+        }
+    }
+
+    /**
+     * Handle of a scheduled task.
+     */
+    public static final class Timeout {
+        private static final int PENDING = 0;
+        private static final int EXPIRED = 1;
+        private static final int CANCELLED = 2;
+
+        private final TimingWheel wheel;
+        private final long deadline;
+        private final Consumer<Timeout> task;
+        private final AtomicInteger state;
+        // owned by the wheel thread
+        private Slot slot;
+        private Timeout previous;
+        private Timeout next;
+
+        private Timeout(TimingWheel wheel, long deadline, Consumer<Timeout> task) {
+            this.wheel = wheel;
+            this.deadline = deadline;
+            this.task = task;
+            this.state = new AtomicInteger(PENDING);
+        }
+
+        /**
+         * Cancels the timeout. Also succeeds after the timeout expired, so a task handed over to another
+         * thread can still check {@link #isCancelled()} before it runs.
+         *
+         * @return false if it was already cancelled
+         */
+        public boolean cancel() {
+            while (true) {
+                var current = state.get();
+                if (current == CANCELLED) {
+                    return false;
+                }
+                if (state.compareAndSet(current, CANCELLED)) {
+                    if (current == PENDING) {
+                        wheel.cancelled.offer(this);
+                    }
+                    return true;
+                }
+            }
+        }
+
+        public boolean isCancelled() {
+            return state.get() == CANCELLED;
+        }
+
+        public boolean isExpired() {
+            return state.get() == EXPIRED;
+        }
+
+        private boolean expire() {
+            return state.compareAndSet(PENDING, EXPIRED);
+        }
+    }
+
+    /**
+     * Doubly linked list of the timeouts of one slot.
+     */
+    private static final class Slot {
+        private Timeout head;
+        private Timeout tail;
+
+        void link(Timeout timeout) {
+            timeout.slot = this;
+            timeout.previous = tail;
+            timeout.next = null;
+            if (tail == null) {
+                head = timeout;
+            } else {
+                tail.next = timeout;
+            }
+            tail = timeout;
+        }
+
+        void unlink(Timeout timeout) {
+            if (timeout.previous == null) {
+                head = timeout.next;
+            } else {
+                timeout.previous.next = timeout.next;
+            }
+            if (timeout.next == null) {
+                tail = timeout.previous;
+            } else {
+                timeout.next.previous = timeout.previous;
+            }
+            timeout.slot = null;
+            timeout.previous = null;
+            timeout.next = null;
+        }
+
+        /**
+         * Empties the slot and returns the former head, the timeouts stay chained by next until relinked.
+         */
+        Timeout clear() {
+            var timeout = head;
+            head = null;
+            tail = null;
+            return timeout;
+        }
+
+        Timeout poll() {
+            var timeout = head;
+            if (timeout != null) {
+                unlink(timeout);
+            }
+            return timeout;
+        }
+    }
+}
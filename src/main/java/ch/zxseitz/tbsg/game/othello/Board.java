@@ -0,0 +1,181 @@
+package ch.zxseitz.tbsg.game.othello;
+
+/**
+ * Othello board as two bitboards, one per player. Square {@code row * 8 + column} is bit {@code 1L << square},
+ * row 0 being the top row. Player 0 plays black and moves first.
+ * <p>
+ * Move generation and application work on the two longs in place and never allocate. Not thread safe.
+ */
+public final class Board {
+    public static final int SIZE = 8;
+    public static final int SQUARES = SIZE * SIZE;
+    /**
+     * Move of a player without any legal move.
+     */
+    public static final int PASS = SQUARES;
+
+    private static final long NOT_FIRST_COLUMN = 0xfefefefefefefefeL;
+    private static final long NOT_LAST_COLUMN = 0x7f7f7f7f7f7f7f7fL;
+    // shift per direction, positive shifts left, and the mask removing discs wrapped around the board edge
+    private static final int[] SHIFTS = {1, -1, 8, -8, 9, 7, -7, -9};
+    private static final long[] MASKS = {
+            NOT_FIRST_COLUMN, NOT_LAST_COLUMN, -1L, -1L,
+            NOT_FIRST_COLUMN, NOT_LAST_COLUMN, NOT_FIRST_COLUMN, NOT_LAST_COLUMN
+    };
+
+    private long discs0;
+    private long discs1;
+
+    public Board(long discs0, long discs1) {
+        if ((discs0 & discs1) != 0) {
+            throw new IllegalArgumentException("Squares occupied by both players");
+        }
+        this.discs0 = discs0;
+        this.discs1 = discs1;
+    }
+
+    public static Board initial() {
+        return new Board(square(3, 4) | square(4, 3), square(3, 3) | square(4, 4));
+    }
+
+    public static long square(int row, int column) {
+        return 1L << (row * SIZE + column);
+    }
+
+    public long getDiscs(int player) {
+        return player == 0 ? discs0 : discs1;
+    }
+
+    public long getEmpty() {
+        return ~(discs0 | discs1);
+    }
+
+    public int count(int player) {
+        return Long.bitCount(getDiscs(player));
+    }
+
+    /**
+     * Returns the owner of the square or -1, if it is empty.
+     */
+    public int get(int square) {
+        var bit = 1L << square;
+        return (discs0 & bit) != 0 ? 0 : (discs1 & bit) != 0 ? 1 : -1;
+    }
+
+    public long legalMoves(int player) {
+        return legalMoves(getDiscs(player), getDiscs(1 - player));
+    }
+
+    public boolean hasLegalMove(int player) {
+        return legalMoves(player) != 0;
+    }
+
+    /**
+     * Returns the discs the player would flip by placing a disc on the square, 0 if the move is illegal.
+     */
+    public long flips(int player, int square) {
+        if (square < 0 || square >= SQUARES) {
+            return 0;
+        }
+        return flips(getDiscs(player), getDiscs(1 - player), 1L << square);
+    }
+
+    /**
+     * Places a disc of the player on the square and flips the enclosed discs of the opponent.
+     *
+     * @return the flipped discs, 0 if the move is illegal and the board was left unchanged
+     */
+    public long apply(int player, int square) {
+        var flips = flips(player, square);
+        if (flips != 0) {
+            set(player, square, flips);
+        }
+        return flips;
+    }
+
+    /**
+     * Reverts a move previously applied with the returned flips.
+     */
+    public void undo(int player, int square, long flips) {
+        var bit = 1L << square;
+        if (player == 0) {
+            discs0 &= ~(flips | bit);
+            discs1 |= flips;
+        } else {
+            discs1 &= ~(flips | bit);
+            discs0 |= flips;
+        }
+    }
+
+    public BoardSnapshot snapshot() {
+        return new BoardSnapshot(discs0, discs1);
+    }
+
+    void set(int player, int square, long flips) {
+        var bit = 1L << square;
+        if (player == 0) {
+            discs0 |= flips | bit;
+            discs1 &= ~flips;
+        } else {
+            discs1 |= flips | bit;
+            discs0 &= ~flips;
+        }
+    }
+
+    static long legalMoves(long own, long opponent) {
+        var empty = ~(own | opponent);
+        var moves = 0L;
+        for (var direction = 0; direction < SHIFTS.length; direction++) {
+            // at most six opponent discs fit between a disc and an empty square
+            var line = shift(own, direction) & opponent;
+            line |= shift(line, direction) & opponent;
+            line |= shift(line, direction) & opponent;
+            line |= shift(line, direction) & opponent;
+            line |= shift(line, direction) & opponent;
+            line |= shift(line, direction) & opponent;
+            moves |= shift(line, direction) & empty;
+        }
+        return moves;
+    }
+
+    static long flips(long own, long opponent, long bit) {
+        if (((own | opponent) & bit) != 0) {
+            return 0;
+        }
+        var flips = 0L;
+        for (var direction = 0; direction < SHIFTS.length; direction++) {
+            var line = 0L;
+            var cursor = shift(bit, direction);
+            while ((cursor & opponent) != 0) {
+                line |= cursor;
+                cursor = shift(cursor, direction);
+            }
+            if ((cursor & own) != 0) {
+                flips |= line;
+            }
+        }
+        return flips;
+    }
+
+    private static long shift(long discs, int direction) {
+        var shift = SHIFTS[direction];
+        return (shift > 0 ? discs << shift : discs >>> -shift) & MASKS[direction];
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (o == null || getClass() != o.getClass()) {
+            return false;
+        }
+        var board = (Board) o;
+        return discs0 == board.discs0 && discs1 == board.discs1;
+    }
+
+    @Override
+    public int hashCode() {
+        return 31 * Long.hashCode(discs0) + Long.hashCode(discs1);
+    }
+}
@@ -0,0 +1,67 @@
+package ch.zxseitz.tbsg.game.othello;
+
+/**
+ * Immutable copy of a {@link Board}, safe to share across threads. A turn is sent and stored as a diff, the
+ * square and the flipped discs, which {@link #apply(int, int, long)} replays onto a snapshot.
+ */
+public final class BoardSnapshot {
+    private final long discs0;
+    private final long discs1;
+
+    public BoardSnapshot(long discs0, long discs1) {
+        this.discs0 = discs0;
+        this.discs1 = discs1;
+    }
+
+    public long getDiscs(int player) {
+        return player == 0 ? discs0 : discs1;
+    }
+
+    /**
+     * Returns the owner of the square or -1, if it is empty.
+     */
+    public int get(int square) {
+        var bit = 1L << square;
+        return (discs0 & bit) != 0 ? 0 : (discs1 & bit) != 0 ? 1 : -1;
+    }
+
+    /**
+     * Returns the snapshot after the diff of a turn, a pass leaves the board unchanged.
+     */
+    public BoardSnapshot apply(int player, int square, long flips) {
+        if (square == Board.PASS) {
+            return this;
+        }
+        var board = toBoard();
+        board.set(player, square, flips);
+        return board.snapshot();
+    }
+
+    /**
+     * Returns the squares whose owner differs between the two snapshots.
+     */
+    public long diff(BoardSnapshot other) {
+        return (discs0 ^ other.discs0) | (discs1 ^ other.discs1);
+    }
+
+    public Board toBoard() {
+        return new Board(discs0, discs1);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (o == null || getClass() != o.getClass()) {
+            return false;
+        }
+        var snapshot = (BoardSnapshot) o;
+        return discs0 == snapshot.discs0 && discs1 == snapshot.discs1;
+    }
+
+    @Override
+    public int hashCode() {
+        return 31 * Long.hashCode(discs0) + Long.hashCode(discs1);
+    }
+}
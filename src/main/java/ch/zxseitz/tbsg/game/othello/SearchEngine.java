@@ -0,0 +1,117 @@
+package ch.zxseitz.tbsg.game.othello;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PreDestroy;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Move search for the hints of {@link ch.zxseitz.tbsg.game.GameService}: iterative deepening alpha-beta, see
+ * {@link SearchTask}, on a work stealing pool with a transposition table shared by all searches. Concurrent
+ * searches interleave on the same workers, a single search spreads over all idle ones.
+ * <p>
+ * Every search stops at its deadline and returns the best move of the deepest completed iteration. No new
+ * iteration is started after half of the time limit, since it would hardly complete.
+ */
+@Service
+public class SearchEngine {
+    private static final Logger logger = LoggerFactory.getLogger(SearchEngine.class);
+
+    /**
+     * Score of a won game, the final disc difference is added on top.
+     */
+    public static final int WIN = 10000;
+    public static final int MAX_DEPTH = 60;
+
+    private final ForkJoinPool pool;
+    private final TranspositionTable table;
+    private final int splitDepth;
+    private final Timer searches;
+    private final Counter nodes;
+
+    @Autowired
+    public SearchEngine(MeterRegistry meterRegistry,
+                        @Value("${tbsg.ai.threads:0}") int threads,
+                        @Value("${tbsg.ai.table-mb:16}") int tableMb,
+                        @Value("${tbsg.ai.split-depth:4}") int splitDepth) {
+        this.pool = new ForkJoinPool(threads > 0 ? threads : Runtime.getRuntime().availableProcessors(),
+                pool -> {
+                    var thread = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(pool);
+                    thread.setName("search-" + thread.getPoolIndex());
+                    thread.setDaemon(true);
+                    return thread;
+                }, null, false);
+        this.table = new TranspositionTable(tableMb);
+        this.splitDepth = splitDepth;
+        this.searches = Timer.builder("tbsg.ai.search")
+                .publishPercentileHistogram()
+                .register(meterRegistry);
+        this.nodes = meterRegistry.counter("tbsg.ai.nodes");
+        logger.info("Started search pool with {} threads and {} transposition table entries",
+                pool.getParallelism(), table.capacity());
+    }
+
+    /**
+     * Searches the best move of the player on the search pool.
+     */
+    public CompletableFuture<SearchResult> search(BoardSnapshot board, int player, long timeLimitMs) {
+        return CompletableFuture.supplyAsync(() -> search(board, player, timeLimitMs, MAX_DEPTH), pool);
+    }
+
+    /**
+     * Searches the best move of the player up to maxDepth plies or until the time limit, blocks the caller.
+     */
+    public SearchResult search(BoardSnapshot board, int player, long timeLimitMs, int maxDepth) {
+        var start = System.nanoTime();
+        var own = board.getDiscs(player);
+        var opponent = board.getDiscs(1 - player);
+        var moves = Board.legalMoves(own, opponent);
+        if (Long.bitCount(moves) <= 1) {
+            return new SearchResult(moves == 0 ? Board.PASS : Long.numberOfTrailingZeros(moves), 0, 0, 0, 0);
+        }
+        var limit = TimeUnit.MILLISECONDS.toNanos(timeLimitMs);
+        // entries of searches more than a second ago are replaced first
+        var generation = (int) (start >>> 30) & 0xff;
+        var empty = Long.bitCount(~(own | opponent));
+        SearchResult result = null;
+        long searched = 0;
+        for (var depth = 1; depth <= Math.min(maxDepth, empty); depth++) {
+            var search = new SearchTask.Search(table, splitDepth, start + limit, generation);
+            var task = new SearchTask(search, own, opponent, depth);
+            var score = ForkJoinTask.getPool() == pool ? task.invoke() : pool.invoke(task);
+            searched += search.nodes.sum();
+            if (score == null) {
+                break;
+            }
+            result = new SearchResult(task.getBestMove(), score, depth, searched, System.nanoTime() - start);
+            if (Math.abs(score) > WIN || System.nanoTime() - start > limit / 2) {
+                break;
+            }
+        }
+        nodes.increment(searched);
+        searches.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        if (result == null) {
+            return new SearchResult(Long.numberOfTrailingZeros(moves), 0, 0, searched, System.nanoTime() - start);
+        }
+        return result;
+    }
+
+    public TranspositionTable getTable() {
+        return table;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        pool.shutdown();
+    }
+}
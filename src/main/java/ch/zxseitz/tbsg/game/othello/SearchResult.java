@@ -0,0 +1,45 @@
+package ch.zxseitz.tbsg.game.othello;
+
+/**
+ * Outcome of a {@link SearchEngine} search: the best move of the deepest completed iteration and its score
+ * from the view of the searching player. Scores beyond {@link SearchEngine#WIN} are proven wins, the excess
+ * being the final disc difference.
+ */
+public final class SearchResult {
+    private final int move;
+    private final int score;
+    private final int depth;
+    private final long nodes;
+    private final long nanos;
+
+    public SearchResult(int move, int score, int depth, long nodes, long nanos) {
+        this.move = move;
+        this.score = score;
+        this.depth = depth;
+        this.nodes = nodes;
+        this.nanos = nanos;
+    }
+
+    /**
+     * Returns the square to play or {@link Board#PASS}.
+     */
+    public int getMove() {
+        return move;
+    }
+
+    public int getScore() {
+        return score;
+    }
+
+    public int getDepth() {
+        return depth;
+    }
+
+    public long getNodes() {
+        return nodes;
+    }
+
+    public long getNanos() {
+        return nanos;
+    }
+}
@@ -0,0 +1,300 @@
+package ch.zxseitz.tbsg.game.othello;
+
+import java.util.ArrayList;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Negamax alpha-beta search over the two bitboards, from the view of the player to move. Positions are passed
+ * by value, so tasks share nothing but the transposition table and the split points.
+ * <p>
+ * Parallel by young brothers wait: at nodes of at least splitDepth remaining plies, the first move is searched
+ * alone and the remaining moves are forked as tasks sharing the alpha of the split. A beta cutoff of any of
+ * them cancels the others. Stopped tasks, by the deadline or a cutoff above them, return null.
+ */
+final class SearchTask extends RecursiveTask<Integer> {
+    static final int INFINITY = 32000;
+
+    private static final long serialVersionUID = 1L;
+    private static final int CHECK_INTERVAL = 1023;
+    private static final long CORNERS = 0x8100000000000081L;
+    private static final long X_SQUARES = 0x0042000000004200L;
+    private static final long C_SQUARES = 0x4281000000008142L;
+    private static final long EDGES = 0x3c0081818181003cL;
+    private static final long INNER = ~(CORNERS | X_SQUARES | C_SQUARES | EDGES);
+    // move ordering, most promising squares first
+    private static final long[] ORDER = {CORNERS, EDGES, INNER, C_SQUARES, X_SQUARES};
+
+    private final Search search;
+    private final Split split;
+    private final long own;
+    private final long opponent;
+    private final int depth;
+    private final int ply;
+    private final int move;
+    private long nodes;
+    private boolean stopped;
+    private int bestMove;
+
+    /**
+     * Root task searching the position with the full window.
+     */
+    SearchTask(Search search, long own, long opponent, int depth) {
+        this(search, null, own, opponent, depth, 0, -1);
+    }
+
+    /**
+     * Task searching a move of a split point, own and opponent are the position before the move.
+     */
+    private SearchTask(Search search, Split split, long own, long opponent, int depth, int ply, int move) {
+        this.search = search;
+        this.split = split;
+        this.own = own;
+        this.opponent = opponent;
+        this.depth = depth;
+        this.ply = ply;
+        this.move = move;
+    }
+
+    int getBestMove() {
+        return bestMove;
+    }
+
+    @Override
+    protected Integer compute() {
+        Integer result = null;
+        if (move < 0) {
+            var score = negamax(own, opponent, depth, -INFINITY, INFINITY, ply, split);
+            result = stopped ? null : score;
+        } else if (!checkStop(split)) {
+            var bit = 1L << move;
+            var flips = Board.flips(own, opponent, bit);
+            var score = -negamax(opponent & ~flips, own | flips | bit, depth - 1, -split.beta, -split.alpha(),
+                    ply + 1, split);
+            if (!stopped) {
+                split.update(score, move);
+                result = score;
+            }
+        }
+        search.nodes.add(nodes);
+        return result;
+    }
+
+    private int negamax(long own, long opponent, int depth, int alpha, int beta, int ply, Split split) {
+        if ((++nodes & CHECK_INTERVAL) == 0 && checkStop(split)) {
+            return 0;
+        }
+        var moves = Board.legalMoves(own, opponent);
+        if (moves == 0) {
+            if (Board.legalMoves(opponent, own) == 0) {
+                return finalScore(own, opponent);
+            }
+            // a pass does not use up depth, two passes in a row end the game
+            var score = -negamax(opponent, own, depth, -beta, -alpha, ply + 1, split);
+            bestMove = Board.PASS;
+            return score;
+        }
+        if (depth == 0) {
+            return evaluate(own, opponent, moves);
+        }
+
+        var key = hash(own, opponent);
+        var entry = search.table.probe(key);
+        var first = -1;
+        if (entry != 0) {
+            var ttMove = TranspositionTable.move(entry);
+            if (ttMove < Board.SQUARES && (moves & (1L << ttMove)) != 0) {
+                first = ttMove;
+            }
+            // the root needs its best move, which a cutoff would not provide
+            if (ply > 0 && TranspositionTable.depth(entry) >= depth) {
+                var score = TranspositionTable.score(entry);
+                var bound = TranspositionTable.bound(entry);
+                if (bound == TranspositionTable.EXACT || (bound == TranspositionTable.LOWER && score >= beta)
+                        || (bound == TranspositionTable.UPPER && score <= alpha)) {
+                    return score;
+                }
+            }
+        }
+        if (first < 0) {
+            first = next(moves);
+        }
+
+        var originalAlpha = alpha;
+        var best = -INFINITY;
+        var bestSquare = first;
+        var remaining = moves & ~(1L << first);
+        var square = first;
+        while (true) {
+            var bit = 1L << square;
+            var flips = Board.flips(own, opponent, bit);
+            var score = -negamax(opponent & ~flips, own | flips | bit, depth - 1, -beta, -alpha, ply + 1, split);
+            if (stopped) {
+                return 0;
+            }
+            if (score > best) {
+                best = score;
+                bestSquare = square;
+                if (score > alpha) {
+                    alpha = score;
+                }
+            }
+            if (alpha >= beta || remaining == 0) {
+                break;
+            }
+            if (depth >= search.splitDepth && Long.bitCount(remaining) > 1) {
+                var point = new Split(split, alpha, beta, best, bestSquare);
+                parallel(point, own, opponent, depth, ply, remaining);
+                if (checkStop(split)) {
+                    return 0;
+                }
+                best = point.score();
+                bestSquare = point.move();
+                break;
+            }
+            square = next(remaining);
+            remaining &= ~(1L << square);
+        }
+
+        var bound = best <= originalAlpha ? TranspositionTable.UPPER
+                : best >= beta ? TranspositionTable.LOWER : TranspositionTable.EXACT;
+        search.table.store(key, bestSquare, depth, bound, best, search.generation);
+        bestMove = bestSquare;
+        return best;
+    }
+
+    private void parallel(Split point, long own, long opponent, int depth, int ply, long remaining) {
+        var tasks = new ArrayList<SearchTask>(Long.bitCount(remaining));
+        while (remaining != 0) {
+            var square = next(remaining);
+            remaining &= ~(1L << square);
+            tasks.add(new SearchTask(search, point, own, opponent, depth, ply, square));
+        }
+        for (var i = 1; i < tasks.size(); i++) {
+            tasks.get(i).fork();
+        }
+        tasks.get(0).invoke();
+        for (var i = tasks.size() - 1; i > 0; i--) {
+            tasks.get(i).join();
+        }
+    }
+
+    /**
+     * Returns true and stops this task, once the deadline passed or a split point above got a cutoff.
+     */
+    private boolean checkStop(Split split) {
+        if (!stopped) {
+            if (!search.aborted && System.nanoTime() - search.deadline > 0) {
+                search.aborted = true;
+            }
+            stopped = search.aborted || (split != null && split.cancelled());
+        }
+        return stopped;
+    }
+
+    private static int next(long moves) {
+        for (var mask : ORDER) {
+            var candidates = moves & mask;
+            if (candidates != 0) {
+                return Long.numberOfTrailingZeros(candidates);
+            }
+        }
+        return Long.numberOfTrailingZeros(moves);
+    }
+
+    static int evaluate(long own, long opponent, long moves) {
+        var mobility = Long.bitCount(moves) - Long.bitCount(Board.legalMoves(opponent, own));
+        return 8 * mobility
+                + 40 * (Long.bitCount(own & CORNERS) - Long.bitCount(opponent & CORNERS))
+                - 20 * (Long.bitCount(own & X_SQUARES) - Long.bitCount(opponent & X_SQUARES))
+                - 8 * (Long.bitCount(own & C_SQUARES) - Long.bitCount(opponent & C_SQUARES))
+                + 4 * (Long.bitCount(own & EDGES) - Long.bitCount(opponent & EDGES));
+    }
+
+    static int finalScore(long own, long opponent) {
+        var difference = Long.bitCount(own) - Long.bitCount(opponent);
+        return difference > 0 ? SearchEngine.WIN + difference
+                : difference < 0 ? -SearchEngine.WIN + difference : 0;
+    }
+
+    static long hash(long own, long opponent) {
+        var hash = own * 0x9e3779b97f4a7c15L ^ Long.rotateLeft(opponent * 0xc2b2ae3d27d4eb4fL, 31);
+        hash ^= hash >>> 29;
+        hash *= 0xbf58476d1ce4e5b9L;
+        return hash ^ hash >>> 32;
+    }
+
+    /**
+     * State shared by all tasks of one iteration.
+     */
+    static final class Search {
+        final TranspositionTable table;
+        final int splitDepth;
+        final long deadline;
+        final int generation;
+        final LongAdder nodes;
+        volatile boolean aborted;
+
+        Search(TranspositionTable table, int splitDepth, long deadline, int generation) {
+            this.table = table;
+            this.splitDepth = splitDepth;
+            this.deadline = deadline;
+            this.generation = generation;
+            this.nodes = new LongAdder();
+        }
+    }
+
+    /**
+     * Node whose remaining moves are searched in parallel. Best score and move are packed into one long.
+     */
+    private static final class Split {
+        private final Split parent;
+        private final int alpha;
+        private final int beta;
+        private final AtomicLong best;
+        private volatile boolean cutoff;
+
+        private Split(Split parent, int alpha, int beta, int score, int move) {
+            this.parent = parent;
+            this.alpha = alpha;
+            this.beta = beta;
+            this.best = new AtomicLong(pack(score, move));
+        }
+
+        int alpha() {
+            return Math.max(alpha, score());
+        }
+
+        int score() {
+            return (int) (best.get() >> 32);
+        }
+
+        int move() {
+            return (int) best.get();
+        }
+
+        void update(int score, int move) {
+            var current = best.get();
+            while (score > (int) (current >> 32) && !best.compareAndSet(current, pack(score, move))) {
+                current = best.get();
+            }
+            if (score >= beta) {
+                cutoff = true;
+            }
+        }
+
+        boolean cancelled() {
+            for (var split = this; split != null; split = split.parent) {
+                if (split.cutoff) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        private static long pack(int score, int move) {
+            return (long) score << 32 | (move & 0xffffffffL);
+        }
+    }
+}
@@ -0,0 +1,88 @@
+package ch.zxseitz.tbsg.game.othello;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.util.Arrays;
+
+/**
+ * Lock free transposition table with a fixed memory budget, shared by all searches of a {@link SearchEngine}.
+ * An entry is two longs, the key xor the data and the data, written without any locking: an entry torn by
+ * concurrent writers fails the key check and reads as a miss. A bucket holds a depth preferred entry, which
+ * is only replaced by deeper results or once it is of an older generation, and an always replaced entry.
+ */
+public final class TranspositionTable {
+    static final int EXACT = 0;
+    static final int LOWER = 1;
+    static final int UPPER = 2;
+
+    private static final VarHandle SLOTS = MethodHandles.arrayElementVarHandle(long[].class);
+    private static final long VALID = 1L << 63;
+    private static final int BUCKET_BYTES = 32;
+
+    private final long[] slots;
+    private final int mask;
+
+    public TranspositionTable(int megabytes) {
+        var buckets = Math.min(Long.highestOneBit(Math.max(1L, ((long) megabytes << 20) / BUCKET_BYTES)),
+                1L << 28);
+        this.slots = new long[(int) buckets * 4];
+        this.mask = (int) buckets - 1;
+    }
+
+    /**
+     * Returns the packed entry of the key, 0 if there is none.
+     */
+    long probe(long key) {
+        var base = index(key);
+        for (var i = base; i < base + 4; i += 2) {
+            var data = (long) SLOTS.getOpaque(slots, i + 1);
+            if (data != 0 && ((long) SLOTS.getOpaque(slots, i) ^ data) == key) {
+                return data;
+            }
+        }
+        return 0;
+    }
+
+    void store(long key, int move, int depth, int bound, int score, int generation) {
+        var data = VALID | (score & 0xffffL) | (long) depth << 16 | (long) bound << 24 | (long) move << 26
+                | (long) generation << 33;
+        var base = index(key);
+        var preferred = (long) SLOTS.getOpaque(slots, base + 1);
+        var i = preferred == 0 || ((long) SLOTS.getOpaque(slots, base) ^ preferred) == key
+                || depth >= depth(preferred) || generation(preferred) != generation ? base : base + 2;
+        SLOTS.setOpaque(slots, i, key ^ data);
+        SLOTS.setOpaque(slots, i + 1, data);
+    }
+
+    public int capacity() {
+        return slots.length / 2;
+    }
+
+    public void clear() {
+        Arrays.fill(slots, 0);
+    }
+
+    static int score(long data) {
+        return (short) data;
+    }
+
+    static int depth(long data) {
+        return (int) (data >>> 16) & 0xff;
+    }
+
+    static int bound(long data) {
+        return (int) (data >>> 24) & 0x3;
+    }
+
+    static int move(long data) {
+        return (int) (data >>> 26) & 0x7f;
+    }
+
+    static int generation(long data) {
+        return (int) (data >>> 33) & 0xff;
+    }
+
+    private int index(long key) {
+        return ((int) (key >>> 32) & mask) << 2;
+    }
+}
@@ -0,0 +1,148 @@
+package ch.zxseitz.tbsg.json;
+
+import com.google.gson.ExclusionStrategy;
+import com.google.gson.FieldAttributes;
+import com.google.gson.Gson;
+import com.google.gson.JsonIOException;
+import com.google.gson.TypeAdapter;
+import com.google.gson.TypeAdapterFactory;
+import com.google.gson.annotations.JsonAdapter;
+import com.google.gson.annotations.SerializedName;
+import com.google.gson.reflect.TypeToken;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonWriter;
+
+import java.io.IOException;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Map;
+
+/**
+ * Writes the fields of a class through method handles resolved once on creation. The exclusion strategy is
+ * evaluated once per field while binding, not on every write. Reading is delegated to a gson adapter
+ * honouring the same strategy. Like gson, null fields are omitted.
+ */
+class AccessorTypeAdapter<T> extends TypeAdapter<T> {
+    private final BoundField[] fields;
+    private final TypeAdapter<T> reader;
+
+    private AccessorTypeAdapter(BoundField[] fields, TypeAdapter<T> reader) {
+        this.fields = fields;
+        this.reader = reader;
+    }
+
+    static <T> AccessorTypeAdapter<T> create(Class<T> type, ExclusionStrategy strategy, Gson gson) {
+        var lookup = MethodHandles.lookup();
+        var fields = new ArrayList<BoundField>();
+        for (Class<?> clazz = type; clazz != null && clazz != Object.class; clazz = clazz.getSuperclass()) {
+            for (var field : clazz.getDeclaredFields()) {
+                var modifiers = field.getModifiers();
+                if (Modifier.isStatic(modifiers) || Modifier.isTransient(modifiers) || field.isSynthetic()) {
+                    continue;
+                }
+                if (strategy != null && strategy.shouldSkipField(new FieldAttributes(field))) {
+                    continue;
+                }
+                fields.add(bind(field, lookup, gson));
+            }
+        }
+        return new AccessorTypeAdapter<>(fields.toArray(new BoundField[0]), gson.getAdapter(type));
+    }
+
+    @Override
+    public void write(JsonWriter out, T value) throws IOException {
+        if (value == null) {
+            out.nullValue();
+            return;
+        }
+        out.beginObject();
+        for (var field : fields) {
+            field.write(out, value);
+        }
+        out.endObject();
+    }
+
+    @Override
+    public T read(JsonReader in) throws IOException {
+        return reader.read(in);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static BoundField bind(Field field, MethodHandles.Lookup lookup, Gson gson) {
+        field.setAccessible(true);
+        MethodHandle getter;
+        try {
+            getter = lookup.unreflectGetter(field).asType(MethodType.methodType(Object.class, Object.class));
+        } catch (IllegalAccessException e) {
+            throw new JsonIOException(String.format("Cannot access field %s", field), e);
+        }
+        var serializedName = field.getAnnotation(SerializedName.class);
+        var name = serializedName != null ? serializedName.value() : field.getName();
+        var jsonAdapter = field.getAnnotation(JsonAdapter.class);
+        if (jsonAdapter != null) {
+            return new BoundField(name, getter, annotatedAdapter(jsonAdapter, field, gson), gson);
+        }
+        var raw = field.getType();
+        // declared types which may hold subclasses are resolved by their runtime class, like gson does
+        var runtimeTyped = !(raw.isPrimitive() || raw.isEnum() || Modifier.isFinal(raw.getModifiers())
+                || Collection.class.isAssignableFrom(raw) || Map.class.isAssignableFrom(raw));
+        var adapter = runtimeTyped ? null : (TypeAdapter<Object>) gson.getAdapter(TypeToken.get(field.getGenericType()));
+        return new BoundField(name, getter, adapter, gson);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static TypeAdapter<Object> annotatedAdapter(JsonAdapter jsonAdapter, Field field, Gson gson) {
+        Object instance;
+        try {
+            var constructor = jsonAdapter.value().getDeclaredConstructor();
+            constructor.setAccessible(true);
+            instance = constructor.newInstance();
+        } catch (ReflectiveOperationException e) {
+            throw new JsonIOException(String.format("Cannot create json adapter of field %s", field), e);
+        }
+        if (instance instanceof TypeAdapter) {
+            return (TypeAdapter<Object>) instance;
+        }
+        if (instance instanceof TypeAdapterFactory) {
+            return (TypeAdapter<Object>) ((TypeAdapterFactory) instance).create(gson,
+                    TypeToken.get(field.getGenericType()));
+        }
+        throw new JsonIOException(String.format("Unsupported json adapter %s of field %s",
+                jsonAdapter.value().getName(), field));
+    }
+
+    private static class BoundField {
+        private final String name;
+        private final MethodHandle getter;
+        private final TypeAdapter<Object> adapter;
+        private final Gson gson;
+
+        private BoundField(String name, MethodHandle getter, TypeAdapter<Object> adapter, Gson gson) {
+            this.name = name;
+            this.getter = getter;
+            this.adapter = adapter;
+            this.gson = gson;
+        }
+
+        @SuppressWarnings("unchecked")
+        private void write(JsonWriter out, Object owner) throws IOException {
+            Object value;
+            try {
+                value = getter.invokeExact(owner);
+            } catch (Throwable e) {
+                throw new JsonIOException(String.format("Cannot read field %s", name), e);
+            }
+            if (value == null) {
+                return;
+            }
+            out.name(name);
+            var valueAdapter = adapter != null ? adapter : (TypeAdapter<Object>) gson.getAdapter(value.getClass());
+            valueAdapter.write(out, value);
+        }
+    }
+}
@@ -0,0 +1,39 @@
+package ch.zxseitz.tbsg.json;
+
+import ch.zxseitz.tbsg.game.othello.BoardSnapshot;
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
+
+import java.io.IOException;
+
+/**
+ * Writes a board as array of the hex encoded discs of player 0 and player 1.
+ */
+public class BoardSnapshotAdapter extends TypeAdapter<BoardSnapshot> {
+    @Override
+    public void write(JsonWriter out, BoardSnapshot value) throws IOException {
+        if (value == null) {
+            out.nullValue();
+            return;
+        }
+        out.beginArray();
+        out.value(Long.toHexString(value.getDiscs(0)));
+        out.value(Long.toHexString(value.getDiscs(1)));
+        out.endArray();
+    }
+
+    @Override
+    public BoardSnapshot read(JsonReader in) throws IOException {
+        if (in.peek() == JsonToken.NULL) {
+            in.nextNull();
+            return null;
+        }
+        in.beginArray();
+        var discs0 = Long.parseUnsignedLong(in.nextString(), 16);
+        var discs1 = Long.parseUnsignedLong(in.nextString(), 16);
+        in.endArray();
+        return new BoardSnapshot(discs0, discs1);
+    }
+}
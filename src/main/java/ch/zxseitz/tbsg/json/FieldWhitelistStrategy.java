@@ -4,6 +4,7 @@ import com.google.gson.ExclusionStrategy;
 import com.google.gson.FieldAttributes;
 
 import java.util.Arrays;
+import java.util.Objects;
 import java.util.Set;
 import java.util.stream.Collectors;
 
@@ -23,4 +24,16 @@ public class FieldWhitelistStrategy implements ExclusionStrategy {
     public boolean shouldSkipClass(Class<?> clazz) {
         return false;
     }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        return fields.equals(((FieldWhitelistStrategy) o).fields);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(getClass(), fields);
+    }
 }
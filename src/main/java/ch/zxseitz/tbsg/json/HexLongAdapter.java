@@ -0,0 +1,31 @@
+package ch.zxseitz.tbsg.json;
+
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
+
+import java.io.IOException;
+
+/**
+ * Writes longs as unsigned hex strings, for values like bitboards which need all 64 bits.
+ */
+public class HexLongAdapter extends TypeAdapter<Long> {
+    @Override
+    public void write(JsonWriter out, Long value) throws IOException {
+        if (value == null) {
+            out.nullValue();
+        } else {
+            out.value(Long.toHexString(value));
+        }
+    }
+
+    @Override
+    public Long read(JsonReader in) throws IOException {
+        if (in.peek() == JsonToken.NULL) {
+            in.nextNull();
+            return null;
+        }
+        return Long.parseUnsignedLong(in.nextString(), 16);
+    }
+}
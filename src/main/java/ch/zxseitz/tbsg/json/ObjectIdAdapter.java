@@ -0,0 +1,29 @@
+package ch.zxseitz.tbsg.json;
+
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
+import org.bson.types.ObjectId;
+
+import java.io.IOException;
+
+public class ObjectIdAdapter extends TypeAdapter<ObjectId> {
+    @Override
+    public void write(JsonWriter out, ObjectId value) throws IOException {
+        if (value == null) {
+            out.nullValue();
+        } else {
+            out.value(value.toHexString());
+        }
+    }
+
+    @Override
+    public ObjectId read(JsonReader in) throws IOException {
+        if (in.peek() == JsonToken.NULL) {
+            in.nextNull();
+            return null;
+        }
+        return new ObjectId(in.nextString());
+    }
+}
@@ -0,0 +1,80 @@
+package ch.zxseitz.tbsg.json;
+
+import com.google.gson.ExclusionStrategy;
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.TypeAdapter;
+import org.bson.types.ObjectId;
+import org.springframework.stereotype.Component;
+
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Shared gson serializers. For every model class and field strategy an {@link AccessorTypeAdapter} is built
+ * once and reused, so responses neither pay for a new gson instance nor for reflective field access.
+ */
+@Component
+public class SerializerRegistry {
+    private final Gson gson;
+    private final ConcurrentHashMap<ExclusionStrategy, Gson> readers;
+    private final ConcurrentHashMap<Key, TypeAdapter<?>> adapters;
+
+    public SerializerRegistry() {
+        this.gson = builder().create();
+        this.readers = new ConcurrentHashMap<>();
+        this.adapters = new ConcurrentHashMap<>();
+    }
+
+    public Gson getGson() {
+        return gson;
+    }
+
+    public <T> TypeAdapter<T> getAdapter(Class<T> type) {
+        return getAdapter(type, null);
+    }
+
+    /**
+     * Returns the cached adapter of the type with the fields selected by the strategy, null selects all fields.
+     */
+    @SuppressWarnings("unchecked")
+    public <T> TypeAdapter<T> getAdapter(Class<T> type, ExclusionStrategy strategy) {
+        return (TypeAdapter<T>) adapters.computeIfAbsent(new Key(type, strategy),
+                key -> AccessorTypeAdapter.create(type, strategy, reader(strategy)));
+    }
+
+    private Gson reader(ExclusionStrategy strategy) {
+        if (strategy == null) {
+            return gson;
+        }
+        return readers.computeIfAbsent(strategy, s -> builder().setExclusionStrategies(s).create());
+    }
+
+    private static GsonBuilder builder() {
+        return new GsonBuilder()
+                .registerTypeAdapter(ObjectId.class, new ObjectIdAdapter());
+    }
+
+    private static class Key {
+        private final Class<?> type;
+        private final ExclusionStrategy strategy;
+
+        private Key(Class<?> type, ExclusionStrategy strategy) {
+            this.type = type;
+            this.strategy = strategy;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (o == null || getClass() != o.getClass()) return false;
+            var key = (Key) o;
+            return type.equals(key.type) && Objects.equals(strategy, key.strategy);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(type, strategy);
+        }
+    }
+}
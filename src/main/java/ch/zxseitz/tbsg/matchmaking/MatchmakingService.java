@@ -0,0 +1,243 @@
+package ch.zxseitz.tbsg.matchmaking;
+
+import ch.zxseitz.tbsg.game.GameService;
+import ch.zxseitz.tbsg.model.User;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.Timer;
+import org.bson.types.ObjectId;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+
+/**
+ * Pairs queued players by rating and latency. Joining and leaving are lock free: tickets are pushed to
+ * concurrent per bucket queues and cancelled in place, a single scheduler thread drains the buckets on every
+ * tick. Players which could not be paired within their bucket are paired across neighbouring rating buckets
+ * after a while, the allowed rating distance grows with the time waited. Players still waiting after the bot
+ * timeout play against the {@link GameService#BOT}.
+ */
+@Service
+public class MatchmakingService {
+    private static final Logger logger = LoggerFactory.getLogger(MatchmakingService.class);
+
+    public static final int DEFAULT_RATING = User.DEFAULT_RATING;
+    static final int RATING_BUCKET_WIDTH = 100;
+    static final int RATING_BUCKETS = 40;
+    static final int[] LATENCY_LIMITS = {50, 100, 200, Integer.MAX_VALUE};
+
+    private final BiConsumer<ObjectId, ObjectId> onPaired;
+    private final Consumer<ObjectId> onBot;
+    private final long tickInterval;
+    private final long widenAfter;
+    private final long botAfter;
+    private final ConcurrentHashMap<ObjectId, Ticket> tickets;
+    private final List<ConcurrentLinkedDeque<Ticket>> buckets;
+    private final Ticket[] leftovers;
+    private final Timer waitTimer;
+    private ScheduledExecutorService scheduler;
+
+    @Autowired
+    public MatchmakingService(GameService gameService, MeterRegistry meterRegistry,
+                              @Value("${tbsg.matchmaking.tick-ms:100}") long tickInterval,
+                              @Value("${tbsg.matchmaking.widen-after-ms:2000}") long widenAfter,
+                              @Value("${tbsg.matchmaking.bot-after-ms:30000}") long botAfter) {
+        this(gameService::createMatch, gameService::createBotMatch, meterRegistry, tickInterval, widenAfter,
+                botAfter);
+    }
+
+    public MatchmakingService(BiConsumer<ObjectId, ObjectId> onPaired, MeterRegistry meterRegistry,
+                              long tickInterval, long widenAfter) {
+        this(onPaired, null, meterRegistry, tickInterval, widenAfter, 0);
+    }
+
+    /**
+     * A bot timeout of 0 never pairs players with the bot.
+     */
+    public MatchmakingService(BiConsumer<ObjectId, ObjectId> onPaired, Consumer<ObjectId> onBot,
+                              MeterRegistry meterRegistry, long tickInterval, long widenAfter, long botAfter) {
+        this.onPaired = onPaired;
+        this.onBot = onBot;
+        this.tickInterval = tickInterval;
+        this.widenAfter = widenAfter;
+        this.botAfter = botAfter;
+        this.tickets = new ConcurrentHashMap<>();
+        this.buckets = new ArrayList<>(RATING_BUCKETS * LATENCY_LIMITS.length);
+        for (var i = 0; i < RATING_BUCKETS * LATENCY_LIMITS.length; i++) {
+            buckets.add(new ConcurrentLinkedDeque<>());
+        }
+        this.leftovers = new Ticket[buckets.size()];
+        this.waitTimer = meterRegistry.timer("tbsg.matchmaking.wait");
+        meterRegistry.gaugeMapSize("tbsg.matchmaking.queued", Tags.empty(), tickets);
+    }
+
+    @PostConstruct
+    public void start() {
+        scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            var thread = new Thread(runnable, "matchmaking");
+            thread.setDaemon(true);
+            return thread;
+        });
+        scheduler.scheduleWithFixedDelay(() -> {
+            try {
+                tick();
+            } catch (Exception e) {
+                logger.error("Error while pairing players", e);
+            }
+        }, tickInterval, tickInterval, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void stop() {
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+        }
+    }
+
+    /**
+     * Queues the user, returns false if the user is already queued.
+     */
+    public boolean join(ObjectId user, int rating, int latency) {
+        var ticket = new Ticket(user, rating, latency, System.currentTimeMillis());
+        if (tickets.putIfAbsent(user, ticket) != null) {
+            return false;
+        }
+        buckets.get(bucketOf(rating, latency)).offer(ticket);
+        return true;
+    }
+
+    /**
+     * Removes the user from the queue, returns false if the user was not queued or already paired.
+     */
+    public boolean leave(ObjectId user) {
+        var ticket = tickets.get(user);
+        if (ticket != null && ticket.cancel()) {
+            tickets.remove(user, ticket);
+            return true;
+        }
+        return false;
+    }
+
+    public int getQueued() {
+        return tickets.size();
+    }
+
+    void tick() {
+        var now = System.currentTimeMillis();
+        for (var i = 0; i < buckets.size(); i++) {
+            var queue = buckets.get(i);
+            Ticket waiting = null;
+            Ticket ticket;
+            // drain completely, joins are far slower than polls so this terminates
+            while ((ticket = queue.poll()) != null) {
+                if (!ticket.isWaiting()) {
+                    continue;
+                }
+                if (waiting == null) {
+                    waiting = ticket;
+                } else if (pair(waiting, ticket, now)) {
+                    waiting = null;
+                } else if (!waiting.isWaiting()) {
+                    waiting = ticket.isWaiting() ? ticket : null;
+                }
+            }
+            leftovers[i] = waiting;
+        }
+
+        // buckets are ordered by rating first, so neighbouring leftovers are the closest candidates
+        Ticket carry = null;
+        for (var i = 0; i < leftovers.length; i++) {
+            var ticket = leftovers[i];
+            leftovers[i] = null;
+            if (ticket == null) {
+                continue;
+            }
+            if (now - ticket.enqueuedAt < widenAfter) {
+                requeue(ticket, now);
+                continue;
+            }
+            if (carry != null && ratingBucket(ticket.rating) - ratingBucket(carry.rating) <= allowedDistance(carry, now)
+                    && pair(carry, ticket, now)) {
+                carry = null;
+                continue;
+            }
+            if (carry != null && carry.isWaiting()) {
+                requeue(carry, now);
+            }
+            carry = ticket.isWaiting() ? ticket : null;
+        }
+        if (carry != null && carry.isWaiting()) {
+            requeue(carry, now);
+        }
+    }
+
+    /**
+     * Puts an unpaired ticket back in front of its bucket, or pairs it with the bot once it waited long enough.
+     */
+    private void requeue(Ticket ticket, long now) {
+        if (botAfter <= 0 || now - ticket.enqueuedAt < botAfter
+                || !ticket.state.compareAndSet(Ticket.WAITING, Ticket.MATCHED)) {
+            buckets.get(bucketOf(ticket.rating, ticket.latency)).offerFirst(ticket);
+            return;
+        }
+        tickets.remove(ticket.user, ticket);
+        waitTimer.record(now - ticket.enqueuedAt, TimeUnit.MILLISECONDS);
+        try {
+            onBot.accept(ticket.user);
+        } catch (Exception e) {
+            logger.error("Could not create bot match for {}", ticket.user.toHexString(), e);
+        }
+    }
+
+    private boolean pair(Ticket ticket1, Ticket ticket2, long now) {
+        if (!ticket1.state.compareAndSet(Ticket.WAITING, Ticket.CLAIMING)) {
+            return false;
+        }
+        if (!ticket2.state.compareAndSet(Ticket.WAITING, Ticket.MATCHED)) {
+            ticket1.state.set(Ticket.WAITING);
+            return false;
+        }
+        ticket1.state.set(Ticket.MATCHED);
+        tickets.remove(ticket1.user, ticket1);
+        tickets.remove(ticket2.user, ticket2);
+        waitTimer.record(now - ticket1.enqueuedAt, TimeUnit.MILLISECONDS);
+        waitTimer.record(now - ticket2.enqueuedAt, TimeUnit.MILLISECONDS);
+        try {
+            onPaired.accept(ticket1.user, ticket2.user);
+        } catch (Exception e) {
+            logger.error("Could not create match for {} and {}", ticket1.user.toHexString(),
+                    ticket2.user.toHexString(), e);
+        }
+        return true;
+    }
+
+    private long allowedDistance(Ticket ticket, long now) {
+        return 1 + (now - ticket.enqueuedAt - widenAfter) / widenAfter;
+    }
+
+    private static int ratingBucket(int rating) {
+        return Math.max(0, Math.min(RATING_BUCKETS - 1, rating / RATING_BUCKET_WIDTH));
+    }
+
+    private static int bucketOf(int rating, int latency) {
+        var latencyBucket = 0;
+        while (latency > LATENCY_LIMITS[latencyBucket]) {
+            latencyBucket++;
+        }
+        return ratingBucket(rating) * LATENCY_LIMITS.length + latencyBucket;
+    }
+}
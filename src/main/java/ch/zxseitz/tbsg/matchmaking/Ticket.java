@@ -0,0 +1,44 @@
+package ch.zxseitz.tbsg.matchmaking;
+
+import org.bson.types.ObjectId;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+class Ticket {
+    static final int WAITING = 0;
+    static final int CLAIMING = 1;
+    static final int MATCHED = 2;
+    static final int CANCELLED = 3;
+
+    final ObjectId user;
+    final int rating;
+    final int latency;
+    final long enqueuedAt;
+    final AtomicInteger state;
+
+    Ticket(ObjectId user, int rating, int latency, long enqueuedAt) {
+        this.user = user;
+        this.rating = rating;
+        this.latency = latency;
+        this.enqueuedAt = enqueuedAt;
+        this.state = new AtomicInteger(WAITING);
+    }
+
+    boolean isWaiting() {
+        return state.get() == WAITING;
+    }
+
+    boolean cancel() {
+        while (true) {
+            var current = state.get();
+            if (current == WAITING && state.compareAndSet(WAITING, CANCELLED)) {
+                return true;
+            }
+            if (current == CLAIMING) {
+                Thread.onSpinWait();
+            } else if (current != WAITING) {
+                return false;
+            }
+        }
+    }
+}
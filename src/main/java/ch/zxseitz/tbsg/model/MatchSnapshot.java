@@ -0,0 +1,54 @@
+package ch.zxseitz.tbsg.model;
+
+import ch.zxseitz.tbsg.game.Match;
+import ch.zxseitz.tbsg.game.othello.BoardSnapshot;
+import org.bson.types.ObjectId;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+/**
+ * Latest persisted state of a match, turns from {@link #getTurn()} on are replayed from the turn log.
+ */
+@Document(collection = "match_snapshots")
+public class MatchSnapshot {
+    @Id
+    public final ObjectId id;
+
+    private final ObjectId player0;
+    private final ObjectId player1;
+    private final int turn;
+    private final int current;
+    private final boolean finished;
+    private final long discs0;
+    private final long discs1;
+
+    public MatchSnapshot(ObjectId id, ObjectId player0, ObjectId player1, int turn, int current, boolean finished,
+                         long discs0, long discs1) {
+        this.id = id;
+        this.player0 = player0;
+        this.player1 = player1;
+        this.turn = turn;
+        this.current = current;
+        this.finished = finished;
+        this.discs0 = discs0;
+        this.discs1 = discs1;
+    }
+
+    public static MatchSnapshot of(Match match) {
+        var board = match.getBoard();
+        return new MatchSnapshot(match.getId(), match.getPlayer(0), match.getPlayer(1), match.getTurn(),
+                match.getCurrent(), match.isFinished(), board.getDiscs(0), board.getDiscs(1));
+    }
+
+    public Match toMatch() {
+        return new Match(id, player0, player1, new BoardSnapshot(discs0, discs1), turn, current, finished);
+    }
+
+    public int getTurn() {
+        return turn;
+    }
+
+    public boolean isFinished() {
+        return finished;
+    }
+}
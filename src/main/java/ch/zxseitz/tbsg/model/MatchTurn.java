@@ -0,0 +1,43 @@
+package ch.zxseitz.tbsg.model;
+
+import org.bson.types.ObjectId;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+/**
+ * Entry of the append-only turn log of a match.
+ */
+@Document(collection = "match_turns")
+public class MatchTurn {
+    @Id
+    public final ObjectId id;
+
+    private final ObjectId match;
+    private final int turn;
+    private final int player;
+    private final int move;
+
+    public MatchTurn(ObjectId id, ObjectId match, int turn, int player, int move) {
+        this.id = id;
+        this.match = match;
+        this.turn = turn;
+        this.player = player;
+        this.move = move;
+    }
+
+    public ObjectId getMatch() {
+        return match;
+    }
+
+    public int getTurn() {
+        return turn;
+    }
+
+    public int getPlayer() {
+        return player;
+    }
+
+    public int getMove() {
+        return move;
+    }
+}
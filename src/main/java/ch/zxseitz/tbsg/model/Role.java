@@ -3,7 +3,38 @@ package ch.zxseitz.tbsg.model;
 import org.springframework.security.core.GrantedAuthority;
 import org.springframework.security.core.authority.SimpleGrantedAuthority;
 
+import java.util.Collection;
+
 public class Role {
     public static final GrantedAuthority Admin = new SimpleGrantedAuthority("Admin");
     public static final GrantedAuthority User = new SimpleGrantedAuthority("User");
+
+    // bits of the roles in a RoleSet, bit i stands for ALL[i]
+    public static final int ADMIN = 1;
+    public static final int USER = 1 << 1;
+
+    static final GrantedAuthority[] ALL = {Admin, User};
+
+    /**
+     * Returns the bit of the authority, 0 if it is not a known role.
+     */
+    public static int bit(String authority) {
+        for (var i = 0; i < ALL.length; i++) {
+            if (ALL[i].getAuthority().equals(authority)) {
+                return 1 << i;
+            }
+        }
+        return 0;
+    }
+
+    public static int mask(Collection<? extends GrantedAuthority> authorities) {
+        if (authorities instanceof RoleSet) {
+            return ((RoleSet) authorities).getMask();
+        }
+        var mask = 0;
+        for (var authority : authorities) {
+            mask |= bit(authority.getAuthority());
+        }
+        return mask;
+    }
 }
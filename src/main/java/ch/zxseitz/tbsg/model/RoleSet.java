@@ -0,0 +1,73 @@
+package ch.zxseitz.tbsg.model;
+
+import org.springframework.security.core.GrantedAuthority;
+
+import java.util.AbstractList;
+import java.util.Collection;
+import java.util.RandomAccess;
+
+/**
+ * Immutable list of the {@link Role} constants whose bits are set in a mask. All sets are created once, so
+ * resolving a mask is a table lookup and role checks are bit tests.
+ */
+public final class RoleSet extends AbstractList<GrantedAuthority> implements RandomAccess {
+    private static final RoleSet[] TABLE = new RoleSet[1 << Role.ALL.length];
+
+    static {
+        for (var mask = 0; mask < TABLE.length; mask++) {
+            var authorities = new GrantedAuthority[Integer.bitCount(mask)];
+            for (int i = 0, n = 0; i < Role.ALL.length; i++) {
+                if ((mask & (1 << i)) != 0) {
+                    authorities[n++] = Role.ALL[i];
+                }
+            }
+            TABLE[mask] = new RoleSet(mask, authorities);
+        }
+    }
+
+    private final int mask;
+    private final GrantedAuthority[] authorities;
+
+    private RoleSet(int mask, GrantedAuthority[] authorities) {
+        this.mask = mask;
+        this.authorities = authorities;
+    }
+
+    /**
+     * Returns the set of the mask, unknown bits are ignored.
+     */
+    public static RoleSet of(int mask) {
+        return TABLE[mask & (TABLE.length - 1)];
+    }
+
+    /**
+     * Returns the set of the known roles among the authorities.
+     */
+    public static RoleSet of(Collection<? extends GrantedAuthority> authorities) {
+        if (authorities instanceof RoleSet) {
+            return (RoleSet) authorities;
+        }
+        return of(Role.mask(authorities));
+    }
+
+    public int getMask() {
+        return mask;
+    }
+
+    /**
+     * Returns true if any of the role bits is set.
+     */
+    public boolean has(int roles) {
+        return (mask & roles) != 0;
+    }
+
+    @Override
+    public GrantedAuthority get(int index) {
+        return authorities[index];
+    }
+
+    @Override
+    public int size() {
+        return authorities.length;
+    }
+}
@@ -2,6 +2,7 @@ package ch.zxseitz.tbsg.model;
 
 import org.bson.types.ObjectId;
 import org.springframework.data.annotation.Id;
+import org.springframework.data.annotation.PersistenceConstructor;
 import org.springframework.data.mongodb.core.mapping.Document;
 import org.springframework.security.core.GrantedAuthority;
 
@@ -11,6 +12,8 @@ import java.util.List;
 
 @Document(collection = "users")
 public class User {
+    public static final int DEFAULT_RATING = 1500;
+
     @Id
     public final ObjectId id;
 
@@ -18,13 +21,22 @@ public class User {
     private final String email;
     private final String password;  // hashed
     private final List<GrantedAuthority> roles;
+    private final Integer rating;  // null until the first rated match
 
     public User(ObjectId id, String username, String email, String password, Collection<GrantedAuthority> roles) {
+        this(id, username, email, password, roles, null);
+    }
+
+    @PersistenceConstructor
+    public User(ObjectId id, String username, String email, String password, Collection<GrantedAuthority> roles,
+                Integer rating) {
         this.id = id;
         this.username = username;
         this.email = email;
         this.password = password;
-        this.roles = new ArrayList<>(roles);
+        // not loaded for listed users
+        this.roles = roles != null ? new ArrayList<>(roles) : new ArrayList<>();
+        this.rating = rating;
     }
 
     public Collection<GrantedAuthority> getRoles() {
@@ -42,4 +54,11 @@ public class User {
     public String getPassword() {
         return password;
     }
+
+    /**
+     * Elo rating of the user, {@link #DEFAULT_RATING} for unrated users.
+     */
+    public int getRating() {
+        return rating != null ? rating : DEFAULT_RATING;
+    }
 }
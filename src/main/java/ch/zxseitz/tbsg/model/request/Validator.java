@@ -2,22 +2,231 @@ package ch.zxseitz.tbsg.model.request;
 
 import java.util.regex.Pattern;
 
+/**
+ * Single pass validation of user input. Every check first rejects input by its length and then scans each
+ * character at most once, so adversarial input cannot make validation backtrack. The checks accept exactly
+ * the inputs matched by the reference patterns below, except that emails longer than
+ * {@value #MAX_EMAIL_LENGTH} characters are rejected.
+ */
 public class Validator {
+    public static final int MIN_USERNAME_LENGTH = 6;
+    public static final int MAX_USERNAME_LENGTH = 20;
+    public static final int MIN_PASSWORD_LENGTH = 8;
+    public static final int MAX_PASSWORD_LENGTH = 20;
+    public static final int MAX_EMAIL_LENGTH = 254;
+
+    // reference patterns, not used for validation anymore
     public static final Pattern usernameRegex = Pattern.compile("^\\w{6,20}$");
     public static final Pattern emailRegex = Pattern.compile("(?:[a-z0-9!#$%&'*+/=?^_`{|}~-]+(?:\\.[a-z0-9!#$%&'*+/=?^_`{|}~-]+)*|\"(?:[\\x01-\\x08\\x0b\\x0c\\x0e-\\x1f\\x21\\x23-\\x5b\\x5d-\\x7f]|\\\\[\\x01-\\x09\\x0b\\x0c\\x0e-\\x7f])*\")@(?:(?:[a-z0-9](?:[a-z0-9-]*[a-z0-9])?\\.)+[a-z0-9](?:[a-z0-9-]*[a-z0-9])?|\\[(?:(?:25[0-5]|2[0-4][0-9]|[01]?[0-9][0-9]?)\\.){3}(?:25[0-5]|2[0-4][0-9]|[01]?[0-9][0-9]?|[a-z0-9-]*[a-z0-9]:(?:[\\x01-\\x08\\x0b\\x0c\\x0e-\\x1f\\x21-\\x5a\\x53-\\x7f]|\\\\[\\x01-\\x09\\x0b\\x0c\\x0e-\\x7f])+)\\])");
     public static final Pattern passwordRegex = Pattern.compile("^(?=.*[A-Za-z])(?=.*\\d)(?=.*[@$!%*#?&])[\\w@$!%*#?&]{8,20}$");
 
+    private static final String ATOM_SYMBOLS = "!#$%&'*+/=?^_`{|}~-";
+    private static final String PASSWORD_SYMBOLS = "@$!%*#?&";
+
     private Validator() {}
 
     public static boolean checkUsername(String username) {
-        return usernameRegex.matcher(username).matches();
+        if (username == null || username.length() < MIN_USERNAME_LENGTH || username.length() > MAX_USERNAME_LENGTH) {
+            return false;
+        }
+        for (var i = 0; i < username.length(); i++) {
+            if (!isWord(username.charAt(i))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    public static boolean checkPassword(String password) {
+        if (password == null || password.length() < MIN_PASSWORD_LENGTH || password.length() > MAX_PASSWORD_LENGTH) {
+            return false;
+        }
+        var letter = false;
+        var digit = false;
+        var symbol = false;
+        for (var i = 0; i < password.length(); i++) {
+            var c = password.charAt(i);
+            if (isLetter(c)) {
+                letter = true;
+            } else if (isDigit(c)) {
+                digit = true;
+            } else if (PASSWORD_SYMBOLS.indexOf(c) >= 0) {
+                symbol = true;
+            } else if (c != '_') {
+                return false;
+            }
+        }
+        return letter && digit && symbol;
     }
 
+    /**
+     * Checks a lower case RFC 5322 address: a dot atom or quoted local part, followed by a host name with at
+     * least two labels or an ip/tagged address literal in brackets.
+     */
     public static boolean checkEmail(String email) {
-        return emailRegex.matcher(email).matches();
+        if (email == null || email.isEmpty() || email.length() > MAX_EMAIL_LENGTH) {
+            return false;
+        }
+        var at = email.charAt(0) == '"' ? scanQuotedString(email) : scanDotAtom(email);
+        if (at < 0 || at >= email.length() - 1 || email.charAt(at) != '@') {
+            return false;
+        }
+        if (email.charAt(at + 1) == '[') {
+            return checkAddressLiteral(email, at + 2);
+        }
+        return checkHostname(email, at + 1);
     }
 
-    public static boolean checkPassword(String password) {
-        return passwordRegex.matcher(password).matches();
+    // returns the index after the local part or -1
+    private static int scanDotAtom(String email) {
+        var i = 0;
+        while (true) {
+            var start = i;
+            while (i < email.length() && isAtom(email.charAt(i))) {
+                i++;
+            }
+            if (i == start) {
+                return -1;
+            }
+            if (i < email.length() && email.charAt(i) == '.') {
+                i++;
+            } else {
+                return i;
+            }
+        }
+    }
+
+    // returns the index after the closing quote or -1
+    private static int scanQuotedString(String email) {
+        var i = 1;
+        while (i < email.length()) {
+            var c = email.charAt(i);
+            if (c == '"') {
+                return i + 1;
+            }
+            if (c == '\\') {
+                if (i + 1 >= email.length() || !isQuotedPair(email.charAt(i + 1))) {
+                    return -1;
+                }
+                i += 2;
+            } else if (isQuotedText(c)) {
+                i++;
+            } else {
+                return -1;
+            }
+        }
+        return -1;
+    }
+
+    private static boolean checkHostname(String email, int i) {
+        var labels = 0;
+        while (true) {
+            var start = i;
+            while (i < email.length() && isLabel(email.charAt(i))) {
+                i++;
+            }
+            if (i == start || email.charAt(start) == '-' || email.charAt(i - 1) == '-') {
+                return false;
+            }
+            labels++;
+            if (i == email.length()) {
+                return labels >= 2;
+            }
+            if (email.charAt(i) != '.') {
+                return false;
+            }
+            i++;
+        }
+    }
+
+    private static boolean checkAddressLiteral(String email, int i) {
+        var end = email.length() - 1;
+        if (i > end || email.charAt(end) != ']') {
+            return false;
+        }
+        for (var octet = 0; octet < 3; octet++) {
+            i = scanOctet(email, i, end);
+            if (i < 0 || i >= end || email.charAt(i) != '.') {
+                return false;
+            }
+            i++;
+        }
+        if (scanOctet(email, i, end) == end) {
+            return true;
+        }
+        // tagged address: tag ":" content
+        var start = i;
+        while (i < end && isLabel(email.charAt(i))) {
+            i++;
+        }
+        if (i == start || i >= end || email.charAt(i) != ':' || email.charAt(i - 1) == '-') {
+            return false;
+        }
+        i++;
+        if (i >= end) {
+            return false;
+        }
+        while (i < end) {
+            var c = email.charAt(i);
+            if (c == '\\' && i + 1 < end && (email.charAt(i + 1) == '\t' || email.charAt(i + 1) == ' ')) {
+                // tab and space are only allowed escaped
+                i += 2;
+            } else if (isLiteralText(c)) {
+                i++;
+            } else {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // returns the index after a decimal octet of one to three digits or -1
+    private static int scanOctet(String email, int i, int end) {
+        var value = 0;
+        var start = i;
+        while (i < end && isDigit(email.charAt(i))) {
+            if (i - start == 3) {
+                return -1;
+            }
+            value = value * 10 + email.charAt(i) - '0';
+            i++;
+        }
+        return i > start && value <= 255 ? i : -1;
+    }
+
+    private static boolean isLetter(char c) {
+        return (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z');
+    }
+
+    private static boolean isDigit(char c) {
+        return c >= '0' && c <= '9';
+    }
+
+    private static boolean isWord(char c) {
+        return isLetter(c) || isDigit(c) || c == '_';
+    }
+
+    private static boolean isLabel(char c) {
+        return (c >= 'a' && c <= 'z') || isDigit(c) || c == '-';
+    }
+
+    private static boolean isAtom(char c) {
+        return (c >= 'a' && c <= 'z') || isDigit(c) || ATOM_SYMBOLS.indexOf(c) >= 0;
+    }
+
+    private static boolean isControl(char c) {
+        return (c >= 0x01 && c <= 0x08) || c == 0x0b || c == 0x0c || (c >= 0x0e && c <= 0x1f);
+    }
+
+    private static boolean isQuotedText(char c) {
+        return isControl(c) || c == 0x21 || (c >= 0x23 && c <= 0x5b) || (c >= 0x5d && c <= 0x7f);
+    }
+
+    private static boolean isQuotedPair(char c) {
+        return (c >= 0x01 && c <= 0x09) || c == 0x0b || c == 0x0c || (c >= 0x0e && c <= 0x7f);
+    }
+
+    private static boolean isLiteralText(char c) {
+        return isControl(c) || (c >= 0x21 && c <= 0x7f);
     }
 }
@@ -0,0 +1,61 @@
+package ch.zxseitz.tbsg.model.response;
+
+import ch.zxseitz.tbsg.repo.BulkResult;
+
+import java.util.ArrayList;
+import java.util.List;
+
+public class BatchResponse {
+    private final int requested;
+    private final long affected;
+    private final List<Item> failures;
+
+    public BatchResponse(int requested, long affected, List<Item> failures) {
+        this.requested = requested;
+        this.affected = affected;
+        this.failures = failures;
+    }
+
+    public int getRequested() {
+        return requested;
+    }
+
+    public long getAffected() {
+        return affected;
+    }
+
+    public List<Item> getFailures() {
+        return failures;
+    }
+
+    public static BatchResponse create(BulkResult result, List<String> ids) {
+        var failures = new ArrayList<Item>(result.getFailures().size());
+        result.getFailures().forEach((index, error) -> failures.add(new Item(index, ids.get(index), error)));
+        failures.sort((item1, item2) -> Integer.compare(item1.index, item2.index));
+        return new BatchResponse(result.getRequested(), result.getAffected(), failures);
+    }
+
+    public static class Item {
+        private final int index;
+        private final String id;
+        private final String error;
+
+        public Item(int index, String id, String error) {
+            this.index = index;
+            this.id = id;
+            this.error = error;
+        }
+
+        public int getIndex() {
+            return index;
+        }
+
+        public String getId() {
+            return id;
+        }
+
+        public String getError() {
+            return error;
+        }
+    }
+}
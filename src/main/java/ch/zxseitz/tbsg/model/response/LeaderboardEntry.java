@@ -0,0 +1,33 @@
+package ch.zxseitz.tbsg.model.response;
+
+import org.bson.types.ObjectId;
+
+public class LeaderboardEntry {
+    private final int rank;
+    private final ObjectId id;
+    private final String username;
+    private final int rating;
+
+    public LeaderboardEntry(int rank, ObjectId id, String username, int rating) {
+        this.rank = rank;
+        this.id = id;
+        this.username = username;
+        this.rating = rating;
+    }
+
+    public int getRank() {
+        return rank;
+    }
+
+    public ObjectId getId() {
+        return id;
+    }
+
+    public String getUsername() {
+        return username;
+    }
+
+    public int getRating() {
+        return rating;
+    }
+}
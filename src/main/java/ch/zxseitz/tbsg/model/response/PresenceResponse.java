@@ -0,0 +1,27 @@
+package ch.zxseitz.tbsg.model.response;
+
+import org.bson.types.ObjectId;
+
+public class PresenceResponse {
+    private final ObjectId id;
+    private final ObjectId match;
+    private final long idleMs;
+
+    public PresenceResponse(ObjectId id, ObjectId match, long idleMs) {
+        this.id = id;
+        this.match = match;
+        this.idleMs = idleMs;
+    }
+
+    public ObjectId getId() {
+        return id;
+    }
+
+    public ObjectId getMatch() {
+        return match;
+    }
+
+    public long getIdleMs() {
+        return idleMs;
+    }
+}
@@ -0,0 +1,40 @@
+package ch.zxseitz.tbsg.model.response;
+
+import ch.zxseitz.tbsg.model.User;
+
+/**
+ * Public fields of a listed user, the same in json pages and ndjson exports.
+ */
+public class UserResponse {
+    private final String id;
+    private final String username;
+    private final String email;
+    private final int rating;
+
+    public UserResponse(String id, String username, String email, int rating) {
+        this.id = id;
+        this.username = username;
+        this.email = email;
+        this.rating = rating;
+    }
+
+    public static UserResponse of(User user) {
+        return new UserResponse(user.id.toHexString(), user.getUsername(), user.getEmail(), user.getRating());
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    public String getUsername() {
+        return username;
+    }
+
+    public String getEmail() {
+        return email;
+    }
+
+    public int getRating() {
+        return rating;
+    }
+}
@@ -0,0 +1,50 @@
+package ch.zxseitz.tbsg.presence;
+
+import ch.zxseitz.tbsg.game.IPlayerConnection;
+import org.bson.types.ObjectId;
+
+/**
+ * Live connection of an online user, with the match the user joined last and the time of the last heartbeat.
+ */
+public class Presence {
+    private final ObjectId user;
+    private final IPlayerConnection connection;
+    private final long connectedAt;
+    private volatile ObjectId match;
+    private volatile long lastSeen;
+
+    Presence(ObjectId user, IPlayerConnection connection, long now) {
+        this.user = user;
+        this.connection = connection;
+        this.connectedAt = now;
+        this.lastSeen = now;
+    }
+
+    public ObjectId getUser() {
+        return user;
+    }
+
+    public IPlayerConnection getConnection() {
+        return connection;
+    }
+
+    public long getConnectedAt() {
+        return connectedAt;
+    }
+
+    public ObjectId getMatch() {
+        return match;
+    }
+
+    void setMatch(ObjectId match) {
+        this.match = match;
+    }
+
+    public long getLastSeen() {
+        return lastSeen;
+    }
+
+    void touch(long now) {
+        lastSeen = now;
+    }
+}
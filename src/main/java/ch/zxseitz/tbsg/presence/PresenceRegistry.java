@@ -0,0 +1,397 @@
+package ch.zxseitz.tbsg.presence;
+
+import ch.zxseitz.tbsg.game.IPlayerConnection;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.bson.types.ObjectId;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.StampedLock;
+import java.util.function.Consumer;
+
+/**
+ * Online users and their live connection, one connection per user. The registry is split into shards by the
+ * hash of the user id, each an open addressing table of the id packed into a long and an int, guarded by its
+ * own stamped lock. Lookups, done for every message sent to a user, are optimistic reads without any write
+ * to shared memory.
+ * <p>
+ * Connections are pinged after heartbeat-ms without any message from the client, every message and pong
+ * counts as heartbeat. Connections silent for timeout-ms are removed and closed by the sweeper.
+ */
+@Service
+public class PresenceRegistry {
+    private static final Logger logger = LoggerFactory.getLogger(PresenceRegistry.class);
+    private static final ThreadLocal<ByteBuffer> KEYS = ThreadLocal.withInitial(() -> ByteBuffer.allocate(12));
+
+    private final Shard[] shards;
+    private final long heartbeat;
+    private final long timeout;
+    private final Counter expired;
+    private ScheduledExecutorService sweeper;
+
+    @Autowired
+    public PresenceRegistry(MeterRegistry meterRegistry,
+                            @Value("${tbsg.presence.shards:64}") int shards,
+                            @Value("${tbsg.presence.heartbeat-ms:15000}") long heartbeat,
+                            @Value("${tbsg.presence.timeout-ms:45000}") long timeout) {
+        if (Integer.bitCount(shards) != 1) {
+            throw new IllegalArgumentException(String.format("Shard count %d is not a power of two", shards));
+        }
+        this.shards = new Shard[shards];
+        for (var i = 0; i < shards; i++) {
+            this.shards[i] = new Shard();
+        }
+        this.heartbeat = heartbeat;
+        this.timeout = timeout;
+        this.expired = meterRegistry.counter("tbsg.presence.expired");
+        Gauge.builder("tbsg.presence.online", this, PresenceRegistry::size).register(meterRegistry);
+    }
+
+    @PostConstruct
+    public void start() {
+        sweeper = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            var thread = new Thread(runnable, "presence");
+            thread.setDaemon(true);
+            return thread;
+        });
+        sweeper.scheduleWithFixedDelay(() -> {
+            try {
+                sweep(System.currentTimeMillis());
+            } catch (Exception e) {
+                logger.error("Error while sweeping presences", e);
+            }
+        }, heartbeat, heartbeat, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void stop() {
+        if (sweeper != null) {
+            sweeper.shutdownNow();
+        }
+    }
+
+    /**
+     * Registers the connection of the user, returns the replaced presence of the user or null.
+     */
+    public Presence connect(ObjectId user, IPlayerConnection connection) {
+        var key = key(user);
+        var high = key.getLong(0);
+        var low = key.getInt(8);
+        var hash = hash(high, low);
+        return shard(hash).put(high, low, (int) hash, new Presence(user, connection, System.currentTimeMillis()));
+    }
+
+    /**
+     * Removes the user, if still connected through the given connection.
+     */
+    public boolean disconnect(ObjectId user, IPlayerConnection connection) {
+        var key = key(user);
+        var high = key.getLong(0);
+        var low = key.getInt(8);
+        var hash = hash(high, low);
+        return shard(hash).remove(high, low, (int) hash, connection) != null;
+    }
+
+    /**
+     * Returns the presence of the user or null, if offline.
+     */
+    public Presence get(ObjectId user) {
+        var key = key(user);
+        var high = key.getLong(0);
+        var low = key.getInt(8);
+        var hash = hash(high, low);
+        return shard(hash).get(high, low, (int) hash);
+    }
+
+    public IPlayerConnection getConnection(ObjectId user) {
+        var presence = get(user);
+        return presence != null ? presence.getConnection() : null;
+    }
+
+    /**
+     * Marks the user as seen, if still connected through the given connection. A replaced session that is still
+     * open must not keep the presence of the new one alive.
+     */
+    public void heartbeat(ObjectId user, IPlayerConnection connection) {
+        var presence = get(user);
+        if (presence != null && presence.getConnection() == connection) {
+            presence.touch(System.currentTimeMillis());
+        }
+    }
+
+    public void setMatch(ObjectId user, ObjectId match) {
+        var presence = get(user);
+        if (presence != null) {
+            presence.setMatch(match);
+        }
+    }
+
+    /**
+     * Returns the presences of the online users among the given ones, like the friends of a user.
+     */
+    public List<Presence> getOnline(Collection<ObjectId> users) {
+        var online = new ArrayList<Presence>();
+        for (var user : users) {
+            var presence = get(user);
+            if (presence != null) {
+                online.add(presence);
+            }
+        }
+        return online;
+    }
+
+    public int size() {
+        var size = 0;
+        for (var shard : shards) {
+            size += shard.size();
+        }
+        return size;
+    }
+
+    /**
+     * Removes and closes the connections silent for the timeout, pings the ones silent for the heartbeat.
+     */
+    void sweep(long now) {
+        var silent = new ArrayList<Presence>();
+        for (var shard : shards) {
+            silent.clear();
+            shard.forEach(presence -> {
+                if (now - presence.getLastSeen() >= heartbeat) {
+                    silent.add(presence);
+                }
+            });
+            for (var presence : silent) {
+                // a failing connection must not keep the others from being swept
+                try {
+                    if (now - presence.getLastSeen() >= timeout) {
+                        if (disconnect(presence.getUser(), presence.getConnection())) {
+                            expired.increment();
+                            presence.getConnection().close();
+                        }
+                    } else {
+                        presence.getConnection().ping();
+                    }
+                } catch (Exception e) {
+                    logger.warn("Error while sweeping the presence of user {}", presence.getUser().toHexString(), e);
+                }
+            }
+        }
+    }
+
+    private Shard shard(long hash) {
+        // the low half of the hash is the slot within the shard
+        return shards[(int) (hash >>> 32) & (shards.length - 1)];
+    }
+
+    /**
+     * Writes the 12 bytes of the id to a thread local buffer, read back as a long and an int.
+     */
+    private static ByteBuffer key(ObjectId user) {
+        var buffer = KEYS.get();
+        buffer.clear();
+        user.putToByteBuffer(buffer);
+        return buffer;
+    }
+
+    private static long hash(long high, int low) {
+        // timestamp and counter bits of object ids are far from uniform
+        var hash = (high ^ (low & 0xffffffffL) * 0x9e3779b97f4a7c15L) * 0xbf58476d1ce4e5b9L;
+        return hash ^ hash >>> 31;
+    }
+
+    /**
+     * Open addressing table with linear probing, removal shifts the following entries back instead of leaving
+     * tombstones. Kept at most half full.
+     */
+    private static final class Shard {
+        private static final int INITIAL_CAPACITY = 16;
+
+        private final StampedLock lock;
+        private long[] highs;
+        private int[] lows;
+        private Presence[] values;
+        private int size;
+
+        private Shard() {
+            this.lock = new StampedLock();
+            this.highs = new long[INITIAL_CAPACITY];
+            this.lows = new int[INITIAL_CAPACITY];
+            this.values = new Presence[INITIAL_CAPACITY];
+        }
+
+        Presence get(long high, int low, int hash) {
+            var stamp = lock.tryOptimisticRead();
+            var presence = find(high, low, hash);
+            if (lock.validate(stamp)) {
+                return presence;
+            }
+            stamp = lock.readLock();
+            try {
+                return find(high, low, hash);
+            } finally {
+                lock.unlockRead(stamp);
+            }
+        }
+
+        Presence put(long high, int low, int hash, Presence presence) {
+            var stamp = lock.writeLock();
+            try {
+                var index = index(high, low, hash);
+                if (index >= 0) {
+                    var previous = values[index];
+                    values[index] = presence;
+                    return previous;
+                }
+                if (2 * (size + 1) > values.length) {
+                    resize();
+                }
+                var mask = values.length - 1;
+                var slot = hash & mask;
+                while (values[slot] != null) {
+                    slot = (slot + 1) & mask;
+                }
+                highs[slot] = high;
+                lows[slot] = low;
+                values[slot] = presence;
+                size++;
+                return null;
+            } finally {
+                lock.unlockWrite(stamp);
+            }
+        }
+
+        /**
+         * Removes the entry, if it still holds the given connection, and returns it.
+         */
+        Presence remove(long high, int low, int hash, IPlayerConnection connection) {
+            var stamp = lock.writeLock();
+            try {
+                var index = index(high, low, hash);
+                if (index < 0 || values[index].getConnection() != connection) {
+                    return null;
+                }
+                var removed = values[index];
+                var mask = values.length - 1;
+                var slot = (index + 1) & mask;
+                while (values[slot] != null) {
+                    var home = (int) PresenceRegistry.hash(highs[slot], lows[slot]) & mask;
+                    // move back, unless the entry's home lies cyclically in (index, slot]
+                    if (((slot - home) & mask) >= ((slot - index) & mask)) {
+                        highs[index] = highs[slot];
+                        lows[index] = lows[slot];
+                        values[index] = values[slot];
+                        index = slot;
+                    }
+                    slot = (slot + 1) & mask;
+                }
+                values[index] = null;
+                size--;
+                return removed;
+            } finally {
+                lock.unlockWrite(stamp);
+            }
+        }
+
+        int size() {
+            var stamp = lock.tryOptimisticRead();
+            var size = this.size;
+            if (lock.validate(stamp)) {
+                return size;
+            }
+            stamp = lock.readLock();
+            try {
+                return this.size;
+            } finally {
+                lock.unlockRead(stamp);
+            }
+        }
+
+        void forEach(Consumer<Presence> consumer) {
+            var stamp = lock.readLock();
+            try {
+                for (var presence : values) {
+                    if (presence != null) {
+                        consumer.accept(presence);
+                    }
+                }
+            } finally {
+                lock.unlockRead(stamp);
+            }
+        }
+
+        /**
+         * Probes without a lock, the result is only valid if the caller's stamp validates afterwards. The arrays
+         * are read once, so a concurrent resize cannot make the probe fail.
+         */
+        private Presence find(long high, int low, int hash) {
+            var highs = this.highs;
+            var lows = this.lows;
+            var values = this.values;
+            var length = Math.min(values.length, Math.min(highs.length, lows.length));
+            var mask = length - 1;
+            var slot = hash & mask;
+            for (var probes = 0; probes < length; probes++) {
+                var presence = values[slot];
+                if (presence == null) {
+                    return null;
+                }
+                if (highs[slot] == high && lows[slot] == low) {
+                    return presence;
+                }
+                slot = (slot + 1) & mask;
+            }
+            return null;
+        }
+
+        private int index(long high, int low, int hash) {
+            var mask = values.length - 1;
+            var slot = hash & mask;
+            while (values[slot] != null) {
+                if (highs[slot] == high && lows[slot] == low) {
+                    return slot;
+                }
+                slot = (slot + 1) & mask;
+            }
+            return -1;
+        }
+
+        private void resize() {
+            var oldHighs = highs;
+            var oldLows = lows;
+            var oldValues = values;
+            var capacity = oldValues.length * 2;
+            var mask = capacity - 1;
+            var newHighs = new long[capacity];
+            var newLows = new int[capacity];
+            var newValues = new Presence[capacity];
+            for (var i = 0; i < oldValues.length; i++) {
+                if (oldValues[i] != null) {
+                    var slot = (int) PresenceRegistry.hash(oldHighs[i], oldLows[i]) & mask;
+                    while (newValues[slot] != null) {
+                        slot = (slot + 1) & mask;
+                    }
+                    newHighs[slot] = oldHighs[i];
+                    newLows[slot] = oldLows[i];
+                    newValues[slot] = oldValues[i];
+                }
+            }
+            highs = newHighs;
+            lows = newLows;
+            values = newValues;
+        }
+    }
+}
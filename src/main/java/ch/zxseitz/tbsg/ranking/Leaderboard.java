@@ -0,0 +1,269 @@
+package ch.zxseitz.tbsg.ranking;
+
+import org.bson.types.ObjectId;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Order statistic index of the player ratings. A fenwick tree counts the players per rating, ordered from the
+ * highest rating down, so the rank of a rating and the rating at a rank are found in O(log R) for R distinct
+ * ratings. The players of a rating are kept ordered by id, the order of equally rated players on a page, in an
+ * order statistic tree, so a page starting anywhere within a rating is found in O(log n) as well.
+ * <p>
+ * Ranks are competition ranks: equally rated players share a rank, which is one more than the number of
+ * players rated higher. Ratings are clamped to [0, MAX_RATING).
+ */
+public class Leaderboard {
+    public static final int MAX_RATING = 4000;
+
+    private final ReentrantReadWriteLock lock;
+    private final Map<ObjectId, Integer> ratings;
+    // position p holds the players of rating MAX_RATING - p, 1 based
+    private final int[] tree;
+    private final OrderStatisticTree<ObjectId>[] players;
+
+    @SuppressWarnings("unchecked")
+    public Leaderboard() {
+        this.lock = new ReentrantReadWriteLock();
+        this.ratings = new HashMap<>();
+        this.tree = new int[MAX_RATING + 1];
+        this.players = (OrderStatisticTree<ObjectId>[]) new OrderStatisticTree<?>[MAX_RATING + 1];
+    }
+
+    /**
+     * Replaces the whole index by the given players, in O(n log n) for n players.
+     */
+    public void rebuild(Iterator<Map.Entry<ObjectId, Integer>> entries) {
+        lock.writeLock().lock();
+        try {
+            ratings.clear();
+            for (var position = 1; position <= MAX_RATING; position++) {
+                tree[position] = 0;
+                players[position] = null;
+            }
+            while (entries.hasNext()) {
+                var entry = entries.next();
+                var position = position(entry.getValue());
+                ratings.put(entry.getKey(), ratingAt(position));
+                tree[position]++;
+                bucket(position).add(entry.getKey());
+            }
+            // counts to fenwick tree in place, in linear time
+            for (var position = 1; position <= MAX_RATING; position++) {
+                var parent = position + (position & -position);
+                if (parent <= MAX_RATING) {
+                    tree[parent] += tree[position];
+                }
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Adds the player or moves it to the new rating.
+     */
+    public void update(ObjectId player, int rating) {
+        var position = position(rating);
+        lock.writeLock().lock();
+        try {
+            var previous = ratings.put(player, ratingAt(position));
+            if (previous != null) {
+                var previousPosition = position(previous);
+                if (previousPosition == position) {
+                    return;
+                }
+                players[previousPosition].remove(player);
+                add(previousPosition, -1);
+            }
+            bucket(position).add(player);
+            add(position, 1);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void remove(ObjectId player) {
+        lock.writeLock().lock();
+        try {
+            var previous = ratings.remove(player);
+            if (previous != null) {
+                var position = position(previous);
+                players[position].remove(player);
+                add(position, -1);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Returns the indexed rating of the player, or the default, if not indexed.
+     */
+    public int getRating(ObjectId player, int defaultRating) {
+        lock.readLock().lock();
+        try {
+            return ratings.getOrDefault(player, defaultRating);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return ratings.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Returns the rank of the player, or null, if not indexed.
+     */
+    public Rank getRank(ObjectId player) {
+        lock.readLock().lock();
+        try {
+            var rating = ratings.get(player);
+            if (rating == null) {
+                return null;
+            }
+            return new Rank(player, rating, sum(position(rating) - 1) + 1);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Returns up to limit players starting at the given offset, 0 is the best player. Finding the first player
+     * is O(log R + log n), each further one O(log n).
+     */
+    public List<Rank> getPage(int offset, int limit) {
+        lock.readLock().lock();
+        try {
+            var page = new ArrayList<Rank>(Math.min(limit, ratings.size()));
+            if (offset >= ratings.size()) {
+                return page;
+            }
+            var position = find(offset);
+            collect(page, position, offset - sum(position - 1), limit);
+            for (position++; page.size() < limit && position <= MAX_RATING; position++) {
+                collect(page, position, 0, limit);
+            }
+            return page;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Returns the player with up to count neighbours ranked above and below, or an empty list, if not indexed.
+     */
+    public List<Rank> getAround(ObjectId player, int count) {
+        lock.readLock().lock();
+        try {
+            var rating = ratings.get(player);
+            if (rating == null) {
+                return List.of();
+            }
+            var own = position(rating);
+            var index = players[own].indexOf(player);
+            var page = new ArrayList<Rank>(2 * count + 1);
+            collectReversed(page, own, index - 1, count);
+            for (var position = own - 1; page.size() < count && position > 0; position--) {
+                if (players[position] != null) {
+                    collectReversed(page, position, players[position].size() - 1, count);
+                }
+            }
+            Collections.reverse(page);
+            var limit = page.size() + 1 + count;
+            collect(page, own, index, limit);
+            for (var position = own + 1; page.size() < limit && position <= MAX_RATING; position++) {
+                collect(page, position, 0, limit);
+            }
+            return page;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Adds the players of the position from the given index on, in order.
+     */
+    private void collect(List<Rank> page, int position, int from, int limit) {
+        var bucket = players[position];
+        if (bucket == null || bucket.isEmpty()) {
+            return;
+        }
+        var rating = ratingAt(position);
+        var rank = sum(position - 1) + 1;
+        for (var index = from; page.size() < limit && index < bucket.size(); index++) {
+            page.add(new Rank(bucket.get(index), rating, rank));
+        }
+    }
+
+    /**
+     * Adds the players of the position from the given index down, in reverse order.
+     */
+    private void collectReversed(List<Rank> page, int position, int from, int limit) {
+        var bucket = players[position];
+        var rating = ratingAt(position);
+        var rank = sum(position - 1) + 1;
+        for (var index = from; page.size() < limit && index >= 0; index--) {
+            page.add(new Rank(bucket.get(index), rating, rank));
+        }
+    }
+
+    private OrderStatisticTree<ObjectId> bucket(int position) {
+        if (players[position] == null) {
+            players[position] = new OrderStatisticTree<>();
+        }
+        return players[position];
+    }
+
+    private void add(int position, int delta) {
+        for (; position <= MAX_RATING; position += position & -position) {
+            tree[position] += delta;
+        }
+    }
+
+    /**
+     * Number of players at positions 1 to position.
+     */
+    private int sum(int position) {
+        var sum = 0;
+        for (; position > 0; position -= position & -position) {
+            sum += tree[position];
+        }
+        return sum;
+    }
+
+    /**
+     * Smallest position with more than offset players at or above it, offset must be less than the size.
+     */
+    private int find(int offset) {
+        var position = 0;
+        for (var step = Integer.highestOneBit(MAX_RATING); step > 0; step >>= 1) {
+            var next = position + step;
+            if (next <= MAX_RATING && tree[next] <= offset) {
+                position = next;
+                offset -= tree[next];
+            }
+        }
+        return position + 1;
+    }
+
+    private static int position(int rating) {
+        return MAX_RATING - Math.max(0, Math.min(MAX_RATING - 1, rating));
+    }
+
+    private static int ratingAt(int position) {
+        return MAX_RATING - position;
+    }
+}
@@ -0,0 +1,182 @@
+package ch.zxseitz.tbsg.ranking;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Sorted set that finds the element at an index and the index of an element in O(log n), a treap whose nodes
+ * count the elements of their subtree. Not thread safe.
+ */
+final class OrderStatisticTree<T extends Comparable<? super T>> {
+    private Node<T> root;
+
+    int size() {
+        return size(root);
+    }
+
+    boolean isEmpty() {
+        return root == null;
+    }
+
+    boolean contains(T key) {
+        var node = root;
+        while (node != null) {
+            var compare = key.compareTo(node.key);
+            if (compare == 0) {
+                return true;
+            }
+            node = compare < 0 ? node.left : node.right;
+        }
+        return false;
+    }
+
+    boolean add(T key) {
+        if (contains(key)) {
+            return false;
+        }
+        root = insert(root, key);
+        return true;
+    }
+
+    boolean remove(T key) {
+        if (!contains(key)) {
+            return false;
+        }
+        root = delete(root, key);
+        return true;
+    }
+
+    /**
+     * Returns the element at the index, 0 is the smallest.
+     *
+     * @throws IndexOutOfBoundsException if the index is not less than the size
+     */
+    T get(int index) {
+        if (index < 0 || index >= size()) {
+            throw new IndexOutOfBoundsException(String.format("Index %d out of %d elements", index, size()));
+        }
+        var node = root;
+        while (true) {
+            var left = size(node.left);
+            if (index < left) {
+                node = node.left;
+            } else if (index == left) {
+                return node.key;
+            } else {
+                index -= left + 1;
+                node = node.right;
+            }
+        }
+    }
+
+    /**
+     * Returns the number of elements less than the key, its index if contained.
+     */
+    int indexOf(T key) {
+        var index = 0;
+        var node = root;
+        while (node != null) {
+            var compare = key.compareTo(node.key);
+            if (compare <= 0) {
+                if (compare == 0) {
+                    return index + size(node.left);
+                }
+                node = node.left;
+            } else {
+                index += size(node.left) + 1;
+                node = node.right;
+            }
+        }
+        return index;
+    }
+
+    private static <T extends Comparable<? super T>> Node<T> insert(Node<T> node, T key) {
+        if (node == null) {
+            return new Node<>(key, ThreadLocalRandom.current().nextInt());
+        }
+        if (key.compareTo(node.key) < 0) {
+            node.left = insert(node.left, key);
+            if (node.left.priority > node.priority) {
+                node = rotateRight(node);
+            }
+        } else {
+            node.right = insert(node.right, key);
+            if (node.right.priority > node.priority) {
+                node = rotateLeft(node);
+            }
+        }
+        node.update();
+        return node;
+    }
+
+    private static <T extends Comparable<? super T>> Node<T> delete(Node<T> node, T key) {
+        var compare = key.compareTo(node.key);
+        if (compare == 0) {
+            return merge(node.left, node.right);
+        }
+        if (compare < 0) {
+            node.left = delete(node.left, key);
+        } else {
+            node.right = delete(node.right, key);
+        }
+        node.update();
+        return node;
+    }
+
+    /**
+     * Joins two subtrees, all elements of the left one are less than the ones of the right one.
+     */
+    private static <T> Node<T> merge(Node<T> left, Node<T> right) {
+        if (left == null) {
+            return right;
+        }
+        if (right == null) {
+            return left;
+        }
+        if (left.priority > right.priority) {
+            left.right = merge(left.right, right);
+            left.update();
+            return left;
+        }
+        right.left = merge(left, right.left);
+        right.update();
+        return right;
+    }
+
+    private static <T> Node<T> rotateRight(Node<T> node) {
+        var left = node.left;
+        node.left = left.right;
+        left.right = node;
+        node.update();
+        return left;
+    }
+
+    private static <T> Node<T> rotateLeft(Node<T> node) {
+        var right = node.right;
+        node.right = right.left;
+        right.left = node;
+        node.update();
+        return right;
+    }
+
+    private static int size(Node<?> node) {
+        return node != null ? node.size : 0;
+    }
+
+    private static final class Node<T> {
+        private final T key;
+        private final int priority;
+        private int size;
+        private Node<T> left;
+        private Node<T> right;
+
+        private Node(T key, int priority) {
+            this.key = key;
+            this.priority = priority;
+            this.size = 1;
+        }
+
+        private void update() {
+            size = 1 + OrderStatisticTree.size(left) + OrderStatisticTree.size(right);
+        }
+    }
+}
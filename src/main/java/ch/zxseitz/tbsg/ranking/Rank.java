@@ -0,0 +1,30 @@
+package ch.zxseitz.tbsg.ranking;
+
+import org.bson.types.ObjectId;
+
+public class Rank {
+    private final ObjectId player;
+    private final int rating;
+    private final int rank;
+
+    public Rank(ObjectId player, int rating, int rank) {
+        this.player = player;
+        this.rating = rating;
+        this.rank = rank;
+    }
+
+    public ObjectId getPlayer() {
+        return player;
+    }
+
+    public int getRating() {
+        return rating;
+    }
+
+    /**
+     * One based competition rank, equally rated players share their rank.
+     */
+    public int getRank() {
+        return rank;
+    }
+}
@@ -0,0 +1,128 @@
+package ch.zxseitz.tbsg.ranking;
+
+import ch.zxseitz.tbsg.game.Match;
+import ch.zxseitz.tbsg.model.User;
+import ch.zxseitz.tbsg.repo.IUserRepository;
+import org.bson.types.ObjectId;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Elo ratings of the players. The {@link Leaderboard} is the live copy of all ratings: it is rebuilt from
+ * mongo in one streaming pass on startup and updated in memory when a match finishes, the new ratings are
+ * written to mongo in the background. A rating lost by a crash before its write is restored from mongo.
+ */
+@Service
+public class RatingService {
+    private static final Logger logger = LoggerFactory.getLogger(RatingService.class);
+
+    private final IUserRepository userRepository;
+    private final Leaderboard leaderboard;
+    private final int kFactor;
+    private final ExecutorService writer;
+
+    @Autowired
+    public RatingService(@Qualifier("cached") IUserRepository userRepository,
+                         @Value("${tbsg.rating.k-factor:32}") int kFactor) {
+        this.userRepository = userRepository;
+        this.leaderboard = new Leaderboard();
+        this.kFactor = kFactor;
+        this.writer = Executors.newSingleThreadExecutor(runnable -> {
+            var thread = new Thread(runnable, "rating-writer");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    @PostConstruct
+    public void rebuild() {
+        var start = System.currentTimeMillis();
+        try (var users = userRepository.stream(null)) {
+            leaderboard.rebuild(users.map(user -> Map.entry(user.id, user.getRating())).iterator());
+        }
+        logger.info("Rebuilt leaderboard of {} players in {} ms", leaderboard.size(),
+                System.currentTimeMillis() - start);
+    }
+
+    public Leaderboard getLeaderboard() {
+        return leaderboard;
+    }
+
+    public int getRating(ObjectId user) {
+        return leaderboard.getRating(user, User.DEFAULT_RATING);
+    }
+
+    /**
+     * Indexes a newly stored user with its initial rating.
+     */
+    public void playerAdded(User user) {
+        leaderboard.update(user.id, user.getRating());
+    }
+
+    public void playerRemoved(ObjectId user) {
+        leaderboard.remove(user);
+    }
+
+    /**
+     * Rates a finished match, called once by the match actor.
+     */
+    public void matchFinished(Match match) {
+        var matchId = match.getId();
+        var player1 = match.getPlayer(0);
+        var player2 = match.getPlayer(1);
+        var winner = match.getWinner();
+        var score = winner == 0 ? 1.0 : winner == 1 ? 0.0 : 0.5;
+        int rating1;
+        int rating2;
+        // players may finish two matches at once on different actors
+        synchronized (this) {
+            var previous1 = getRating(player1);
+            var previous2 = getRating(player2);
+            var delta = delta(previous1, previous2, score, kFactor);
+            rating1 = clamp(previous1 + delta);
+            rating2 = clamp(previous2 - delta);
+            leaderboard.update(player1, rating1);
+            leaderboard.update(player2, rating2);
+        }
+        writer.execute(() -> {
+            try {
+                userRepository.updateRating(player1, rating1);
+                userRepository.updateRating(player2, rating2);
+            } catch (Exception e) {
+                logger.error("Could not write the ratings of match {}", matchId.toHexString(), e);
+            }
+        });
+    }
+
+    @PreDestroy
+    public void shutdown() throws InterruptedException {
+        writer.shutdown();
+        if (!writer.awaitTermination(10, TimeUnit.SECONDS)) {
+            logger.error("Rating writer closed with {} unwritten matches", writer.shutdownNow().size());
+        }
+    }
+
+    /**
+     * Rating change of the first player, score is 1 for a win, 0.5 for a draw and 0 for a loss. The second
+     * player changes by the negative amount.
+     */
+    static int delta(int rating, int opponent, double score, int kFactor) {
+        var expected = 1.0 / (1.0 + Math.pow(10.0, (opponent - rating) / 400.0));
+        return (int) Math.round(kFactor * (score - expected));
+    }
+
+    private static int clamp(int rating) {
+        return Math.max(0, Math.min(Leaderboard.MAX_RATING - 1, rating));
+    }
+}
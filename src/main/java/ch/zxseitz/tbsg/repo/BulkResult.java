@@ -0,0 +1,31 @@
+package ch.zxseitz.tbsg.repo;
+
+import java.util.Collections;
+import java.util.Map;
+
+/**
+ * Outcome of a bulk write. Failures are keyed by the position of the item in the request.
+ */
+public class BulkResult {
+    private final int requested;
+    private final long affected;
+    private final Map<Integer, String> failures;
+
+    public BulkResult(int requested, long affected, Map<Integer, String> failures) {
+        this.requested = requested;
+        this.affected = affected;
+        this.failures = Collections.unmodifiableMap(failures);
+    }
+
+    public int getRequested() {
+        return requested;
+    }
+
+    public long getAffected() {
+        return affected;
+    }
+
+    public Map<Integer, String> getFailures() {
+        return failures;
+    }
+}
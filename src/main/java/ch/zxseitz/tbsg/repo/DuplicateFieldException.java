@@ -0,0 +1,19 @@
+package ch.zxseitz.tbsg.repo;
+
+/**
+ * Thrown by repositories if a write violates the uniqueness of a field.
+ */
+public class DuplicateFieldException extends RuntimeException {
+    private static final long serialVersionUID = 1L;
+
+    private final String field;
+
+    public DuplicateFieldException(String field, Throwable cause) {
+        super(String.format("Duplicate value for unique field \"%s\"", field), cause);
+        this.field = field;
+    }
+
+    public String getField() {
+        return field;
+    }
+}
@@ -0,0 +1,28 @@
+package ch.zxseitz.tbsg.repo;
+
+import ch.zxseitz.tbsg.game.Match;
+
+import java.util.List;
+
+/**
+ * Persistence of running matches as append-only turn log plus periodic snapshots. Writes are buffered and
+ * written in groups, a turn is durable once a later {@link #flush()} returned.
+ */
+public interface IMatchLog {
+    void append(Match match, int turn, int player, int move);
+
+    /**
+     * Stores the current state of the match, older turns are no longer needed to restore it.
+     */
+    void snapshot(Match match);
+
+    /**
+     * Blocks until everything appended before has been written.
+     */
+    void flush() throws InterruptedException;
+
+    /**
+     * Restores all unfinished matches from their latest snapshot and the turns logged after it.
+     */
+    List<Match> recover();
+}
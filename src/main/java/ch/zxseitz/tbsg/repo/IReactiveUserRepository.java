@@ -0,0 +1,38 @@
+package ch.zxseitz.tbsg.repo;
+
+import ch.zxseitz.tbsg.model.User;
+import org.bson.types.ObjectId;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+/**
+ * Non-blocking counterpart of {@link IUserRepository} for the single user operations. Missing users complete
+ * empty instead of returning an empty optional.
+ */
+public interface IReactiveUserRepository {
+    /**
+     * Fails with a {@link DuplicateFieldException}, if the username or email is already taken.
+     */
+    Mono<Void> insert(User user);
+    Mono<User> get(ObjectId id);
+    Mono<User> getByEmail(String email);
+    Mono<User> getByUsername(String username);
+    Mono<Void> update(ObjectId id, User user);
+    Mono<Void> delete(ObjectId id);
+
+    /**
+     * Returns the user with only the fields needed for authentication: id, username, password and roles.
+     */
+    Mono<User> getCredentials(String username);
+
+    /**
+     * Returns the user without the password.
+     */
+    Mono<User> getProfile(ObjectId id);
+
+    /**
+     * Returns up to limit users ordered by id, starting after the given id or at the beginning, if null.
+     * Listed users only carry their public fields.
+     */
+    Flux<User> getPage(ObjectId after, int limit);
+}
@@ -2,8 +2,11 @@ package ch.zxseitz.tbsg.repo;
 
 import org.bson.types.ObjectId;
 
+import java.util.Collection;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.stream.Stream;
 
 public interface IRepository<T> {
     void insert(T t);
@@ -11,4 +14,33 @@ public interface IRepository<T> {
     Optional<T> get(ObjectId id);
     void update(ObjectId id, T t);
     void delete(ObjectId id);
+
+    /**
+     * Returns up to limit entities ordered by id, starting after the given id or at the beginning, if null.
+     * Listed entities only carry their public fields, users their name, email and rating.
+     */
+    List<T> getPage(ObjectId after, int limit);
+
+    /**
+     * Streams all entities ordered by id, starting after the given id or at the beginning, if null.
+     * Listed entities only carry their public fields. The stream holds a database cursor and must be closed.
+     */
+    Stream<T> stream(ObjectId after);
+
+    /**
+     * Inserts all entities, failures are reported per position in the list.
+     */
+    BulkResult insertAll(List<T> ts);
+
+    /**
+     * Returns all existing entities of the given ids. Listed entities only carry their public fields.
+     */
+    List<T> getAll(Collection<ObjectId> ids);
+
+    /**
+     * Updates all entities, failures are reported per position in the iteration order of the map.
+     */
+    BulkResult updateAll(Map<ObjectId, T> ts);
+
+    BulkResult deleteAll(Collection<ObjectId> ids);
 }
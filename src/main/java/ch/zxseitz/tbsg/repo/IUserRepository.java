@@ -1,10 +1,26 @@
 package ch.zxseitz.tbsg.repo;
 
 import ch.zxseitz.tbsg.model.User;
+import org.bson.types.ObjectId;
 
 import java.util.Optional;
 
 public interface IUserRepository extends IRepository<User> {
     Optional<User> getByEmail(String email);
     Optional<User> getByUsername(String username);
+
+    /**
+     * Returns the user with only the fields needed for authentication: id, username, password and roles.
+     */
+    Optional<User> getCredentials(String username);
+
+    /**
+     * Returns the user without the password.
+     */
+    Optional<User> getProfile(ObjectId id);
+
+    /**
+     * Sets the rating of the user, leaving all other fields untouched.
+     */
+    void updateRating(ObjectId id, int rating);
 }
@@ -0,0 +1,393 @@
+package ch.zxseitz.tbsg.repo;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.bson.types.ObjectId;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.stream.Stream;
+
+/**
+ * Buffers single entity writes of a repository and writes them as bulk operations. Writes are coalesced per
+ * id: the buffer keeps at most a delete, an insert and the latest update of an id, flushed in this order, so
+ * the outcome equals the one of the single writes. Bulk writes and reads of buffered ids flush first, reads
+ * therefore always see the own writes.
+ * <p>
+ * Durability depends on the mode:
+ * <ul>
+ * <li>{@link Mode#ASYNC}: writes return immediately and are flushed after batchSize ids or flushInterval,
+ * whatever comes first. Writes of the last interval are lost on a crash, failures are only logged.</li>
+ * <li>{@link Mode#GROUP_COMMIT}: writes return once their batch was written and rethrow its failure. Batches
+ * are flushed as soon as the previous one is done, so concurrent writers share a bulk write.</li>
+ * </ul>
+ * Failures of single documents within a bulk write are counted and logged, but not reported to the writer.
+ * Once maxPending ids are buffered, writers of further ids block until the buffer was handed to the flusher.
+ */
+public class WriteBehindRepository<T> implements IRepository<T>, AutoCloseable {
+    private static final Logger logger = LoggerFactory.getLogger(WriteBehindRepository.class);
+
+    public enum Mode {
+        ASYNC,
+        GROUP_COMMIT
+    }
+
+    private final IRepository<T> delegate;
+    private final Function<T, ObjectId> idOf;
+    private final Mode mode;
+    private final int batchSize;
+    private final int maxPending;
+    private final long flushIntervalNanos;
+    private final ReentrantLock lock;
+    private final Condition flushRequested;
+    private final Condition notFull;
+    private final Thread flusher;
+    private final Timer flushes;
+    private final DistributionSummary batchSizes;
+    private final Counter coalesced;
+    private final Counter failures;
+    private Batch<T> current;
+    private Batch<T> inFlight;
+    private boolean flushNow;
+    private volatile boolean running;
+
+    public WriteBehindRepository(String name, IRepository<T> delegate, Function<T, ObjectId> idOf, Mode mode,
+                                 int batchSize, int maxPending, long flushIntervalMs, MeterRegistry meterRegistry) {
+        this.delegate = delegate;
+        this.idOf = idOf;
+        this.mode = mode;
+        this.batchSize = batchSize;
+        this.maxPending = Math.max(batchSize, maxPending);
+        this.flushIntervalNanos = TimeUnit.MILLISECONDS.toNanos(flushIntervalMs);
+        this.lock = new ReentrantLock();
+        this.flushRequested = lock.newCondition();
+        this.notFull = lock.newCondition();
+        this.current = new Batch<>();
+        this.flushes = Timer.builder("tbsg.writebehind.flush")
+                .tag("repository", name)
+                .publishPercentileHistogram()
+                .register(meterRegistry);
+        this.batchSizes = DistributionSummary.builder("tbsg.writebehind.batch")
+                .tag("repository", name)
+                .publishPercentileHistogram()
+                .register(meterRegistry);
+        this.coalesced = meterRegistry.counter("tbsg.writebehind.coalesced", "repository", name);
+        this.failures = meterRegistry.counter("tbsg.writebehind.failures", "repository", name);
+        Gauge.builder("tbsg.writebehind.pending", this, WriteBehindRepository::pending)
+                .tag("repository", name)
+                .register(meterRegistry);
+        this.running = true;
+        this.flusher = new Thread(this::run, "write-behind-" + name);
+        this.flusher.setDaemon(true);
+        this.flusher.start();
+    }
+
+    /**
+     * Buffers the insert under the id of the entity, which therefore must be assigned before.
+     *
+     * @throws IllegalArgumentException if the entity has no id
+     */
+    @Override
+    public void insert(T t) {
+        var id = idOf.apply(t);
+        if (id == null) {
+            throw new IllegalArgumentException("Buffered inserts need an id");
+        }
+        write(id, pending -> {
+            pending.insert = t;
+            pending.update = null;
+        });
+    }
+
+    @Override
+    public void update(ObjectId id, T t) {
+        write(id, pending -> pending.update = t);
+    }
+
+    @Override
+    public void delete(ObjectId id) {
+        write(id, pending -> {
+            pending.delete = true;
+            pending.insert = null;
+            pending.update = null;
+        });
+    }
+
+    @Override
+    public Optional<T> get(ObjectId id) {
+        flushIfPending(id);
+        return delegate.get(id);
+    }
+
+    @Override
+    public List<T> getAll() {
+        flush();
+        return delegate.getAll();
+    }
+
+    @Override
+    public List<T> getPage(ObjectId after, int limit) {
+        flush();
+        return delegate.getPage(after, limit);
+    }
+
+    @Override
+    public Stream<T> stream(ObjectId after) {
+        flush();
+        return delegate.stream(after);
+    }
+
+    @Override
+    public List<T> getAll(Collection<ObjectId> ids) {
+        flush();
+        return delegate.getAll(ids);
+    }
+
+    @Override
+    public BulkResult insertAll(List<T> ts) {
+        flush();
+        return delegate.insertAll(ts);
+    }
+
+    @Override
+    public BulkResult updateAll(Map<ObjectId, T> ts) {
+        flush();
+        return delegate.updateAll(ts);
+    }
+
+    @Override
+    public BulkResult deleteAll(Collection<ObjectId> ids) {
+        flush();
+        return delegate.deleteAll(ids);
+    }
+
+    /**
+     * Writes all buffered writes and waits for their completion.
+     */
+    public void flush() {
+        Batch<T> batch;
+        lock.lock();
+        try {
+            batch = current.writes.isEmpty() ? inFlight : current;
+            if (batch == null) {
+                return;
+            }
+            flushNow = true;
+            flushRequested.signal();
+        } finally {
+            lock.unlock();
+        }
+        await(batch);
+    }
+
+    /**
+     * Flushes the buffer and stops the flusher. An interrupted caller stops waiting for the flush and keeps its
+     * interrupt status.
+     */
+    @Override
+    public void close() {
+        lock.lock();
+        try {
+            running = false;
+            flushRequested.signal();
+        } finally {
+            lock.unlock();
+        }
+        try {
+            flusher.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    public int pending() {
+        lock.lock();
+        try {
+            return current.writes.size() + (inFlight != null ? inFlight.writes.size() : 0);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void write(ObjectId id, Consumer<Pending<T>> operation) {
+        Batch<T> batch;
+        lock.lock();
+        try {
+            if (!running) {
+                throw new IllegalStateException("Write behind repository is closed");
+            }
+            while (current.writes.size() >= maxPending && !current.writes.containsKey(id)) {
+                flushNow = true;
+                flushRequested.signal();
+                notFull.awaitUninterruptibly();
+            }
+            batch = current;
+            var pending = batch.writes.get(id);
+            if (pending == null) {
+                pending = new Pending<>();
+                batch.writes.put(id, pending);
+                if (batch.writes.size() == 1) {
+                    batch.started = System.nanoTime();
+                    flushRequested.signal();
+                } else if (batch.writes.size() >= batchSize) {
+                    flushRequested.signal();
+                }
+            } else {
+                coalesced.increment();
+            }
+            operation.accept(pending);
+        } finally {
+            lock.unlock();
+        }
+        if (mode == Mode.GROUP_COMMIT) {
+            await(batch);
+        }
+    }
+
+    private void flushIfPending(ObjectId id) {
+        boolean pending;
+        lock.lock();
+        try {
+            pending = current.writes.containsKey(id) || (inFlight != null && inFlight.writes.containsKey(id));
+        } finally {
+            lock.unlock();
+        }
+        if (pending) {
+            flush();
+        }
+    }
+
+    private void run() {
+        while (true) {
+            Batch<T> batch;
+            lock.lock();
+            try {
+                while (running && !ready()) {
+                    if (current.writes.isEmpty() || mode == Mode.GROUP_COMMIT) {
+                        flushRequested.awaitUninterruptibly();
+                    } else {
+                        flushRequested.awaitNanos(current.started + flushIntervalNanos - System.nanoTime());
+                    }
+                }
+                if (!running && current.writes.isEmpty()) {
+                    return;
+                }
+                batch = current;
+                inFlight = batch;
+                current = new Batch<>();
+                flushNow = false;
+                notFull.signalAll();
+            } catch (InterruptedException e) {
+                running = false;
+                continue;
+            } finally {
+                lock.unlock();
+            }
+            var failure = writeBatch(batch);
+            lock.lock();
+            try {
+                inFlight = null;
+            } finally {
+                lock.unlock();
+            }
+            if (failure == null) {
+                batch.done.complete(null);
+            } else {
+                batch.done.completeExceptionally(failure);
+            }
+        }
+    }
+
+    private boolean ready() {
+        if (current.writes.isEmpty()) {
+            return false;
+        }
+        return mode == Mode.GROUP_COMMIT || flushNow || current.writes.size() >= batchSize
+                || System.nanoTime() - current.started >= flushIntervalNanos;
+    }
+
+    private RuntimeException writeBatch(Batch<T> batch) {
+        var deletes = new ArrayList<ObjectId>();
+        var inserts = new ArrayList<T>();
+        var updates = new LinkedHashMap<ObjectId, T>();
+        for (var entry : batch.writes.entrySet()) {
+            var pending = entry.getValue();
+            if (pending.delete) {
+                deletes.add(entry.getKey());
+            }
+            if (pending.insert != null) {
+                inserts.add(pending.insert);
+            }
+            if (pending.update != null) {
+                updates.put(entry.getKey(), pending.update);
+            }
+        }
+        batchSizes.record(batch.writes.size());
+        try {
+            flushes.record(() -> {
+                if (!deletes.isEmpty()) {
+                    report("delete", delegate.deleteAll(deletes));
+                }
+                if (!inserts.isEmpty()) {
+                    report("insert", delegate.insertAll(inserts));
+                }
+                if (!updates.isEmpty()) {
+                    report("update", delegate.updateAll(updates));
+                }
+            });
+            return null;
+        } catch (RuntimeException e) {
+            failures.increment(batch.writes.size());
+            logger.error("Writing {} buffered writes failed", batch.writes.size(), e);
+            return e;
+        }
+    }
+
+    private void report(String operation, BulkResult result) {
+        if (!result.getFailures().isEmpty()) {
+            failures.increment(result.getFailures().size());
+            logger.warn("{} of {} buffered {}s failed", result.getFailures().size(), result.getRequested(),
+                    operation);
+        }
+    }
+
+    private static void await(Batch<?> batch) {
+        try {
+            batch.done.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw e;
+        }
+    }
+
+    private static class Batch<T> {
+        private final HashMap<ObjectId, Pending<T>> writes = new HashMap<>();
+        private final CompletableFuture<Void> done = new CompletableFuture<>();
+        private long started;
+    }
+
+    private static class Pending<T> {
+        private boolean delete;
+        private T insert;
+        private T update;
+    }
+}
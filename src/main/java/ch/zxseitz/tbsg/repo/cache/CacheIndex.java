@@ -0,0 +1,119 @@
+package ch.zxseitz.tbsg.repo.cache;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.Timer;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
+
+/**
+ * Size and ttl bounded key value index of a cache, reporting hits, misses and load times per index.
+ */
+public class CacheIndex<K, V> {
+    private final ConcurrentHashMap<K, Entry<V>> entries;
+    private final int maxSize;
+    private final long ttl;
+    private final Counter hits;
+    private final Counter misses;
+    private final Timer loads;
+
+    public CacheIndex(String cache, String index, int maxSize, long ttl, MeterRegistry meterRegistry) {
+        this.entries = new ConcurrentHashMap<>();
+        this.maxSize = maxSize;
+        this.ttl = ttl;
+        var tags = Tags.of("cache", cache, "index", index);
+        this.hits = meterRegistry.counter("tbsg.cache.requests", tags.and("result", "hit"));
+        this.misses = meterRegistry.counter("tbsg.cache.requests", tags.and("result", "miss"));
+        this.loads = meterRegistry.timer("tbsg.cache.loads", tags);
+        meterRegistry.gaugeMapSize("tbsg.cache.size", tags, entries);
+    }
+
+    /**
+     * Returns the value of the key or null, if absent or expired. Does not record a hit or miss.
+     */
+    public V peek(K key) {
+        var entry = entries.get(key);
+        if (entry == null) {
+            return null;
+        }
+        if (entry.expiresAt <= System.currentTimeMillis()) {
+            entries.remove(key, entry);
+            return null;
+        }
+        return entry.value;
+    }
+
+    public V get(K key) {
+        var value = peek(key);
+        if (value != null) {
+            hits.increment();
+        } else {
+            misses.increment();
+        }
+        return value;
+    }
+
+    public <R> R load(Supplier<R> loader) {
+        return loads.record(loader);
+    }
+
+    public void put(K key, V value) {
+        if (maxSize <= 0) {
+            return;
+        }
+        var now = System.currentTimeMillis();
+        if (entries.size() >= maxSize) {
+            evict(entries, maxSize, entry -> entry.expiresAt <= now);
+        }
+        entries.put(key, new Entry<>(value, now + ttl));
+    }
+
+    public void invalidate(K key) {
+        entries.remove(key);
+    }
+
+    public void clear() {
+        entries.clear();
+    }
+
+    public void recordHit() {
+        hits.increment();
+    }
+
+    public void recordMiss() {
+        misses.increment();
+    }
+
+    public double hitRatio() {
+        var total = hits.count() + misses.count();
+        return total > 0 ? hits.count() / total : 0d;
+    }
+
+    /**
+     * Makes room in a full concurrent map of bounded size: drops the expired entries, then arbitrary ones until
+     * there is some headroom again.
+     */
+    public static <K, E> void evict(Map<K, E> entries, int maxSize, Predicate<? super E> expired) {
+        entries.values().removeIf(expired);
+        var iterator = entries.keySet().iterator();
+        var target = maxSize - Math.max(1, maxSize / 8);
+        while (entries.size() > target && iterator.hasNext()) {
+            iterator.next();
+            iterator.remove();
+        }
+    }
+
+    private static class Entry<V> {
+        private final V value;
+        private final long expiresAt;
+
+        private Entry(V value, long expiresAt) {
+            this.value = value;
+            this.expiresAt = expiresAt;
+        }
+    }
+}
@@ -0,0 +1,259 @@
+package ch.zxseitz.tbsg.repo.cache;
+
+import ch.zxseitz.tbsg.model.User;
+import ch.zxseitz.tbsg.repo.BulkResult;
+import ch.zxseitz.tbsg.repo.IUserRepository;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.bson.types.ObjectId;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Primary;
+import org.springframework.stereotype.Repository;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
+
+/**
+ * Read-through cache in front of the mongo user repository. Full users and the credential and profile
+ * projections are held in indexes by id, the username and email indexes only map to ids and are validated
+ * against the cached user on every read, so an invalidation of the id is enough to drop stale username or
+ * email mappings.
+ * <p>
+ * Every write of a user takes a sequence number, recorded in the stripe of its id. A load is cached only if
+ * no write to a stripe of the loaded id happened since it started, checked again after the put, so a load
+ * racing with a write of the same user never leaves a stale entry. Writes of other users do not keep loads
+ * from being cached.
+ */
+@Primary
+@Repository("cached")
+public class CachingUserRepository implements IUserRepository {
+    private static final int STRIPES = 1024;
+
+    private final IUserRepository delegate;
+    private final CacheIndex<ObjectId, User> byId;
+    private final CacheIndex<ObjectId, User> credentials;
+    private final CacheIndex<ObjectId, User> profiles;
+    private final CacheIndex<String, ObjectId> byUsername;
+    private final CacheIndex<String, ObjectId> byEmail;
+    private final AtomicLong sequence;
+    // last write sequence per stripe of ids
+    private final AtomicLongArray writes;
+
+    @Autowired
+    public CachingUserRepository(@Qualifier("mongodb") IUserRepository delegate,
+                                 @Value("${tbsg.user.cache.max-size:10000}") int maxSize,
+                                 @Value("${tbsg.user.cache.ttl-ms:300000}") long ttl,
+                                 MeterRegistry meterRegistry) {
+        this.delegate = delegate;
+        this.byId = new CacheIndex<>("users", "id", maxSize, ttl, meterRegistry);
+        this.credentials = new CacheIndex<>("users", "credentials", maxSize, ttl, meterRegistry);
+        this.profiles = new CacheIndex<>("users", "profile", maxSize, ttl, meterRegistry);
+        this.byUsername = new CacheIndex<>("users", "username", maxSize, ttl, meterRegistry);
+        this.byEmail = new CacheIndex<>("users", "email", maxSize, ttl, meterRegistry);
+        this.sequence = new AtomicLong();
+        this.writes = new AtomicLongArray(STRIPES);
+    }
+
+    @Override
+    public void insert(User user) {
+        try {
+            delegate.insert(user);
+        } finally {
+            invalidate(user.id);
+        }
+    }
+
+    @Override
+    public List<User> getAll() {
+        return delegate.getAll();
+    }
+
+    @Override
+    public Optional<User> get(ObjectId id) {
+        var user = byId.get(id);
+        if (user != null) {
+            return Optional.of(user);
+        }
+        return load(byId, byId, () -> delegate.get(id));
+    }
+
+    @Override
+    public Optional<User> getByEmail(String email) {
+        var id = byEmail.peek(email);
+        var user = id != null ? byId.peek(id) : null;
+        if (user != null && email.equals(user.getEmail())) {
+            byEmail.recordHit();
+            return Optional.of(user);
+        }
+        byEmail.recordMiss();
+        return load(byEmail, byId, () -> delegate.getByEmail(email));
+    }
+
+    @Override
+    public Optional<User> getByUsername(String username) {
+        var id = byUsername.peek(username);
+        var user = id != null ? byId.peek(id) : null;
+        if (user != null && username.equals(user.getUsername())) {
+            byUsername.recordHit();
+            return Optional.of(user);
+        }
+        byUsername.recordMiss();
+        return load(byUsername, byId, () -> delegate.getByUsername(username));
+    }
+
+    @Override
+    public Optional<User> getCredentials(String username) {
+        var id = byUsername.peek(username);
+        if (id != null) {
+            // a cached full user is a superset of the credentials
+            var user = byId.peek(id);
+            if (user == null) {
+                user = credentials.peek(id);
+            }
+            if (user != null && username.equals(user.getUsername())) {
+                credentials.recordHit();
+                return Optional.of(user);
+            }
+        }
+        credentials.recordMiss();
+        return load(credentials, credentials, () -> delegate.getCredentials(username));
+    }
+
+    @Override
+    public Optional<User> getProfile(ObjectId id) {
+        var user = byId.peek(id);
+        if (user != null) {
+            profiles.recordHit();
+            return Optional.of(new User(user.id, user.getUsername(), user.getEmail(), null, user.getRoles(),
+                    user.getRating()));
+        }
+        user = profiles.get(id);
+        if (user != null) {
+            return Optional.of(user);
+        }
+        return load(profiles, profiles, () -> delegate.getProfile(id));
+    }
+
+    @Override
+    public void update(ObjectId id, User user) {
+        try {
+            delegate.update(id, user);
+        } finally {
+            invalidate(id);
+        }
+    }
+
+    @Override
+    public void updateRating(ObjectId id, int rating) {
+        try {
+            delegate.updateRating(id, rating);
+        } finally {
+            invalidate(id);
+        }
+    }
+
+    @Override
+    public void delete(ObjectId id) {
+        try {
+            delegate.delete(id);
+        } finally {
+            invalidate(id);
+        }
+    }
+
+    @Override
+    public List<User> getPage(ObjectId after, int limit) {
+        return delegate.getPage(after, limit);
+    }
+
+    @Override
+    public Stream<User> stream(ObjectId after) {
+        return delegate.stream(after);
+    }
+
+    @Override
+    public BulkResult insertAll(List<User> users) {
+        try {
+            return delegate.insertAll(users);
+        } finally {
+            users.forEach(user -> invalidate(user.id));
+        }
+    }
+
+    @Override
+    public List<User> getAll(Collection<ObjectId> ids) {
+        return delegate.getAll(ids);
+    }
+
+    @Override
+    public BulkResult updateAll(Map<ObjectId, User> users) {
+        try {
+            return delegate.updateAll(users);
+        } finally {
+            users.keySet().forEach(this::invalidate);
+        }
+    }
+
+    @Override
+    public BulkResult deleteAll(Collection<ObjectId> ids) {
+        try {
+            return delegate.deleteAll(ids);
+        } finally {
+            ids.forEach(this::invalidate);
+        }
+    }
+
+    private Optional<User> load(CacheIndex<?, ?> index, CacheIndex<ObjectId, User> target,
+                                Supplier<Optional<User>> loader) {
+        var started = sequence.get();
+        var user = index.load(loader);
+        user.ifPresent(u -> {
+            if (writtenSince(u.id, started)) {
+                return;
+            }
+            target.put(u.id, u);
+            if (u.getUsername() != null) {
+                byUsername.put(u.getUsername(), u.id);
+            }
+            if (u.getEmail() != null) {
+                byEmail.put(u.getEmail(), u.id);
+            }
+            // the write may have invalidated the id between the check and the put
+            if (writtenSince(u.id, started)) {
+                target.invalidate(u.id);
+            }
+        });
+        return user;
+    }
+
+    private boolean writtenSince(ObjectId id, long started) {
+        return writes.get(stripe(id)) > started;
+    }
+
+    /**
+     * Drops the cached entries of the user, for writes which bypass this repository like the reactive api.
+     */
+    public void invalidate(ObjectId id) {
+        if (id == null) {
+            // not inserted, nothing cached under it
+            return;
+        }
+        // recorded before the entries are dropped, see load
+        writes.accumulateAndGet(stripe(id), sequence.incrementAndGet(), Math::max);
+        byId.invalidate(id);
+        credentials.invalidate(id);
+        profiles.invalidate(id);
+    }
+
+    private static int stripe(ObjectId id) {
+        var hash = id.hashCode();
+        return (hash ^ hash >>> 16) & (STRIPES - 1);
+    }
+}
@@ -1,67 +1,299 @@
 package ch.zxseitz.tbsg.repo.mongo;
 
 import ch.zxseitz.tbsg.model.User;
+import ch.zxseitz.tbsg.repo.BulkResult;
+import ch.zxseitz.tbsg.repo.DuplicateFieldException;
 import ch.zxseitz.tbsg.repo.IUserRepository;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.bson.Document;
 import org.bson.types.ObjectId;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.BulkOperationException;
+import org.springframework.data.mongodb.core.BulkOperations;
 import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.index.Index;
+import org.springframework.data.mongodb.core.query.Query;
 import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.data.util.StreamUtils;
 import org.springframework.stereotype.Repository;
 
+import javax.annotation.PostConstruct;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 import static org.springframework.data.mongodb.core.query.Query.query;
 import static org.springframework.data.mongodb.core.query.Criteria.where;
 
+/**
+ * User repository on mongo. Every method records its latency, including the mapping, as tbsg.repo.users
+ * tagged by method, the driver level latency per command is recorded by {@link MongoMetricsListener}.
+ */
 @Repository("mongodb")
 public class MongoClientImpl implements IUserRepository {
+    static final String USERNAME_INDEX = "users_username_unique";
+    static final String EMAIL_INDEX = "users_email_unique";
+    private static final int BULK_CHUNK_SIZE = 1000;
+
     private final MongoTemplate mongoTemplate;
+    private final MeterRegistry meterRegistry;
+    private final Map<String, Timer> timers;
 
     @Autowired
-    public MongoClientImpl(MongoTemplate mongoTemplate) {
+    public MongoClientImpl(MongoTemplate mongoTemplate, MeterRegistry meterRegistry) {
         this.mongoTemplate = mongoTemplate;
+        this.meterRegistry = meterRegistry;
+        this.timers = new ConcurrentHashMap<>();
+    }
+
+    @PostConstruct
+    public void ensureIndexes() {
+        var indexOps = mongoTemplate.indexOps(User.class);
+        indexOps.ensureIndex(new Index().on("username", Sort.Direction.ASC).unique().named(USERNAME_INDEX));
+        indexOps.ensureIndex(new Index().on("email", Sort.Direction.ASC).unique().named(EMAIL_INDEX));
     }
 
     @Override
     public void insert(User user) {
-        mongoTemplate.insert(user);
+        timed("insert", () -> {
+            try {
+                return mongoTemplate.insert(user);
+            } catch (DuplicateKeyException e) {
+                throw translate(e);
+            }
+        });
     }
 
     @Override
     public List<User> getAll() {
-        return mongoTemplate.findAll(User.class);
+        return timed("getAll", () -> mongoTemplate.findAll(User.class));
     }
 
     @Override
     public Optional<User> get(ObjectId id) {
         var query = query(where("_id").is(id));
-        return Optional.ofNullable(mongoTemplate.findOne(query, User.class));
+        return timed("get", () -> Optional.ofNullable(mongoTemplate.findOne(query, User.class)));
     }
 
     @Override
     public Optional<User> getByEmail(String email) {
         var query = query(where("email").is(email));
-        return Optional.ofNullable(mongoTemplate.findOne(query, User.class));
+        return timed("getByEmail", () -> Optional.ofNullable(mongoTemplate.findOne(query, User.class)));
     }
 
     @Override
     public Optional<User> getByUsername(String username) {
         var query = query(where("username").is(username));
-        return Optional.ofNullable(mongoTemplate.findOne(query, User.class));
+        return timed("getByUsername", () -> Optional.ofNullable(mongoTemplate.findOne(query, User.class)));
+    }
+
+    @Override
+    public Optional<User> getCredentials(String username) {
+        var query = query(where("username").is(username));
+        query.fields().include("username").include("password").include("roles");
+        return timed("getCredentials", () -> Optional.ofNullable(mongoTemplate.findOne(query, User.class)));
+    }
+
+    @Override
+    public Optional<User> getProfile(ObjectId id) {
+        var query = query(where("_id").is(id));
+        query.fields().exclude("password");
+        return timed("getProfile", () -> Optional.ofNullable(mongoTemplate.findOne(query, User.class)));
     }
 
     @Override
     public void update(ObjectId id, User user) {
         var query = query(where("_id").is(id));
-        var update = new Update()
-                .set("username", user.getUsername());
-        mongoTemplate.updateFirst(query, update, User.class);
+        timed("update", () -> mongoTemplate.updateFirst(query, toUpdate(user), User.class));
+    }
+
+    @Override
+    public void updateRating(ObjectId id, int rating) {
+        var query = query(where("_id").is(id));
+        timed("updateRating", () -> mongoTemplate.updateFirst(query, new Update().set("rating", rating), User.class));
     }
 
     @Override
     public void delete(ObjectId id) {
         var query = query(where("_id").is(id));
-        mongoTemplate.remove(query, User.class);
+        timed("delete", () -> mongoTemplate.remove(query, User.class));
+    }
+
+    @Override
+    public List<User> getPage(ObjectId after, int limit) {
+        return timed("getPage", () -> mongoTemplate.find(listQuery(after).limit(limit), User.class));
+    }
+
+    @Override
+    public Stream<User> stream(ObjectId after) {
+        // times opening the cursor, the stream is consumed by the caller
+        return timed("stream", () -> StreamUtils.createStreamFromIterator(
+                mongoTemplate.stream(listQuery(after), User.class)));
+    }
+
+    @Override
+    public BulkResult insertAll(List<User> users) {
+        return timed("insertAll", () -> doInsertAll(users));
+    }
+
+    private BulkResult doInsertAll(List<User> users) {
+        var failures = new HashMap<Integer, String>();
+        long inserted = 0;
+        for (var offset = 0; offset < users.size(); offset += BULK_CHUNK_SIZE) {
+            var chunk = users.subList(offset, Math.min(users.size(), offset + BULK_CHUNK_SIZE));
+            var ops = mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, User.class);
+            ops.insert(chunk);
+            try {
+                inserted += ops.execute().getInsertedCount();
+            } catch (BulkOperationException e) {
+                inserted += e.getResult().getInsertedCount();
+                collectFailures(e, offset, failures);
+            }
+        }
+        return new BulkResult(users.size(), inserted, failures);
+    }
+
+    @Override
+    public List<User> getAll(Collection<ObjectId> ids) {
+        return timed("getAllById", () -> doGetAll(ids));
+    }
+
+    private List<User> doGetAll(Collection<ObjectId> ids) {
+        var idList = new ArrayList<>(ids);
+        var users = new ArrayList<User>(idList.size());
+        for (var offset = 0; offset < idList.size(); offset += BULK_CHUNK_SIZE) {
+            var chunk = idList.subList(offset, Math.min(idList.size(), offset + BULK_CHUNK_SIZE));
+            var query = query(where("_id").in(chunk));
+            query.fields().exclude("password");
+            users.addAll(mongoTemplate.find(query, User.class));
+        }
+        return users;
+    }
+
+    @Override
+    public BulkResult updateAll(Map<ObjectId, User> users) {
+        return timed("updateAll", () -> doUpdateAll(users));
+    }
+
+    private BulkResult doUpdateAll(Map<ObjectId, User> users) {
+        var failures = new HashMap<Integer, String>();
+        var entries = new ArrayList<>(users.entrySet());
+        long matched = 0;
+        for (var offset = 0; offset < entries.size(); offset += BULK_CHUNK_SIZE) {
+            var chunk = entries.subList(offset, Math.min(entries.size(), offset + BULK_CHUNK_SIZE));
+            var ops = mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, User.class);
+            for (var entry : chunk) {
+                ops.updateOne(query(where("_id").is(entry.getKey())), toUpdate(entry.getValue()));
+            }
+            var failed = failures.size();
+            int chunkMatched;
+            try {
+                chunkMatched = ops.execute().getMatchedCount();
+            } catch (BulkOperationException e) {
+                chunkMatched = e.getResult().getMatchedCount();
+                collectFailures(e, offset, failures);
+            }
+            matched += chunkMatched;
+            // the bulk result only counts matches, the unmatched ids are looked up if there are any
+            if (chunkMatched + failures.size() - failed < chunk.size()) {
+                var ids = chunk.stream().map(Map.Entry::getKey).collect(Collectors.toList());
+                var query = query(where("_id").in(ids));
+                query.fields().include("_id");
+                var found = mongoTemplate.find(query, Document.class, mongoTemplate.getCollectionName(User.class))
+                        .stream()
+                        .map(document -> document.getObjectId("_id"))
+                        .collect(Collectors.toSet());
+                collectMissing(ids, found, offset, failures);
+            }
+        }
+        return new BulkResult(entries.size(), matched, failures);
+    }
+
+    @Override
+    public BulkResult deleteAll(Collection<ObjectId> ids) {
+        return timed("deleteAll", () -> doDeleteAll(ids));
+    }
+
+    private BulkResult doDeleteAll(Collection<ObjectId> ids) {
+        var idList = new ArrayList<>(ids);
+        var failures = new HashMap<Integer, String>();
+        long deleted = 0;
+        for (var offset = 0; offset < idList.size(); offset += BULK_CHUNK_SIZE) {
+            var chunk = idList.subList(offset, Math.min(idList.size(), offset + BULK_CHUNK_SIZE));
+            var query = query(where("_id").in(chunk));
+            query.fields().include("_id");
+            // finds the ids first and removes exactly those, so the unmatched ids are known
+            var removed = mongoTemplate.findAllAndRemove(query, Document.class,
+                    mongoTemplate.getCollectionName(User.class)).stream()
+                    .map(document -> document.getObjectId("_id"))
+                    .collect(Collectors.toSet());
+            deleted += removed.size();
+            collectMissing(chunk, removed, offset, failures);
+        }
+        return new BulkResult(idList.size(), deleted, failures);
+    }
+
+    private <T> T timed(String method, Supplier<T> call) {
+        return timers.computeIfAbsent(method, key -> Timer.builder("tbsg.repo.users")
+                .tag("method", key)
+                .publishPercentileHistogram()
+                .register(meterRegistry))
+                .record(call);
+    }
+
+    private static Update toUpdate(User user) {
+        return new Update()
+                .set("username", user.getUsername());
+    }
+
+    private static void collectFailures(BulkOperationException e, int offset, Map<Integer, String> failures) {
+        for (var error : e.getErrors()) {
+            var message = error.getMessage();
+            if (message != null && message.contains(USERNAME_INDEX)) {
+                message = "Username already taken";
+            } else if (message != null && message.contains(EMAIL_INDEX)) {
+                message = "Email already taken";
+            }
+            failures.put(offset + error.getIndex(), message);
+        }
+    }
+
+    private static void collectMissing(List<ObjectId> chunk, Set<ObjectId> found, int offset,
+                                       Map<Integer, String> failures) {
+        for (var i = 0; i < chunk.size(); i++) {
+            var id = chunk.get(i);
+            if (!found.contains(id)) {
+                failures.putIfAbsent(offset + i, String.format("No user found with id %s", id.toHexString()));
+            }
+        }
+    }
+
+    static RuntimeException translate(DuplicateKeyException e) {
+        var message = String.valueOf(e.getMessage());
+        if (message.contains(USERNAME_INDEX)) {
+            return new DuplicateFieldException("username", e);
+        }
+        if (message.contains(EMAIL_INDEX)) {
+            return new DuplicateFieldException("email", e);
+        }
+        return e;
+    }
+
+    private static Query listQuery(ObjectId after) {
+        var query = after != null ? query(where("_id").gt(after)) : new Query();
+        query.with(Sort.by(Sort.Direction.ASC, "_id"));
+        query.fields().include("username").include("email").include("rating");
+        return query;
     }
 }
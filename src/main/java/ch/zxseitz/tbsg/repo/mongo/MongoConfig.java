@@ -3,36 +3,107 @@ package ch.zxseitz.tbsg.repo.mongo;
 import com.mongodb.ConnectionString;
 import com.mongodb.MongoClientSettings;
 import com.mongodb.MongoCredential;
+import com.mongodb.ReadPreference;
 import com.mongodb.client.MongoClient;
 import com.mongodb.client.MongoClients;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
 
 import java.io.IOException;
 import java.util.Properties;
+import java.util.concurrent.TimeUnit;
 
 @Configuration
 public class MongoConfig {
     //todo validation and error handling
 
     private final Properties config;
+    private final MeterRegistry meterRegistry;
+    private final int poolMaxSize;
+    private final int poolMinSize;
+    private final long poolMaxWaitMs;
+    private final long poolMaxIdleMs;
+    private final long poolMaxLifeMs;
+    private final int connectTimeoutMs;
+    private final int readTimeoutMs;
+    private final long serverSelectionTimeoutMs;
+    private final ReadPreference readPreference;
 
-    public MongoConfig() throws IOException {
+    @Autowired
+    public MongoConfig(MeterRegistry meterRegistry,
+                       @Value("${tbsg.mongo.pool.max-size:100}") int poolMaxSize,
+                       @Value("${tbsg.mongo.pool.min-size:0}") int poolMinSize,
+                       @Value("${tbsg.mongo.pool.max-wait-ms:120000}") long poolMaxWaitMs,
+                       @Value("${tbsg.mongo.pool.max-idle-ms:0}") long poolMaxIdleMs,
+                       @Value("${tbsg.mongo.pool.max-life-ms:0}") long poolMaxLifeMs,
+                       @Value("${tbsg.mongo.socket.connect-timeout-ms:10000}") int connectTimeoutMs,
+                       @Value("${tbsg.mongo.socket.read-timeout-ms:0}") int readTimeoutMs,
+                       @Value("${tbsg.mongo.server-selection-timeout-ms:30000}") long serverSelectionTimeoutMs,
+                       @Value("${tbsg.mongo.read-preference:primary}") String readPreference) throws IOException {
         config = new Properties();
         config.load(MongoConfig.class.getClassLoader().getResourceAsStream("mongo.properties"));
+        this.meterRegistry = meterRegistry;
+        this.poolMaxSize = poolMaxSize;
+        this.poolMinSize = poolMinSize;
+        this.poolMaxWaitMs = poolMaxWaitMs;
+        this.poolMaxIdleMs = poolMaxIdleMs;
+        this.poolMaxLifeMs = poolMaxLifeMs;
+        this.connectTimeoutMs = connectTimeoutMs;
+        this.readTimeoutMs = readTimeoutMs;
+        this.serverSelectionTimeoutMs = serverSelectionTimeoutMs;
+        this.readPreference = ReadPreference.valueOf(readPreference);
     }
 
     @Bean
     public MongoClient mongoClient() {
-        return MongoClients.create(MongoClientSettings.builder()
-                .credential(MongoCredential.createCredential(config.getProperty("user"), config.getProperty("auth_scheme"), config.getProperty("pwd").toCharArray()))
-                .applyConnectionString(new ConnectionString(config.getProperty("url")))
-                .build());
+        return MongoClients.create(clientSettings("sync"));
     }
 
     @Bean()
     public MongoTemplate mongoTemplate() {
         return new MongoTemplate(mongoClient(), config.getProperty("name"));
     }
+
+    @Bean
+    @ConditionalOnProperty(name = "tbsg.api.mode", havingValue = "reactive")
+    public com.mongodb.reactivestreams.client.MongoClient reactiveMongoClient() {
+        return com.mongodb.reactivestreams.client.MongoClients.create(clientSettings("reactive"));
+    }
+
+    @Bean
+    @ConditionalOnProperty(name = "tbsg.api.mode", havingValue = "reactive")
+    public ReactiveMongoTemplate reactiveMongoTemplate() {
+        return new ReactiveMongoTemplate(reactiveMongoClient(), config.getProperty("name"));
+    }
+
+    /**
+     * Options given in the connection string take precedence over the tbsg.mongo properties.
+     */
+    private MongoClientSettings clientSettings(String client) {
+        var metrics = new MongoMetricsListener(meterRegistry, client);
+        return MongoClientSettings.builder()
+                .credential(MongoCredential.createCredential(config.getProperty("user"), config.getProperty("auth_scheme"), config.getProperty("pwd").toCharArray()))
+                .applyToConnectionPoolSettings(pool -> pool
+                        .maxSize(poolMaxSize)
+                        .minSize(poolMinSize)
+                        .maxWaitTime(poolMaxWaitMs, TimeUnit.MILLISECONDS)
+                        .maxConnectionIdleTime(poolMaxIdleMs, TimeUnit.MILLISECONDS)
+                        .maxConnectionLifeTime(poolMaxLifeMs, TimeUnit.MILLISECONDS)
+                        .addConnectionPoolListener(metrics))
+                .applyToSocketSettings(socket -> socket
+                        .connectTimeout(connectTimeoutMs, TimeUnit.MILLISECONDS)
+                        .readTimeout(readTimeoutMs, TimeUnit.MILLISECONDS))
+                .applyToClusterSettings(cluster -> cluster
+                        .serverSelectionTimeout(serverSelectionTimeoutMs, TimeUnit.MILLISECONDS))
+                .readPreference(readPreference)
+                .addCommandListener(metrics)
+                .applyConnectionString(new ConnectionString(config.getProperty("url")))
+                .build();
+    }
 }
@@ -0,0 +1,288 @@
+package ch.zxseitz.tbsg.repo.mongo;
+
+import ch.zxseitz.tbsg.game.Match;
+import ch.zxseitz.tbsg.game.MoveResult;
+import ch.zxseitz.tbsg.model.MatchSnapshot;
+import ch.zxseitz.tbsg.model.MatchTurn;
+import ch.zxseitz.tbsg.repo.IMatchLog;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.Timer;
+import org.bson.types.ObjectId;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.BulkOperationException;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.FindAndReplaceOptions;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.index.Index;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.stereotype.Repository;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import static org.springframework.data.mongodb.core.query.Criteria.where;
+import static org.springframework.data.mongodb.core.query.Query.query;
+
+/**
+ * Match log on two collections, turns and snapshots. Appends are queued and a single writer thread writes
+ * whatever accumulated while the previous write was running in one unordered bulk insert (group commit), so
+ * the batch size grows with the load instead of waiting for a timer. Turns covered by a written snapshot are
+ * removed in the same write, the snapshot of a finished match is removed together with all of its turns.
+ * <p>
+ * Durability: a turn is lost if the process dies before its batch was written, the queue holds at most one
+ * write round trip of turns under normal load. When the queue is full, appending blocks the match thread.
+ * Failed writes are retried with backoff until shutdown, turns already written by a failed attempt are
+ * skipped through the unique index.
+ * <p>
+ * A match whose logged turns do not replay onto its snapshot, e.g. after a lost turn, is quarantined: it is not
+ * recovered, and its snapshot and turns stay in the log for inspection.
+ */
+@Repository("mongo_match_log")
+public class MongoMatchLog implements IMatchLog {
+    private static final Logger logger = LoggerFactory.getLogger(MongoMatchLog.class);
+    private static final String TURN_INDEX = "match_turns_match_turn_unique";
+    private static final int DUPLICATE_KEY = 11000;
+    private static final int RECOVERY_CHUNK_SIZE = 1000;
+    private static final long MAX_RETRY_DELAY_MS = 5000;
+
+    private final MongoTemplate mongoTemplate;
+    private final BlockingQueue<Object> queue;
+    private final int maxBatchSize;
+    private final Thread writer;
+    private final Timer writes;
+    private final DistributionSummary batchSizes;
+    private final Counter failures;
+    private volatile boolean running;
+
+    @Autowired
+    public MongoMatchLog(MongoTemplate mongoTemplate, MeterRegistry meterRegistry,
+                         @Value("${tbsg.matchlog.queue-capacity:100000}") int queueCapacity,
+                         @Value("${tbsg.matchlog.max-batch-size:1000}") int maxBatchSize) {
+        this.mongoTemplate = mongoTemplate;
+        this.queue = new LinkedBlockingQueue<>(queueCapacity);
+        this.maxBatchSize = maxBatchSize;
+        this.writes = Timer.builder("tbsg.matchlog.write")
+                .publishPercentileHistogram()
+                .register(meterRegistry);
+        this.batchSizes = DistributionSummary.builder("tbsg.matchlog.batch")
+                .publishPercentileHistogram()
+                .register(meterRegistry);
+        this.failures = meterRegistry.counter("tbsg.matchlog.failures");
+        meterRegistry.gaugeCollectionSize("tbsg.matchlog.queue", Tags.empty(), queue);
+        this.running = true;
+        this.writer = new Thread(this::run, "match-log");
+        this.writer.setDaemon(true);
+    }
+
+    @PostConstruct
+    public void start() {
+        mongoTemplate.indexOps(MatchTurn.class).ensureIndex(new Index()
+                .on("match", Sort.Direction.ASC).on("turn", Sort.Direction.ASC).unique().named(TURN_INDEX));
+        writer.start();
+    }
+
+    @Override
+    public void append(Match match, int turn, int player, int move) {
+        enqueue(new MatchTurn(ObjectId.get(), match.getId(), turn, player, move));
+    }
+
+    @Override
+    public void snapshot(Match match) {
+        enqueue(MatchSnapshot.of(match));
+    }
+
+    @Override
+    public void flush() throws InterruptedException {
+        var latch = new CountDownLatch(1);
+        queue.put(latch);
+        latch.await();
+    }
+
+    @Override
+    public List<Match> recover() {
+        var start = System.nanoTime();
+        // snapshots of finished matches are removed when written, all stored ones are running
+        var snapshots = mongoTemplate.find(new Query(), MatchSnapshot.class);
+        var matches = new ArrayList<Match>(snapshots.size());
+        var diverged = new HashSet<ObjectId>();
+        long replayed = 0;
+        for (var offset = 0; offset < snapshots.size(); offset += RECOVERY_CHUNK_SIZE) {
+            var chunk = snapshots.subList(offset, Math.min(snapshots.size(), offset + RECOVERY_CHUNK_SIZE));
+            var byId = new HashMap<ObjectId, Match>(chunk.size() * 2);
+            for (var snapshot : chunk) {
+                byId.put(snapshot.id, snapshot.toMatch());
+            }
+            var turnQuery = query(where("match").in(byId.keySet()))
+                    .with(Sort.by(Sort.Direction.ASC, "match", "turn"));
+            try (var turns = mongoTemplate.stream(turnQuery, MatchTurn.class)) {
+                while (turns.hasNext()) {
+                    var turn = turns.next();
+                    var match = byId.get(turn.getMatch());
+                    if (turn.getTurn() < match.getTurn() || diverged.contains(match.getId())) {
+                        // covered by the snapshot and not yet compacted, or quarantined
+                        continue;
+                    }
+                    var result = match.apply(turn.getPlayer(), turn.getTurn(), turn.getMove());
+                    if (result != MoveResult.OK) {
+                        logger.error("Cannot replay turn {} of match {}: {}, quarantining the match",
+                                turn.getTurn(), match.getId().toHexString(), result);
+                        diverged.add(match.getId());
+                        continue;
+                    }
+                    replayed++;
+                }
+            }
+            for (var match : byId.values()) {
+                if (diverged.contains(match.getId())) {
+                    continue;
+                }
+                if (match.isFinished()) {
+                    // finished by the replayed turns, removed by its final snapshot
+                    snapshot(match);
+                } else {
+                    matches.add(match);
+                }
+            }
+        }
+        logger.info("Recovered {} matches with {} replayed turns in {} ms, {} quarantined", matches.size(), replayed,
+                TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start), diverged.size());
+        return matches;
+    }
+
+    @PreDestroy
+    public void shutdown() throws InterruptedException {
+        running = false;
+        writer.join(TimeUnit.SECONDS.toMillis(10));
+        if (!queue.isEmpty()) {
+            logger.error("Match log closed with {} unwritten entries", queue.size());
+        }
+    }
+
+    private void enqueue(Object entry) {
+        try {
+            queue.put(entry);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while appending to the match log", e);
+        }
+    }
+
+    private void run() {
+        var batch = new ArrayList<>(maxBatchSize);
+        while (running || !queue.isEmpty()) {
+            try {
+                var first = queue.poll(100, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+                queue.drainTo(batch, maxBatchSize - 1);
+                write(batch);
+            } catch (InterruptedException e) {
+                running = false;
+            } catch (Exception e) {
+                logger.error("Error in match log writer", e);
+            } finally {
+                batch.clear();
+            }
+        }
+    }
+
+    private void write(List<Object> batch) throws InterruptedException {
+        var turns = new ArrayList<MatchTurn>(batch.size());
+        // only the latest snapshot of a match is written
+        var snapshots = new LinkedHashMap<ObjectId, MatchSnapshot>();
+        var latches = new ArrayList<CountDownLatch>();
+        for (var entry : batch) {
+            if (entry instanceof MatchTurn) {
+                turns.add((MatchTurn) entry);
+            } else if (entry instanceof MatchSnapshot) {
+                var snapshot = (MatchSnapshot) entry;
+                snapshots.put(snapshot.id, snapshot);
+            } else {
+                latches.add((CountDownLatch) entry);
+            }
+        }
+        try {
+            if (!turns.isEmpty() || !snapshots.isEmpty()) {
+                batchSizes.record(turns.size() + snapshots.size());
+                var delay = 10L;
+                while (true) {
+                    try {
+                        writes.record(() -> {
+                            insertTurns(turns);
+                            writeSnapshots(snapshots.values());
+                        });
+                        break;
+                    } catch (DataAccessException e) {
+                        failures.increment();
+                        if (!running) {
+                            logger.error("Dropping {} turns and {} snapshots of the match log", turns.size(),
+                                    snapshots.size(), e);
+                            break;
+                        }
+                        logger.warn("Writing the match log failed, retrying in {} ms", delay, e);
+                        Thread.sleep(delay);
+                        delay = Math.min(MAX_RETRY_DELAY_MS, delay * 2);
+                    }
+                }
+            }
+        } finally {
+            latches.forEach(CountDownLatch::countDown);
+        }
+    }
+
+    private void insertTurns(List<MatchTurn> turns) {
+        if (turns.isEmpty()) {
+            return;
+        }
+        var ops = mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, MatchTurn.class);
+        ops.insert(turns);
+        try {
+            ops.execute();
+        } catch (BulkOperationException e) {
+            // written by an earlier attempt of the same batch
+            if (!e.getErrors().stream().allMatch(error -> error.getCode() == DUPLICATE_KEY)) {
+                throw e;
+            }
+        }
+    }
+
+    private void writeSnapshots(Collection<MatchSnapshot> snapshots) {
+        if (snapshots.isEmpty()) {
+            return;
+        }
+        var snapshotOps = mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, MatchSnapshot.class);
+        var compactOps = mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, MatchTurn.class);
+        for (var snapshot : snapshots) {
+            if (snapshot.isFinished()) {
+                snapshotOps.remove(query(where("_id").is(snapshot.id)));
+                compactOps.remove(query(where("match").is(snapshot.id)));
+            } else {
+                snapshotOps.replaceOne(query(where("_id").is(snapshot.id)), snapshot,
+                        FindAndReplaceOptions.options().upsert());
+                compactOps.remove(query(where("match").is(snapshot.id).and("turn").lt(snapshot.getTurn())));
+            }
+        }
+        snapshotOps.execute();
+        compactOps.execute();
+    }
+}
@@ -0,0 +1,182 @@
+package ch.zxseitz.tbsg.repo.mongo;
+
+import com.mongodb.connection.ServerId;
+import com.mongodb.event.*;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Records driver command latency and connection pool usage of one mongo client, tagged by client and server.
+ * <p>
+ * Checkout wait is measured per thread: the start time is kept by the thread starting the checkout and
+ * recorded when the same thread completes it. Checkouts the async driver queues and completes on its own
+ * thread are not recorded in the wait timers, they are still counted by the waiting gauge.
+ * <p>
+ * Meters are registered when a pool is created. A pool is kept per server after it was closed, so a recreated
+ * pool reports through the meters already registered for it.
+ */
+public class MongoMetricsListener implements CommandListener, ConnectionPoolListener {
+    private final MeterRegistry meterRegistry;
+    private final String client;
+    private final Map<String, Timer> commandTimers;
+    private final Map<ServerId, Pool> pools;
+
+    public MongoMetricsListener(MeterRegistry meterRegistry, String client) {
+        this.meterRegistry = meterRegistry;
+        this.client = client;
+        this.commandTimers = new ConcurrentHashMap<>();
+        this.pools = new ConcurrentHashMap<>();
+    }
+
+    @Override
+    public void commandSucceeded(CommandSucceededEvent event) {
+        commandTimer(event.getCommandName(), "success").record(event.getElapsedTime(TimeUnit.NANOSECONDS),
+                TimeUnit.NANOSECONDS);
+    }
+
+    @Override
+    public void commandFailed(CommandFailedEvent event) {
+        commandTimer(event.getCommandName(), "failed").record(event.getElapsedTime(TimeUnit.NANOSECONDS),
+                TimeUnit.NANOSECONDS);
+    }
+
+    @Override
+    public void connectionPoolCreated(ConnectionPoolCreatedEvent event) {
+        pools.computeIfAbsent(event.getServerId(), Pool::new).reset(event.getSettings().getMaxSize());
+    }
+
+    @Override
+    public void connectionPoolClosed(ConnectionPoolClosedEvent event) {
+        var pool = pools.get(event.getServerId());
+        if (pool != null) {
+            pool.reset(0);
+        }
+    }
+
+    @Override
+    public void connectionCreated(ConnectionCreatedEvent event) {
+        var pool = pools.get(event.getConnectionId().getServerId());
+        if (pool != null) {
+            pool.size.incrementAndGet();
+        }
+    }
+
+    @Override
+    public void connectionClosed(ConnectionClosedEvent event) {
+        var pool = pools.get(event.getConnectionId().getServerId());
+        if (pool != null) {
+            pool.size.decrementAndGet();
+        }
+    }
+
+    @Override
+    public void connectionCheckOutStarted(ConnectionCheckOutStartedEvent event) {
+        var pool = pools.get(event.getServerId());
+        if (pool != null) {
+            pool.waiting.incrementAndGet();
+            pool.checkoutStart.set(System.nanoTime());
+        }
+    }
+
+    @Override
+    public void connectionCheckedOut(ConnectionCheckedOutEvent event) {
+        var pool = pools.get(event.getConnectionId().getServerId());
+        if (pool != null) {
+            pool.checkedOut.incrementAndGet();
+            pool.checkoutDone(pool.checkoutWait);
+        }
+    }
+
+    @Override
+    public void connectionCheckOutFailed(ConnectionCheckOutFailedEvent event) {
+        // the driver managed by boot 2.3 does not report the reason of the failure
+        var pool = pools.get(event.getServerId());
+        if (pool != null) {
+            pool.failures.increment();
+            pool.checkoutDone(pool.checkoutFailedWait);
+        }
+    }
+
+    @Override
+    public void connectionCheckedIn(ConnectionCheckedInEvent event) {
+        var pool = pools.get(event.getConnectionId().getServerId());
+        if (pool != null) {
+            pool.checkedOut.decrementAndGet();
+        }
+    }
+
+    private Timer commandTimer(String command, String status) {
+        return commandTimers.computeIfAbsent(command + ':' + status, key -> Timer.builder("tbsg.mongo.commands")
+                .tags("client", client, "command", command, "status", status)
+                .publishPercentileHistogram()
+                .register(meterRegistry));
+    }
+
+    private class Pool {
+        private final String server;
+        private final AtomicInteger size;
+        private final AtomicInteger checkedOut;
+        private final AtomicInteger waiting;
+        private final ThreadLocal<Long> checkoutStart;
+        private final Counter failures;
+        private final Timer checkoutWait;
+        private final Timer checkoutFailedWait;
+        private volatile int maxSize;
+
+        private Pool(ServerId serverId) {
+            this.server = serverId.getAddress().toString();
+            this.size = new AtomicInteger();
+            this.checkedOut = new AtomicInteger();
+            this.waiting = new AtomicInteger();
+            this.checkoutStart = new ThreadLocal<>();
+            this.failures = Counter.builder("tbsg.mongo.pool.checkout.failed")
+                    .tags("client", client, "server", server)
+                    .register(meterRegistry);
+            this.checkoutWait = checkoutTimer("success");
+            this.checkoutFailedWait = checkoutTimer("failed");
+            gauge("tbsg.mongo.pool.size", size);
+            gauge("tbsg.mongo.pool.checked-out", checkedOut);
+            gauge("tbsg.mongo.pool.waiting", waiting);
+            Gauge.builder("tbsg.mongo.pool.saturation", this,
+                    pool -> pool.maxSize > 0 ? (double) pool.checkedOut.get() / pool.maxSize : Double.NaN)
+                    .tags("client", client, "server", server)
+                    .register(meterRegistry);
+        }
+
+        private void reset(int maxSize) {
+            this.maxSize = maxSize;
+            size.set(0);
+            checkedOut.set(0);
+            waiting.set(0);
+        }
+
+        private void checkoutDone(Timer timer) {
+            waiting.decrementAndGet();
+            var start = checkoutStart.get();
+            if (start != null) {
+                checkoutStart.remove();
+                timer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+            }
+        }
+
+        private Timer checkoutTimer(String status) {
+            return Timer.builder("tbsg.mongo.pool.checkout")
+                    .tags("client", client, "server", server, "status", status)
+                    .publishPercentileHistogram()
+                    .register(meterRegistry);
+        }
+
+        private void gauge(String name, AtomicInteger value) {
+            Gauge.builder(name, value, AtomicInteger::get)
+                    .tags("client", client, "server", server)
+                    .register(meterRegistry);
+        }
+    }
+}
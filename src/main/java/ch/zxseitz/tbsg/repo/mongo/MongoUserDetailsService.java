@@ -15,13 +15,13 @@ public class MongoUserDetailsService implements UserDetailsService {
     private final IUserRepository userRepository;
 
     @Autowired
-    public MongoUserDetailsService(@Qualifier("mongodb") IUserRepository userRepository) {
+    public MongoUserDetailsService(@Qualifier("cached") IUserRepository userRepository) {
         this.userRepository = userRepository;
     }
 
     @Override
     public UserDetails loadUserByUsername(String username) throws UsernameNotFoundException {
-        var user = userRepository.getByUsername(username);
+        var user = userRepository.getCredentials(username);
         user.orElseThrow(() -> new UsernameNotFoundException(String.format("No user with username \"%s\" was found", username)));
         return user.map(UserDetailsImpl::create).get();
     }
@@ -0,0 +1,88 @@
+package ch.zxseitz.tbsg.repo.mongo;
+
+import ch.zxseitz.tbsg.model.User;
+import ch.zxseitz.tbsg.repo.IReactiveUserRepository;
+import org.bson.types.ObjectId;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.stereotype.Repository;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import static org.springframework.data.mongodb.core.query.Criteria.where;
+import static org.springframework.data.mongodb.core.query.Query.query;
+
+/**
+ * Reactive driver implementation, the unique indexes are created by {@link MongoClientImpl} at startup.
+ */
+@Repository("reactive_mongodb")
+@ConditionalOnProperty(name = "tbsg.api.mode", havingValue = "reactive")
+public class ReactiveMongoClientImpl implements IReactiveUserRepository {
+    private final ReactiveMongoTemplate mongoTemplate;
+
+    @Autowired
+    public ReactiveMongoClientImpl(ReactiveMongoTemplate mongoTemplate) {
+        this.mongoTemplate = mongoTemplate;
+    }
+
+    @Override
+    public Mono<Void> insert(User user) {
+        return mongoTemplate.insert(user)
+                .onErrorMap(DuplicateKeyException.class, MongoClientImpl::translate)
+                .then();
+    }
+
+    @Override
+    public Mono<User> get(ObjectId id) {
+        return mongoTemplate.findOne(query(where("_id").is(id)), User.class);
+    }
+
+    @Override
+    public Mono<User> getByEmail(String email) {
+        return mongoTemplate.findOne(query(where("email").is(email)), User.class);
+    }
+
+    @Override
+    public Mono<User> getByUsername(String username) {
+        return mongoTemplate.findOne(query(where("username").is(username)), User.class);
+    }
+
+    @Override
+    public Mono<User> getCredentials(String username) {
+        var query = query(where("username").is(username));
+        query.fields().include("username").include("password").include("roles");
+        return mongoTemplate.findOne(query, User.class);
+    }
+
+    @Override
+    public Mono<User> getProfile(ObjectId id) {
+        var query = query(where("_id").is(id));
+        query.fields().exclude("password");
+        return mongoTemplate.findOne(query, User.class);
+    }
+
+    @Override
+    public Mono<Void> update(ObjectId id, User user) {
+        var update = new Update()
+                .set("username", user.getUsername());
+        return mongoTemplate.updateFirst(query(where("_id").is(id)), update, User.class).then();
+    }
+
+    @Override
+    public Mono<Void> delete(ObjectId id) {
+        return mongoTemplate.remove(query(where("_id").is(id)), User.class).then();
+    }
+
+    @Override
+    public Flux<User> getPage(ObjectId after, int limit) {
+        var query = after != null ? query(where("_id").gt(after)) : new Query();
+        query.with(Sort.by(Sort.Direction.ASC, "_id")).limit(limit);
+        query.fields().include("username").include("email").include("rating");
+        return mongoTemplate.find(query, User.class);
+    }
+}
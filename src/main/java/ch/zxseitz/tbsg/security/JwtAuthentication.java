@@ -0,0 +1,66 @@
+package ch.zxseitz.tbsg.security;
+
+import ch.zxseitz.tbsg.model.RoleSet;
+import org.bson.types.ObjectId;
+import org.springframework.security.core.Authentication;
+
+/**
+ * Authentication of a verified jwt. Unlike {@code UsernamePasswordAuthenticationToken}, it keeps the shared
+ * {@link RoleSet} instead of copying the authorities, the principal is the user id.
+ */
+public class JwtAuthentication implements Authentication {
+    private static final long serialVersionUID = 1L;
+
+    private final ObjectId user;
+    private final RoleSet roles;
+    private Object details;
+    private boolean authenticated;
+
+    public JwtAuthentication(ObjectId user, RoleSet roles) {
+        this.user = user;
+        this.roles = roles;
+        this.authenticated = true;
+    }
+
+    @Override
+    public RoleSet getAuthorities() {
+        return roles;
+    }
+
+    @Override
+    public Object getCredentials() {
+        return null;
+    }
+
+    @Override
+    public Object getDetails() {
+        return details;
+    }
+
+    public void setDetails(Object details) {
+        this.details = details;
+    }
+
+    @Override
+    public ObjectId getPrincipal() {
+        return user;
+    }
+
+    @Override
+    public boolean isAuthenticated() {
+        return authenticated;
+    }
+
+    @Override
+    public void setAuthenticated(boolean authenticated) {
+        if (authenticated) {
+            throw new IllegalArgumentException("A jwt authentication can only be trusted on creation");
+        }
+        this.authenticated = false;
+    }
+
+    @Override
+    public String getName() {
+        return user.toHexString();
+    }
+}
@@ -0,0 +1,102 @@
+package ch.zxseitz.tbsg.security;
+
+import ch.zxseitz.tbsg.model.RoleSet;
+import ch.zxseitz.tbsg.repo.cache.CacheIndex;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import org.bson.types.ObjectId;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Bounded cache of already verified jwts. Entries are keyed by the signature segment of the token, which is
+ * the HMAC digest of header and payload, and expire together with the token itself.
+ */
+@Component
+public class JwtCache {
+    private final ConcurrentHashMap<String, Entry> entries;
+    private final int maxSize;
+    private final Counter hits;
+    private final Counter misses;
+
+    @Autowired
+    public JwtCache(@Value("${tbsg.jwt.cache.max-size:10000}") int maxSize, MeterRegistry meterRegistry) {
+        this.entries = new ConcurrentHashMap<>();
+        this.maxSize = maxSize;
+        this.hits = meterRegistry.counter("tbsg.jwt.cache.requests", "result", "hit");
+        this.misses = meterRegistry.counter("tbsg.jwt.cache.requests", "result", "miss");
+        meterRegistry.gaugeMapSize("tbsg.jwt.cache.size", Tags.empty(), entries);
+    }
+
+    /**
+     * Returns the user and roles of the verified jwt or null, if the jwt is unknown or expired.
+     */
+    public Map.Entry<ObjectId, RoleSet> get(String jwt) {
+        var entry = entries.get(digest(jwt));
+        if (entry != null) {
+            if (entry.expiresAt <= System.currentTimeMillis()) {
+                entries.remove(entry.digest, entry);
+            } else if (entry.jwt.equals(jwt)) {
+                hits.increment();
+                return entry.user;
+            }
+        }
+        misses.increment();
+        return null;
+    }
+
+    public void put(String jwt, long expiresAt, Map.Entry<ObjectId, RoleSet> user) {
+        if (maxSize <= 0) {
+            return;
+        }
+        if (entries.size() >= maxSize) {
+            var now = System.currentTimeMillis();
+            CacheIndex.evict(entries, maxSize, entry -> entry.expiresAt <= now);
+        }
+        var digest = digest(jwt);
+        entries.put(digest, new Entry(digest, jwt, expiresAt, user));
+    }
+
+    /**
+     * Drops the verified jwts of the user, in one pass over the cache. The tokens are verified again on their
+     * next use.
+     */
+    public void invalidate(ObjectId user) {
+        entries.values().removeIf(entry -> entry.user.getKey().equals(user));
+    }
+
+    public long getHits() {
+        return (long) hits.count();
+    }
+
+    public long getMisses() {
+        return (long) misses.count();
+    }
+
+    public int size() {
+        return entries.size();
+    }
+
+    private static String digest(String jwt) {
+        return jwt.substring(jwt.lastIndexOf('.') + 1);
+    }
+
+    private static class Entry {
+        private final String digest;
+        private final String jwt;
+        private final long expiresAt;
+        private final Map.Entry<ObjectId, RoleSet> user;
+
+        private Entry(String digest, String jwt, long expiresAt, Map.Entry<ObjectId, RoleSet> user) {
+            this.digest = digest;
+            this.jwt = jwt;
+            this.expiresAt = expiresAt;
+            this.user = user;
+        }
+    }
+}
@@ -5,33 +5,56 @@ import javax.servlet.ServletException;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 import java.io.IOException;
+import java.util.concurrent.TimeUnit;
 
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.security.web.authentication.WebAuthenticationDetailsSource;
 import org.springframework.stereotype.Component;
 import org.springframework.web.filter.OncePerRequestFilter;
 
+/**
+ * Authenticates requests with a bearer jwt. The time spent on authentication, without the rest of the chain,
+ * is recorded as tbsg.jwt.filter tagged by result.
+ */
 @Component
 public class JwtFilter extends OncePerRequestFilter {
+    private final JwtUtils jwtUtils;
+    private final Timer authenticated;
+    private final Timer rejected;
+
     @Autowired
-    private JwtUtils jwtUtils;
+    public JwtFilter(JwtUtils jwtUtils, MeterRegistry meterRegistry) {
+        this.jwtUtils = jwtUtils;
+        this.authenticated = timer(meterRegistry, "authenticated");
+        this.rejected = timer(meterRegistry, "rejected");
+    }
 
     @Override
     protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain)
             throws ServletException, IOException {
         var header = request.getHeader("Authorization");
         if (header != null && header.startsWith("Bearer ")) {
+            var start = System.nanoTime();
             var jwt = header.substring(7);
             var userContext = jwtUtils.verifyJwt(jwt);
             userContext.ifPresent(user -> {
-                var authenticationToken = new UsernamePasswordAuthenticationToken(
-                        user.getKey(), null, user.getValue());
+                var authenticationToken = new JwtAuthentication(user.getKey(), user.getValue());
                 authenticationToken.setDetails(new WebAuthenticationDetailsSource().buildDetails(request));
                 SecurityContextHolder.getContext().setAuthentication(authenticationToken);
             });
+            (userContext.isPresent() ? authenticated : rejected)
+                    .record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
         }
         filterChain.doFilter(request, response);
     }
+
+    private static Timer timer(MeterRegistry meterRegistry, String result) {
+        return Timer.builder("tbsg.jwt.filter")
+                .tag("result", result)
+                .publishPercentileHistogram()
+                .register(meterRegistry);
+    }
 }
@@ -1,64 +1,102 @@
 package ch.zxseitz.tbsg.security;
 
+import ch.zxseitz.tbsg.model.Role;
+import ch.zxseitz.tbsg.model.RoleSet;
 import ch.zxseitz.tbsg.model.User;
 
 import io.jsonwebtoken.*;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
 
 import java.io.IOException;
 import java.net.URISyntaxException;
 import java.nio.file.Files;
 import java.nio.file.Paths;
 import java.util.*;
-import java.util.stream.Collectors;
 
 import org.bson.types.ObjectId;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.security.core.GrantedAuthority;
-import org.springframework.security.core.authority.SimpleGrantedAuthority;
 import org.springframework.stereotype.Service;
 
 @Service
 public class JwtUtils {
     private static final Logger logger = LoggerFactory.getLogger(JwtUtils.class);
+    private static final long FAILURE_LOG_INTERVAL_MS = 10000;
 
     private final String secret;
+    private final JwtCache jwtCache;
+    private final ThrottledLogger failureLogger;
+    private final Counter malformed;
+    private final Counter invalidSignature;
+    private final Counter expired;
+    private final Counter invalid;
 
     @Autowired
-    public JwtUtils() throws IOException, URISyntaxException {
-        this.secret = Files.readString(Paths.get(Objects.requireNonNull(JwtUtils.class.getClassLoader()
-                .getResource("secret/apikey")).toURI()));
+    public JwtUtils(JwtCache jwtCache, MeterRegistry meterRegistry) throws IOException, URISyntaxException {
+        this(Files.readString(Paths.get(Objects.requireNonNull(JwtUtils.class.getClassLoader()
+                .getResource("secret/apikey")).toURI())), jwtCache, meterRegistry);
         logger.info("Loaded api key");
     }
 
+    public JwtUtils(String secret, JwtCache jwtCache, MeterRegistry meterRegistry) {
+        this.secret = secret;
+        this.jwtCache = jwtCache;
+        this.failureLogger = new ThrottledLogger(logger, FAILURE_LOG_INTERVAL_MS);
+        this.malformed = meterRegistry.counter("tbsg.jwt.failures", "reason", "malformed");
+        this.invalidSignature = meterRegistry.counter("tbsg.jwt.failures", "reason", "signature");
+        this.expired = meterRegistry.counter("tbsg.jwt.failures", "reason", "expired");
+        this.invalid = meterRegistry.counter("tbsg.jwt.failures", "reason", "invalid");
+    }
+
     public String createJwt(User user) {
         return Jwts.builder()
                 .claim("sub",user.id.toHexString())
-                .claim("roles", user.getRoles().stream()
-                        .map(GrantedAuthority::getAuthority)
-                        .reduce((role1, role2) -> role1 + "," + role2))
+                .claim("roles", Role.mask(user.getRoles()))
                 .claim(Claims.EXPIRATION, new Date(System.currentTimeMillis() + 1000 * 60 * 60 * 10))
                 .signWith(SignatureAlgorithm.HS256, secret).compact();
     }
 
-    public Optional<Map.Entry<ObjectId, Collection<GrantedAuthority>>> verifyJwt(String jwt) {
+    public Optional<Map.Entry<ObjectId, RoleSet>> verifyJwt(String jwt) {
+        var cached = jwtCache.get(jwt);
+        if (cached != null) {
+            return Optional.of(cached);
+        }
         try {
             var claims = Jwts.parser().setSigningKey(secret).parseClaimsJws(jwt).getBody();
             var expiration = claims.getExpiration();
             if (expiration.after(new Date())) {
-                return Optional.of(Map.entry(new ObjectId(claims.getSubject()),
-                        Arrays.stream(claims.get("roles", String.class).split(","))
-                                .map(SimpleGrantedAuthority::new).collect(Collectors.toList())));
+                var user = Map.entry(new ObjectId(claims.getSubject()), roles(claims.get("roles")));
+                jwtCache.put(jwt, expiration.getTime(), user);
+                return Optional.of(user);
             }
+            expired.increment();
+        } catch (ExpiredJwtException e) {
+            // regular end of a session, not worth a warning
+            expired.increment();
         } catch (MalformedJwtException e) {
-            logger.warn("JWT is malformed {}", jwt);
+            malformed.increment();
+            failureLogger.warn("JWT is malformed: {}", e.getMessage());
         } catch (SignatureException e) {
-            logger.warn("JWT has invalid signature {}", jwt);
+            invalidSignature.increment();
+            failureLogger.warn("JWT has invalid signature");
         } catch (Exception e) {
-            logger.warn("Error while validating jwt {}: {}", jwt, e.getMessage());
+            invalid.increment();
+            failureLogger.warn("Error while validating jwt: {}", e.getMessage());
         }
         return Optional.empty();
     }
-}
 
+    private static RoleSet roles(Object claim) {
+        if (claim instanceof Number) {
+            return RoleSet.of(((Number) claim).intValue());
+        }
+        // tokens issued before the bitmask claim carry the role names
+        var mask = 0;
+        for (var role : String.valueOf(claim).split(",")) {
+            mask |= Role.bit(role);
+        }
+        return RoleSet.of(mask);
+    }
+}
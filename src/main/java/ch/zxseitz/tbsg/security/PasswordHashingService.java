@@ -0,0 +1,108 @@
+package ch.zxseitz.tbsg.security;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.Timer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PreDestroy;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * Runs password hashing work (bcrypt encode and authentication) on a dedicated, size capped worker pool, so
+ * login bursts cannot pin all servlet threads. Submissions are rejected with a
+ * {@link RejectedExecutionException} once the queue is full.
+ */
+@Service
+public class PasswordHashingService {
+    private static final Logger logger = LoggerFactory.getLogger(PasswordHashingService.class);
+
+    private final PasswordEncoder encoder;
+    private final ThreadPoolExecutor executor;
+    private final MeterRegistry meterRegistry;
+    private final Counter rejected;
+    // compared against for unknown users, so they take as long as a wrong password
+    private final String unknownUserHash;
+
+    @Autowired
+    public PasswordHashingService(PasswordEncoder encoder, MeterRegistry meterRegistry,
+                                  @Value("${tbsg.hashing.threads:0}") int threads,
+                                  @Value("${tbsg.hashing.queue-capacity:256}") int queueCapacity) {
+        this.encoder = encoder;
+        this.meterRegistry = meterRegistry;
+        var poolSize = threads > 0 ? threads : Runtime.getRuntime().availableProcessors();
+        var counter = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(poolSize, poolSize, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity), runnable -> {
+                    var thread = new Thread(runnable, "hashing-" + counter.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                }, new ThreadPoolExecutor.AbortPolicy());
+        this.rejected = meterRegistry.counter("tbsg.hashing.rejected");
+        this.unknownUserHash = encoder.encode("unknown user");
+        meterRegistry.gauge("tbsg.hashing.queue", Tags.empty(), executor, e -> e.getQueue().size());
+        meterRegistry.gauge("tbsg.hashing.active", Tags.empty(), executor, ThreadPoolExecutor::getActiveCount);
+        logger.info("Started password hashing pool with {} threads and queue capacity {}", poolSize, queueCapacity);
+    }
+
+    public CompletableFuture<String> encode(CharSequence password) {
+        return submit("encode", () -> encoder.encode(password));
+    }
+
+    public CompletableFuture<Boolean> matches(CharSequence password, String hash) {
+        return submit("matches", () -> encoder.matches(password, hash));
+    }
+
+    /**
+     * Hashes the password of a login with an unknown username like a known one, always false.
+     */
+    public CompletableFuture<Boolean> matchesUnknown(CharSequence password) {
+        return submit("matches", () -> {
+            encoder.matches(password, unknownUserHash);
+            return false;
+        });
+    }
+
+    /**
+     * Runs the task on the hashing pool and records its queue wait and latency with the given operation tag.
+     *
+     * @throws RejectedExecutionException if the pool queue is full
+     */
+    public <T> CompletableFuture<T> submit(String operation, Supplier<T> task) {
+        var timer = Timer.builder("tbsg.hashing.duration")
+                .tag("operation", operation)
+                .publishPercentileHistogram()
+                .register(meterRegistry);
+        var wait = Timer.builder("tbsg.hashing.wait")
+                .tag("operation", operation)
+                .publishPercentileHistogram()
+                .register(meterRegistry);
+        var submitted = System.nanoTime();
+        try {
+            return CompletableFuture.supplyAsync(() -> {
+                wait.record(System.nanoTime() - submitted, TimeUnit.NANOSECONDS);
+                return timer.record(task);
+            }, executor);
+        } catch (RejectedExecutionException e) {
+            rejected.increment();
+            throw e;
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdown();
+    }
+}
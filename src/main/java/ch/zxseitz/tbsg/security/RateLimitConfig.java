@@ -0,0 +1,25 @@
+package ch.zxseitz.tbsg.security;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+@Configuration
+public class RateLimitConfig {
+    @Bean("ip_limiter")
+    public RateLimiter ipRateLimiter(MeterRegistry meterRegistry,
+                                     @Value("${tbsg.ratelimit.ip.permits-per-second:5}") double permitsPerSecond,
+                                     @Value("${tbsg.ratelimit.ip.burst:20}") int burst,
+                                     @Value("${tbsg.ratelimit.ip.max-keys:100000}") int maxKeys) {
+        return new RateLimiter("ip", permitsPerSecond, burst, maxKeys, meterRegistry);
+    }
+
+    @Bean("username_limiter")
+    public RateLimiter usernameRateLimiter(MeterRegistry meterRegistry,
+                                           @Value("${tbsg.ratelimit.username.permits-per-second:0.1}") double permitsPerSecond,
+                                           @Value("${tbsg.ratelimit.username.burst:5}") int burst,
+                                           @Value("${tbsg.ratelimit.username.max-keys:100000}") int maxKeys) {
+        return new RateLimiter("username", permitsPerSecond, burst, maxKeys, meterRegistry);
+    }
+}
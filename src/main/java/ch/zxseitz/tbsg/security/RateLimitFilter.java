@@ -0,0 +1,47 @@
+package ch.zxseitz.tbsg.security;
+
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.http.HttpHeaders;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+/**
+ * Limits requests to the unauthenticated auth endpoints per client address, before any user lookup or
+ * password hashing happens.
+ */
+@Component
+public class RateLimitFilter extends OncePerRequestFilter {
+    private static final String PATH_PREFIX = "/api/v1/auth/";
+
+    private final RateLimiter rateLimiter;
+
+    @Autowired
+    public RateLimitFilter(@Qualifier("ip_limiter") RateLimiter rateLimiter) {
+        this.rateLimiter = rateLimiter;
+    }
+
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        return !request.getRequestURI().startsWith(request.getContextPath() + PATH_PREFIX);
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain)
+            throws ServletException, IOException {
+        var wait = rateLimiter.acquire(request.getRemoteAddr());
+        if (wait > 0) {
+            response.setStatus(429);
+            response.setHeader(HttpHeaders.RETRY_AFTER, Long.toString(RateLimiter.toSeconds(wait)));
+            response.getWriter().write("Too many requests");
+            return;
+        }
+        filterChain.doFilter(request, response);
+    }
+}
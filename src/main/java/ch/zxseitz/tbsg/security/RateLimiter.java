@@ -0,0 +1,139 @@
+package ch.zxseitz.tbsg.security;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+
+/**
+ * Lock-free token bucket per key, implemented as generic cell rate algorithm: each key only stores its
+ * theoretical arrival time, which is advanced by one emission interval per permit with a compare and set.
+ * <p>
+ * At most maxKeys buckets are kept. Once full, idle buckets (completely refilled, so dropping them forgets
+ * nothing) are swept; keys that still do not fit fall back to one of a fixed stripe of overflow buckets, chosen
+ * by the hash of the key, until space frees up. Colliding keys share a bucket, but a single busy key cannot
+ * throttle all others.
+ */
+public class RateLimiter {
+    private static final long SWEEP_INTERVAL = 1_000_000_000L;
+    private static final int OVERFLOW_BITS = 6;
+
+    private final ConcurrentHashMap<String, AtomicLong> buckets;
+    private final AtomicLong[] overflow;
+    private final AtomicLong nextSweep;
+    private final long interval;
+    private final long tolerance;
+    private final int maxKeys;
+    private final LongSupplier clock;
+    private final Counter rejected;
+
+    public RateLimiter(String name, double permitsPerSecond, int burst, int maxKeys, MeterRegistry meterRegistry) {
+        this(name, permitsPerSecond, burst, maxKeys, meterRegistry, System::nanoTime);
+    }
+
+    RateLimiter(String name, double permitsPerSecond, int burst, int maxKeys, MeterRegistry meterRegistry,
+                LongSupplier clock) {
+        if (permitsPerSecond <= 0 || burst < 1 || maxKeys < 1) {
+            throw new IllegalArgumentException(String.format("Invalid rate limit %s: %f/s, burst %d, %d keys",
+                    name, permitsPerSecond, burst, maxKeys));
+        }
+        this.buckets = new ConcurrentHashMap<>();
+        this.interval = (long) (1_000_000_000L / permitsPerSecond);
+        this.tolerance = interval * burst;
+        this.maxKeys = maxKeys;
+        this.clock = clock;
+        this.overflow = new AtomicLong[1 << OVERFLOW_BITS];
+        for (var i = 0; i < overflow.length; i++) {
+            overflow[i] = new AtomicLong(clock.getAsLong());
+        }
+        this.nextSweep = new AtomicLong(clock.getAsLong());
+        this.rejected = meterRegistry.counter("tbsg.ratelimit.rejected", "limiter", name);
+        meterRegistry.gaugeMapSize("tbsg.ratelimit.keys", Tags.of("limiter", name), buckets);
+    }
+
+    /**
+     * Takes one permit of the key's bucket.
+     *
+     * @return 0 if the permit was granted, otherwise the nanoseconds until the next permit becomes available
+     */
+    public long acquire(String key) {
+        var now = clock.getAsLong();
+        var bucket = bucket(key, now);
+        while (true) {
+            var tat = bucket.get();
+            var next = Math.max(tat, now) + interval;
+            var wait = next - now - tolerance;
+            if (wait > 0) {
+                rejected.increment();
+                return wait;
+            }
+            if (bucket.compareAndSet(tat, next)) {
+                return 0;
+            }
+        }
+    }
+
+    /**
+     * Returns a permit taken by {@link #acquire(String)}, e.g. after a successful login, so only failed
+     * attempts count against the key.
+     */
+    public void release(String key) {
+        var now = clock.getAsLong();
+        var bucket = buckets.get(key);
+        if (bucket == null) {
+            bucket = overflow(key);
+        }
+        while (true) {
+            var tat = bucket.get();
+            if (tat <= now) {
+                // already full
+                return;
+            }
+            if (bucket.compareAndSet(tat, Math.max(now, tat - interval))) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * Rounds a wait returned by {@link #acquire(String)} up to whole seconds, as used by the Retry-After header.
+     */
+    public static long toSeconds(long waitNanos) {
+        return Math.max(1, TimeUnit.NANOSECONDS.toSeconds(waitNanos + TimeUnit.SECONDS.toNanos(1) - 1));
+    }
+
+    public int size() {
+        return buckets.size();
+    }
+
+    private AtomicLong bucket(String key, long now) {
+        var bucket = buckets.get(key);
+        if (bucket != null) {
+            return bucket;
+        }
+        if (buckets.size() >= maxKeys) {
+            sweep(now);
+            if (buckets.size() >= maxKeys) {
+                return overflow(key);
+            }
+        }
+        return buckets.computeIfAbsent(key, k -> new AtomicLong(now));
+    }
+
+    private AtomicLong overflow(String key) {
+        // fibonacci hashing, similar keys like addresses of one subnet differ in few bits
+        return overflow[(key.hashCode() * 0x9e3779b9) >>> (Integer.SIZE - OVERFLOW_BITS)];
+    }
+
+    private void sweep(long now) {
+        // at most one sweep per interval, the other threads fall back to the overflow buckets in the meantime
+        var scheduled = nextSweep.get();
+        if (now - scheduled >= 0 && nextSweep.compareAndSet(scheduled, now + SWEEP_INTERVAL)) {
+            buckets.values().removeIf(bucket -> bucket.get() <= now);
+        }
+    }
+}
@@ -3,6 +3,7 @@ package ch.zxseitz.tbsg.security;
 import ch.zxseitz.tbsg.model.Role;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.security.authentication.AuthenticationManager;
 import org.springframework.security.config.annotation.authentication.builders.AuthenticationManagerBuilder;
@@ -21,11 +22,16 @@ import org.springframework.security.web.authentication.UsernamePasswordAuthentic
 public class SecurityConfig extends WebSecurityConfigurerAdapter {
     private final UserDetailsService userDetailsService;
     private final JwtFilter jwtFilter;
+    private final RateLimitFilter rateLimitFilter;
+    private final int bcryptStrength;
 
     @Autowired
-    public SecurityConfig(@Qualifier("mongo_us") UserDetailsService userDetailsService, JwtFilter jwtFilter) {
+    public SecurityConfig(@Qualifier("mongo_us") UserDetailsService userDetailsService, JwtFilter jwtFilter,
+                          RateLimitFilter rateLimitFilter, @Value("${tbsg.bcrypt.strength:10}") int bcryptStrength) {
         this.userDetailsService = userDetailsService;
         this.jwtFilter = jwtFilter;
+        this.rateLimitFilter = rateLimitFilter;
+        this.bcryptStrength = bcryptStrength;
     }
 
     @Bean
@@ -36,7 +42,7 @@ public class SecurityConfig extends WebSecurityConfigurerAdapter {
 
     @Bean
     public PasswordEncoder getPasswordEncoder() {
-        return new BCryptPasswordEncoder();
+        return new BCryptPasswordEncoder(bcryptStrength);
     }
 
     @Override
@@ -47,13 +53,19 @@ public class SecurityConfig extends WebSecurityConfigurerAdapter {
     @Override
     protected void configure(HttpSecurity http) throws Exception {
         http.cors().and().csrf().disable().authorizeRequests()
-                .regexMatchers("/api/v1/user/(\\w+)")
+                .regexMatchers("/api/v1/user/([0-9a-fA-F]{24})")
                 .hasAnyAuthority(Role.User.getAuthority(), Role.Admin.getAuthority())
                 .antMatchers("/api/v1/user/**").hasAuthority(Role.Admin.getAuthority())
                 .antMatchers("/api/v1/auth/**").permitAll()
                 .antMatchers("/api/v1/**").authenticated()
                 .antMatchers("/static/**").permitAll()
+                // health for load balancers, metrics only for a scraper with an admin jwt
+                .antMatchers("/actuator/health").permitAll()
+                .antMatchers("/actuator/**").hasAuthority(Role.Admin.getAuthority())
+                // the game websocket authenticates the handshake itself, see JwtHandshakeInterceptor
+                .antMatchers("/ws/**").permitAll()
                 .and().sessionManagement().sessionCreationPolicy(SessionCreationPolicy.STATELESS);
         http.addFilterBefore(jwtFilter, UsernamePasswordAuthenticationFilter.class);
+        http.addFilterBefore(rateLimitFilter, JwtFilter.class);
     }
 }
\ No newline at end of file
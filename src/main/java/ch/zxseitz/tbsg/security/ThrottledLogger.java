@@ -0,0 +1,39 @@
+package ch.zxseitz.tbsg.security;
+
+import org.slf4j.Logger;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Writes at most one warning per interval and reports how many were suppressed in between, so a client
+ * flooding the server with bad requests cannot turn logging into the bottleneck. Counts belong in metrics.
+ */
+public class ThrottledLogger {
+    private final Logger logger;
+    private final long intervalNanos;
+    private final AtomicLong next;
+    private final LongAdder suppressed;
+
+    public ThrottledLogger(Logger logger, long intervalMs) {
+        this.logger = logger;
+        this.intervalNanos = TimeUnit.MILLISECONDS.toNanos(intervalMs);
+        this.next = new AtomicLong(System.nanoTime());
+        this.suppressed = new LongAdder();
+    }
+
+    public void warn(String format, Object... arguments) {
+        var now = System.nanoTime();
+        var next = this.next.get();
+        if (!logger.isWarnEnabled() || now - next < 0 || !this.next.compareAndSet(next, now + intervalNanos)) {
+            suppressed.increment();
+            return;
+        }
+        var count = suppressed.sumThenReset();
+        if (count > 0) {
+            logger.warn("{} similar warnings suppressed", count);
+        }
+        logger.warn(format, arguments);
+    }
+}
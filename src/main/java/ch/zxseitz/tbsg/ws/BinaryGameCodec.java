@@ -0,0 +1,136 @@
+package ch.zxseitz.tbsg.ws;
+
+import ch.zxseitz.tbsg.game.GameMessage;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Compact binary encoding of {@link GameMessage}s, negotiated with the websocket sub protocol
+ * {@value #PROTOCOL}. All numbers are big endian, a frame has a fixed layout followed by an optional board and
+ * an optional text:
+ * <pre>
+ *  0  u16    length of the frame without this prefix
+ *  2  u8     version
+ *  3  u8     type code
+ *  4  u8     flags, bit 0: match present, bit 1: text present, bit 2: board present
+ *  5  12byte match id, zero if absent
+ * 17  i32    turn
+ * 21  u8     player
+ * 22  i32    move
+ * 26  u16    latency
+ * 28  i64    flipped discs of the turn, zero if absent
+ * 36  2*i64  discs of player 0 and player 1, if present
+ *     u16    text length, followed by the utf-8 text, if present
+ * </pre>
+ * Type codes are part of the protocol and must never be reassigned, new types are appended. Version 2 added
+ * the flipped discs and the board.
+ */
+public final class BinaryGameCodec {
+    public static final String PROTOCOL = "tbsg.binary.v2";
+    public static final int VERSION = 2;
+
+    static final int VERSION_OFFSET = 2;
+    static final int TYPE_OFFSET = 3;
+    static final int FLAGS_OFFSET = 4;
+    static final int MATCH_OFFSET = 5;
+    static final int TURN_OFFSET = 17;
+    static final int PLAYER_OFFSET = 21;
+    static final int MOVE_OFFSET = 22;
+    static final int LATENCY_OFFSET = 26;
+    static final int FLIPS_OFFSET = 28;
+    static final int FIXED_LENGTH = 36;
+    static final int BOARD_LENGTH = 16;
+    static final int FLAG_MATCH = 1;
+    static final int FLAG_TEXT = 2;
+    static final int FLAG_BOARD = 4;
+    static final int MAX_TEXT_LENGTH = 1024;
+
+    // index is the type code
+    static final GameMessage.Type[] TYPES = {
+            null,
+            GameMessage.Type.JOIN,
+            GameMessage.Type.TURN,
+            GameMessage.Type.STATE,
+            GameMessage.Type.ERROR,
+            GameMessage.Type.QUEUE,
+            GameMessage.Type.LEAVE,
+            GameMessage.Type.HINT,
+    };
+    private static final int[] CODES = new int[GameMessage.Type.values().length];
+
+    static {
+        for (var code = 1; code < TYPES.length; code++) {
+            CODES[TYPES[code].ordinal()] = code;
+        }
+    }
+
+    private BinaryGameCodec() {}
+
+    public static ByteBuffer encode(GameMessage message) {
+        var text = message.getMessage() != null ? message.getMessage().getBytes(StandardCharsets.UTF_8) : null;
+        var textLength = text != null ? truncate(text, MAX_TEXT_LENGTH) : 0;
+        var buffer = ByteBuffer.allocate(FIXED_LENGTH + (message.getBoard() != null ? BOARD_LENGTH : 0)
+                + (text != null ? 2 + textLength : 0));
+        encode(message, text, textLength, buffer);
+        buffer.flip();
+        return buffer;
+    }
+
+    public static GameMessage decode(ByteBuffer buffer) {
+        var frame = new GameFrame();
+        if (!frame.wrap(buffer)) {
+            throw new IllegalArgumentException("Invalid game frame");
+        }
+        return frame.toMessage();
+    }
+
+    /**
+     * Length of the longest prefix of the utf-8 text with at most max bytes that does not split a character.
+     */
+    static int truncate(byte[] text, int max) {
+        if (text.length <= max) {
+            return text.length;
+        }
+        var length = max;
+        // continuation bytes are 10xxxxxx, cut before the lead byte of their character
+        while (length > 0 && (text[length] & 0xc0) == 0x80) {
+            length--;
+        }
+        return length;
+    }
+
+    static int code(GameMessage.Type type) {
+        return CODES[type.ordinal()];
+    }
+
+    private static void encode(GameMessage message, byte[] text, int textLength, ByteBuffer buffer) {
+        var start = buffer.position();
+        var board = message.getBoard();
+        var flags = (message.getMatch() != null ? FLAG_MATCH : 0) | (text != null ? FLAG_TEXT : 0)
+                | (board != null ? FLAG_BOARD : 0);
+        buffer.putShort((short) 0);
+        buffer.put((byte) VERSION);
+        buffer.put((byte) code(message.getType()));
+        buffer.put((byte) flags);
+        if (message.getMatch() != null) {
+            message.getMatch().putToByteBuffer(buffer);
+        } else {
+            buffer.putInt(0).putInt(0).putInt(0);
+        }
+        buffer.putInt(message.getTurn());
+        buffer.put((byte) message.getPlayer());
+        buffer.putInt(message.getMove());
+        buffer.putShort((short) Math.max(0, Math.min(0xffff, message.getLatency())));
+        buffer.putLong(message.getFlips() != null ? message.getFlips() : 0L);
+        if (board != null) {
+            buffer.putLong(board.getDiscs(0));
+            buffer.putLong(board.getDiscs(1));
+        }
+        if (text != null) {
+            buffer.putShort((short) textLength);
+            buffer.put(text, 0, textLength);
+        }
+        buffer.putShort(start, (short) (buffer.position() - start - 2));
+    }
+}
@@ -0,0 +1,122 @@
+package ch.zxseitz.tbsg.ws;
+
+import ch.zxseitz.tbsg.game.GameMessage;
+import ch.zxseitz.tbsg.game.othello.BoardSnapshot;
+import org.bson.types.ObjectId;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+import static ch.zxseitz.tbsg.ws.BinaryGameCodec.*;
+
+/**
+ * Reusable flyweight over a binary game frame, fields are read in place from the wrapped buffer without
+ * copying. Only the match id, the board snapshot and the text allocate when accessed. Not thread safe.
+ */
+public final class GameFrame {
+    private ByteBuffer buffer;
+    private int base;
+
+    /**
+     * Wraps the frame starting at the position of the buffer, returns false if it is not a valid frame.
+     */
+    public boolean wrap(ByteBuffer buffer) {
+        this.buffer = buffer;
+        this.base = buffer.position();
+        var remaining = buffer.remaining();
+        if (remaining < FIXED_LENGTH || (buffer.getShort(base) & 0xffff) + 2 != remaining
+                || (buffer.get(base + VERSION_OFFSET) & 0xff) != VERSION) {
+            return false;
+        }
+        var code = buffer.get(base + TYPE_OFFSET) & 0xff;
+        if (code == 0 || code >= TYPES.length) {
+            return false;
+        }
+        var textOffset = textOffset();
+        if (hasText()) {
+            return remaining >= textOffset + 2 && remaining == textOffset + 2 + textLength();
+        }
+        return remaining == textOffset;
+    }
+
+    public GameMessage.Type type() {
+        return TYPES[buffer.get(base + TYPE_OFFSET) & 0xff];
+    }
+
+    public boolean hasMatch() {
+        return (buffer.get(base + FLAGS_OFFSET) & FLAG_MATCH) != 0;
+    }
+
+    public ObjectId match() {
+        if (!hasMatch()) {
+            return null;
+        }
+        return new ObjectId(buffer.duplicate().position(base + MATCH_OFFSET));
+    }
+
+    public int turn() {
+        return buffer.getInt(base + TURN_OFFSET);
+    }
+
+    public int player() {
+        return buffer.get(base + PLAYER_OFFSET) & 0xff;
+    }
+
+    public int move() {
+        return buffer.getInt(base + MOVE_OFFSET);
+    }
+
+    public int latency() {
+        return buffer.getShort(base + LATENCY_OFFSET) & 0xffff;
+    }
+
+    public long flips() {
+        return buffer.getLong(base + FLIPS_OFFSET);
+    }
+
+    public boolean hasBoard() {
+        return (buffer.get(base + FLAGS_OFFSET) & FLAG_BOARD) != 0;
+    }
+
+    /**
+     * Returns the discs of the player on the board, 0 if the frame has no board.
+     */
+    public long discs(int player) {
+        if (!hasBoard()) {
+            return 0;
+        }
+        return buffer.getLong(base + FIXED_LENGTH + 8 * player);
+    }
+
+    public BoardSnapshot board() {
+        if (!hasBoard()) {
+            return null;
+        }
+        return new BoardSnapshot(discs(0), discs(1));
+    }
+
+    public boolean hasText() {
+        return (buffer.get(base + FLAGS_OFFSET) & FLAG_TEXT) != 0;
+    }
+
+    public String text() {
+        if (!hasText()) {
+            return null;
+        }
+        var bytes = new byte[textLength()];
+        buffer.duplicate().position(base + textOffset() + 2).get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    public GameMessage toMessage() {
+        return new GameMessage(type(), match(), turn(), player(), move(), latency(), text(), flips(), board());
+    }
+
+    private int textOffset() {
+        return FIXED_LENGTH + (hasBoard() ? BOARD_LENGTH : 0);
+    }
+
+    private int textLength() {
+        return buffer.getShort(base + textOffset()) & 0xffff;
+    }
+}
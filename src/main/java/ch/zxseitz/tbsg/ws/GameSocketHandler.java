@@ -0,0 +1,153 @@
+package ch.zxseitz.tbsg.ws;
+
+import ch.zxseitz.tbsg.game.GameMessage;
+import ch.zxseitz.tbsg.game.GameService;
+import ch.zxseitz.tbsg.json.SerializerRegistry;
+import ch.zxseitz.tbsg.matchmaking.MatchmakingService;
+import ch.zxseitz.tbsg.presence.PresenceRegistry;
+import ch.zxseitz.tbsg.ranking.RatingService;
+import com.google.gson.JsonParseException;
+import com.google.gson.TypeAdapter;
+import org.bson.types.ObjectId;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+import org.springframework.web.socket.BinaryMessage;
+import org.springframework.web.socket.CloseStatus;
+import org.springframework.web.socket.PongMessage;
+import org.springframework.web.socket.TextMessage;
+import org.springframework.web.socket.WebSocketSession;
+import org.springframework.web.socket.handler.AbstractWebSocketHandler;
+import org.springframework.web.socket.handler.ConcurrentWebSocketSessionDecorator;
+
+import java.io.IOException;
+
+/**
+ * Game channel speaking json by default and the {@link BinaryGameCodec} format, if the client negotiated
+ * its sub protocol.
+ */
+@Component
+public class GameSocketHandler extends AbstractWebSocketHandler {
+    public static final String JSON_PROTOCOL = "tbsg.json.v1";
+
+    private static final String CONNECTION_ATTRIBUTE = "connection";
+    private static final int SEND_TIME_LIMIT = 5000;
+    private static final int SEND_BUFFER_LIMIT = 64 * 1024;
+
+    private final GameService gameService;
+    private final MatchmakingService matchmakingService;
+    private final RatingService ratingService;
+    private final PresenceRegistry presenceRegistry;
+    private final TypeAdapter<GameMessage> messageAdapter;
+    private final ThreadLocal<GameFrame> frames;
+
+    @Autowired
+    public GameSocketHandler(GameService gameService, MatchmakingService matchmakingService,
+                             RatingService ratingService, PresenceRegistry presenceRegistry,
+                             SerializerRegistry serializers) {
+        this.gameService = gameService;
+        this.matchmakingService = matchmakingService;
+        this.ratingService = ratingService;
+        this.presenceRegistry = presenceRegistry;
+        this.messageAdapter = serializers.getAdapter(GameMessage.class);
+        this.frames = ThreadLocal.withInitial(GameFrame::new);
+    }
+
+    @Override
+    public void afterConnectionEstablished(WebSocketSession session) {
+        // matches send from their own threads, the decorator serializes concurrent sends
+        var connection = new WebSocketPlayerConnection(
+                new ConcurrentWebSocketSessionDecorator(session, SEND_TIME_LIMIT, SEND_BUFFER_LIMIT), messageAdapter,
+                BinaryGameCodec.PROTOCOL.equals(session.getAcceptedProtocol()));
+        session.getAttributes().put(CONNECTION_ATTRIBUTE, connection);
+        gameService.connect(user(session), connection);
+    }
+
+    @Override
+    protected void handleTextMessage(WebSocketSession session, TextMessage textMessage) {
+        var connection = connection(session);
+        presenceRegistry.heartbeat(user(session), connection);
+        GameMessage message;
+        try {
+            message = messageAdapter.fromJson(textMessage.getPayload());
+        } catch (IOException | JsonParseException | IllegalArgumentException e) {
+            connection.send(GameMessage.error(null, "Invalid message"));
+            return;
+        }
+        if (message == null || message.getType() == null) {
+            connection.send(GameMessage.error(null, "Invalid message"));
+            return;
+        }
+        dispatch(session, connection, message.getType(), message.getMatch(), message.getTurn(),
+                message.getMove(), message.getLatency());
+    }
+
+    @Override
+    protected void handleBinaryMessage(WebSocketSession session, BinaryMessage binaryMessage) {
+        var connection = connection(session);
+        presenceRegistry.heartbeat(user(session), connection);
+        var frame = frames.get();
+        if (!frame.wrap(binaryMessage.getPayload())) {
+            connection.send(GameMessage.error(null, "Invalid message"));
+            return;
+        }
+        dispatch(session, connection, frame.type(), frame.match(), frame.turn(), frame.move(), frame.latency());
+    }
+
+    @Override
+    protected void handlePongMessage(WebSocketSession session, PongMessage message) {
+        presenceRegistry.heartbeat(user(session), connection(session));
+    }
+
+    @Override
+    public void afterConnectionClosed(WebSocketSession session, CloseStatus status) {
+        var connection = connection(session);
+        if (connection != null) {
+            matchmakingService.leave(user(session));
+            gameService.disconnect(user(session), connection);
+        }
+    }
+
+    private void dispatch(WebSocketSession session, WebSocketPlayerConnection connection, GameMessage.Type type,
+                          ObjectId match, int turn, int move, int latency) {
+        switch (type) {
+            case QUEUE:
+                var user = user(session);
+                if (matchmakingService.join(user, ratingService.getRating(user), latency)) {
+                    connection.send(GameMessage.queued());
+                } else {
+                    connection.send(GameMessage.error(null, "Already queued"));
+                }
+                return;
+            case LEAVE:
+                matchmakingService.leave(user(session));
+                return;
+            default:
+                break;
+        }
+        if (match == null) {
+            connection.send(GameMessage.error(null, "Invalid message"));
+            return;
+        }
+        switch (type) {
+            case JOIN:
+                gameService.join(user(session), match);
+                break;
+            case TURN:
+                gameService.submitTurn(user(session), match, turn, move);
+                break;
+            case HINT:
+                gameService.hint(user(session), match);
+                break;
+            default:
+                connection.send(GameMessage.error(match, "Unsupported message type"));
+        }
+    }
+
+    private static WebSocketPlayerConnection connection(WebSocketSession session) {
+        return (WebSocketPlayerConnection) session.getAttributes().get(CONNECTION_ATTRIBUTE);
+    }
+
+    private static ObjectId user(WebSocketSession session) {
+        return (ObjectId) session.getAttributes().get(JwtHandshakeInterceptor.USER_ATTRIBUTE);
+    }
+}
@@ -0,0 +1,55 @@
+package ch.zxseitz.tbsg.ws;
+
+import ch.zxseitz.tbsg.security.JwtUtils;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.server.ServerHttpRequest;
+import org.springframework.http.server.ServerHttpResponse;
+import org.springframework.stereotype.Component;
+import org.springframework.web.socket.WebSocketHandler;
+import org.springframework.web.socket.server.HandshakeInterceptor;
+import org.springframework.web.util.UriComponentsBuilder;
+
+import java.util.Map;
+
+/**
+ * Authenticates the websocket handshake with the jwts issued by {@link JwtUtils}. Browsers cannot set headers
+ * on a websocket handshake, so the token is also accepted as query parameter.
+ */
+@Component
+public class JwtHandshakeInterceptor implements HandshakeInterceptor {
+    public static final String USER_ATTRIBUTE = "user";
+
+    private final JwtUtils jwtUtils;
+
+    @Autowired
+    public JwtHandshakeInterceptor(JwtUtils jwtUtils) {
+        this.jwtUtils = jwtUtils;
+    }
+
+    @Override
+    public boolean beforeHandshake(ServerHttpRequest request, ServerHttpResponse response,
+                                   WebSocketHandler wsHandler, Map<String, Object> attributes) {
+        var jwt = extractJwt(request);
+        var user = jwt != null ? jwtUtils.verifyJwt(jwt) : null;
+        if (user == null || user.isEmpty()) {
+            response.setStatusCode(HttpStatus.UNAUTHORIZED);
+            return false;
+        }
+        attributes.put(USER_ATTRIBUTE, user.get().getKey());
+        return true;
+    }
+
+    @Override
+    public void afterHandshake(ServerHttpRequest request, ServerHttpResponse response,
+                               WebSocketHandler wsHandler, Exception exception) {
+    }
+
+    private static String extractJwt(ServerHttpRequest request) {
+        var header = request.getHeaders().getFirst("Authorization");
+        if (header != null && header.startsWith("Bearer ")) {
+            return header.substring(7);
+        }
+        return UriComponentsBuilder.fromUri(request.getURI()).build().getQueryParams().getFirst("token");
+    }
+}
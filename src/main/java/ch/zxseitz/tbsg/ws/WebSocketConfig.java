@@ -0,0 +1,31 @@
+package ch.zxseitz.tbsg.ws;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.web.socket.config.annotation.EnableWebSocket;
+import org.springframework.web.socket.config.annotation.WebSocketConfigurer;
+import org.springframework.web.socket.config.annotation.WebSocketHandlerRegistry;
+import org.springframework.web.socket.server.support.DefaultHandshakeHandler;
+
+@Configuration
+@EnableWebSocket
+public class WebSocketConfig implements WebSocketConfigurer {
+    private final GameSocketHandler gameSocketHandler;
+    private final JwtHandshakeInterceptor jwtHandshakeInterceptor;
+
+    @Autowired
+    public WebSocketConfig(GameSocketHandler gameSocketHandler, JwtHandshakeInterceptor jwtHandshakeInterceptor) {
+        this.gameSocketHandler = gameSocketHandler;
+        this.jwtHandshakeInterceptor = jwtHandshakeInterceptor;
+    }
+
+    @Override
+    public void registerWebSocketHandlers(WebSocketHandlerRegistry registry) {
+        var handshakeHandler = new DefaultHandshakeHandler();
+        handshakeHandler.setSupportedProtocols(BinaryGameCodec.PROTOCOL, GameSocketHandler.JSON_PROTOCOL);
+        registry.addHandler(gameSocketHandler, "/ws/game")
+                .setHandshakeHandler(handshakeHandler)
+                .addInterceptors(jwtHandshakeInterceptor)
+                .setAllowedOrigins("*");
+    }
+}
@@ -0,0 +1,77 @@
+package ch.zxseitz.tbsg.ws;
+
+import ch.zxseitz.tbsg.game.GameMessage;
+import ch.zxseitz.tbsg.game.IPlayerConnection;
+import com.google.gson.TypeAdapter;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.web.socket.BinaryMessage;
+import org.springframework.web.socket.CloseStatus;
+import org.springframework.web.socket.PingMessage;
+import org.springframework.web.socket.TextMessage;
+import org.springframework.web.socket.WebSocketSession;
+
+import java.io.IOException;
+
+public class WebSocketPlayerConnection implements IPlayerConnection {
+    private static final Logger logger = LoggerFactory.getLogger(WebSocketPlayerConnection.class);
+
+    private final WebSocketSession session;
+    private final TypeAdapter<GameMessage> messageAdapter;
+    private final boolean binary;
+
+    public WebSocketPlayerConnection(WebSocketSession session, TypeAdapter<GameMessage> messageAdapter,
+                                     boolean binary) {
+        this.session = session;
+        this.messageAdapter = messageAdapter;
+        this.binary = binary;
+    }
+
+    public boolean isBinary() {
+        return binary;
+    }
+
+    @Override
+    public void send(GameMessage message) {
+        if (!session.isOpen()) {
+            return;
+        }
+        try {
+            if (binary) {
+                session.sendMessage(new BinaryMessage(BinaryGameCodec.encode(message)));
+            } else {
+                session.sendMessage(new TextMessage(messageAdapter.toJson(message)));
+            }
+        } catch (IOException e) {
+            logger.debug("Could not send message to session {}: {}", session.getId(), e.getMessage());
+        } catch (RuntimeException e) {
+            // e.g. send buffer or time limit of the session exceeded, the client does not keep up
+            logger.debug("Could not send message to session {}, closing it: {}", session.getId(), e.getMessage());
+            close();
+        }
+    }
+
+    @Override
+    public void ping() {
+        if (!session.isOpen()) {
+            return;
+        }
+        try {
+            session.sendMessage(new PingMessage());
+        } catch (IOException e) {
+            logger.debug("Could not ping session {}: {}", session.getId(), e.getMessage());
+        } catch (RuntimeException e) {
+            logger.debug("Could not ping session {}, closing it: {}", session.getId(), e.getMessage());
+            close();
+        }
+    }
+
+    @Override
+    public void close() {
+        try {
+            session.close(CloseStatus.SESSION_NOT_RELIABLE);
+        } catch (IOException | RuntimeException e) {
+            logger.debug("Could not close session {}: {}", session.getId(), e.getMessage());
+        }
+    }
+}
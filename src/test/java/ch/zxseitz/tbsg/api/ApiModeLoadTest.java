@@ -0,0 +1,137 @@
+package ch.zxseitz.tbsg.api;
+
+import ch.zxseitz.tbsg.TbsgApplication;
+import com.google.gson.JsonParser;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Runs the same profile lookup load against the blocking and the reactive api, both with a small servlet
+ * thread pool. Needs the database of mongo.properties, enable with -Dtbsg.loadtest=true. Throughput and
+ * latency percentiles of both modes are logged.
+ * <p>
+ * Not run yet, there is no comparison of the two modes: the build machines have no mongo database.
+ */
+@EnabledIfSystemProperty(named = "tbsg.loadtest", matches = "true")
+class ApiModeLoadTest {
+    private static final Logger logger = LoggerFactory.getLogger(ApiModeLoadTest.class);
+    private static final int SERVLET_THREADS = 16;
+    private static final int CONCURRENCY = 256;
+    private static final int REQUESTS = 20_000;
+
+    private final HttpClient client = HttpClient.newHttpClient();
+
+    @Test
+    void compareBlockingAndReactive() throws Exception {
+        var blocking = run("blocking");
+        var reactive = run("reactive");
+        logger.info(String.format("%-10s %10s %10s %10s", "mode", "req/s", "p50 ms", "p99 ms"));
+        logger.info("{}", blocking);
+        logger.info("{}", reactive);
+    }
+
+    private Result run(String mode) throws Exception {
+        var context = new SpringApplicationBuilder(TbsgApplication.class).properties(
+                "server.port=0",
+                "server.tomcat.threads.max=" + SERVLET_THREADS,
+                "tbsg.api.mode=" + mode,
+                // every lookup has to reach mongo
+                "tbsg.user.cache.max-size=0",
+                "tbsg.ratelimit.ip.permits-per-second=1000000",
+                "tbsg.ratelimit.ip.burst=1000000"
+        ).run();
+        try {
+            var base = "http://localhost:" + context.getEnvironment().getProperty("local.server.port");
+            var username = String.format("load_%09d", System.nanoTime() % 1_000_000_000L);
+            var credentials = String.format("{\"username\":\"%s\",\"password\":\"l0ad!test\"}", username);
+            var register = String.format("{\"username\":\"%s\",\"email\":\"%s@load.test\",\"password\":\"l0ad!test\"}",
+                    username, username);
+            assertEquals(200, post(base + "/api/v1/auth/register", register).statusCode());
+            var login = post(base + "/api/v1/auth/login", credentials);
+            assertEquals(200, login.statusCode());
+            var jwt = JsonParser.parseString(login.body()).getAsJsonObject().get("jwt").getAsString();
+            var payload = new String(Base64.getUrlDecoder().decode(jwt.split("\\.")[1]), StandardCharsets.UTF_8);
+            var id = JsonParser.parseString(payload).getAsJsonObject().get("sub").getAsString();
+            var request = HttpRequest.newBuilder(URI.create(base + "/api/v1/user/" + id))
+                    .header("Authorization", "Bearer " + jwt)
+                    .GET().build();
+
+            // warm up connections and code paths
+            load(request, CONCURRENCY, REQUESTS / 10);
+            var start = System.nanoTime();
+            var latencies = load(request, CONCURRENCY, REQUESTS);
+            var elapsed = System.nanoTime() - start;
+            Arrays.sort(latencies);
+            return new Result(mode, REQUESTS / (elapsed / 1e9),
+                    latencies[REQUESTS / 2] / 1e6, latencies[REQUESTS * 99 / 100] / 1e6);
+        } finally {
+            context.close();
+        }
+    }
+
+    private long[] load(HttpRequest request, int concurrency, int requests) throws InterruptedException {
+        var latencies = new long[requests];
+        var failures = new AtomicInteger();
+        var permits = new Semaphore(concurrency);
+        var done = new CountDownLatch(requests);
+        for (var i = 0; i < requests; i++) {
+            permits.acquire();
+            var index = i;
+            var start = System.nanoTime();
+            client.sendAsync(request, HttpResponse.BodyHandlers.discarding()).whenComplete((response, e) -> {
+                latencies[index] = System.nanoTime() - start;
+                if (e != null || response.statusCode() != 200) {
+                    failures.incrementAndGet();
+                }
+                permits.release();
+                done.countDown();
+            });
+        }
+        done.await();
+        assertEquals(0, failures.get());
+        return latencies;
+    }
+
+    private HttpResponse<String> post(String uri, String body) throws Exception {
+        var request = HttpRequest.newBuilder(URI.create(uri))
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofString(body))
+                .build();
+        return client.send(request, HttpResponse.BodyHandlers.ofString());
+    }
+
+    private static class Result {
+        private final String mode;
+        private final double throughput;
+        private final double p50;
+        private final double p99;
+
+        private Result(String mode, double throughput, double p50, double p99) {
+            this.mode = mode;
+            this.throughput = throughput;
+            this.p50 = p50;
+            this.p99 = p99;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%-10s %10.0f %10.2f %10.2f", mode, throughput, p50, p99);
+        }
+    }
+}
@@ -0,0 +1,238 @@
+package ch.zxseitz.tbsg.game;
+
+import ch.zxseitz.tbsg.game.othello.Board;
+import ch.zxseitz.tbsg.game.othello.SearchEngine;
+import ch.zxseitz.tbsg.model.User;
+import ch.zxseitz.tbsg.presence.PresenceRegistry;
+import ch.zxseitz.tbsg.ranking.RatingService;
+import ch.zxseitz.tbsg.repo.BulkResult;
+import ch.zxseitz.tbsg.repo.IMatchLog;
+import ch.zxseitz.tbsg.repo.IUserRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.bson.types.ObjectId;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class GameServiceTest {
+    private SearchEngine searchEngine;
+    private RatingService ratingService;
+    private GameService gameService;
+
+    @BeforeEach
+    void setUp() {
+        var meterRegistry = new SimpleMeterRegistry();
+        searchEngine = new SearchEngine(meterRegistry, 1, 1, 4);
+        ratingService = new RatingService(new RatingRepository(), 32);
+        gameService = new GameService(new NoMatchLog(), ratingService,
+                new PresenceRegistry(meterRegistry, 4, 1000, 3000), searchEngine, meterRegistry, 1, 10, 16, 50, 20);
+    }
+
+    @AfterEach
+    void tearDown() throws InterruptedException {
+        gameService.shutdown();
+        ratingService.shutdown();
+        searchEngine.shutdown();
+    }
+
+    @Test
+    void finishedMatchIsRemoved() throws InterruptedException {
+        var player1 = ObjectId.get();
+        var player2 = ObjectId.get();
+        var connection1 = new Connection();
+        gameService.connect(player1, connection1);
+        gameService.connect(player2, new Connection());
+        var id = gameService.createMatch(player1, player2);
+
+        // turns are queued on the actor in order, a shadow match tells the next legal move
+        var shadow = new Match(id, player1, player2);
+        while (!shadow.isFinished()) {
+            var player = shadow.getCurrent();
+            var moves = shadow.getBoard().legalMoves(player);
+            var move = moves == 0 ? Board.PASS : Long.numberOfTrailingZeros(moves);
+            var turn = shadow.getTurn();
+            assertEquals(MoveResult.OK, shadow.apply(player, turn, move));
+            gameService.submitTurn(shadow.getPlayer(player), id, turn, move);
+        }
+        var deadline = System.currentTimeMillis() + 5000;
+        while (gameService.getMatch(id).isPresent() && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertTrue(gameService.getMatch(id).isEmpty());
+
+        // the final turn was still sent, a later submission finds no match
+        var turns = connection1.messages.stream().filter(m -> m.getType() == GameMessage.Type.TURN).count();
+        assertEquals(shadow.getTurn(), turns);
+        gameService.submitTurn(player1, id, shadow.getTurn(), Board.PASS);
+        var last = connection1.messages.get(connection1.messages.size() - 1);
+        assertEquals(GameMessage.Type.ERROR, last.getType());
+        assertEquals("Unknown match", last.getMessage());
+    }
+
+    @Test
+    void botAnswersTheTurnsOfTheUser() throws InterruptedException {
+        var user = ObjectId.get();
+        var connection = new Connection();
+        gameService.connect(user, connection);
+        var id = gameService.createBotMatch(user);
+
+        // the user moves first, the bot answers every turn until the match is finished
+        var board = Board.initial();
+        var turn = 0;
+        var userToMove = false;
+        var seen = 0;
+        var deadline = System.currentTimeMillis() + 30000;
+        while (gameService.getMatch(id).isPresent() && System.currentTimeMillis() < deadline) {
+            while (seen < connection.messages.size()) {
+                var message = connection.messages.get(seen++);
+                if (message.getType() == GameMessage.Type.STATE) {
+                    userToMove = true;
+                } else if (message.getType() == GameMessage.Type.TURN) {
+                    if (message.getMove() != Board.PASS) {
+                        board.apply(message.getPlayer(), message.getMove());
+                    }
+                    turn = message.getTurn() + 1;
+                    userToMove = message.getPlayer() == 1;
+                }
+            }
+            if (userToMove) {
+                var moves = board.legalMoves(0);
+                gameService.submitTurn(user, id, turn, moves == 0 ? Board.PASS : Long.numberOfTrailingZeros(moves));
+                userToMove = false;
+            }
+            Thread.sleep(5);
+        }
+        assertTrue(gameService.getMatch(id).isEmpty());
+        assertTrue(connection.messages.stream()
+                .anyMatch(m -> m.getType() == GameMessage.Type.TURN && m.getPlayer() == 1));
+        assertTrue(connection.messages.stream().noneMatch(m -> m.getType() == GameMessage.Type.ERROR));
+        // the bot is no user, it has no rating
+        assertEquals(User.DEFAULT_RATING, ratingService.getRating(user));
+    }
+
+    private static class Connection implements IPlayerConnection {
+        private final List<GameMessage> messages = new CopyOnWriteArrayList<>();
+
+        @Override
+        public void send(GameMessage message) {
+            messages.add(message);
+        }
+
+        @Override
+        public void ping() {
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+
+    private static class NoMatchLog implements IMatchLog {
+        @Override
+        public void append(Match match, int turn, int player, int move) {
+        }
+
+        @Override
+        public void snapshot(Match match) {
+        }
+
+        @Override
+        public void flush() {
+        }
+
+        @Override
+        public List<Match> recover() {
+            return List.of();
+        }
+    }
+
+    private static class RatingRepository implements IUserRepository {
+        @Override
+        public void updateRating(ObjectId id, int rating) {
+        }
+
+        @Override
+        public Optional<User> getByEmail(String email) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public Optional<User> getByUsername(String username) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public Optional<User> getCredentials(String username) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public Optional<User> getProfile(ObjectId id) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public void insert(User user) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public List<User> getAll() {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public Optional<User> get(ObjectId id) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public void update(ObjectId id, User user) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public void delete(ObjectId id) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public List<User> getPage(ObjectId after, int limit) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public Stream<User> stream(ObjectId after) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public BulkResult insertAll(List<User> users) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public List<User> getAll(Collection<ObjectId> ids) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public BulkResult updateAll(Map<ObjectId, User> users) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public BulkResult deleteAll(Collection<ObjectId> ids) {
+            throw new UnsupportedOperationException();
+        }
+    }
+}
@@ -0,0 +1,100 @@
+package ch.zxseitz.tbsg.game;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.bson.types.ObjectId;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class MatchActorTest {
+    private ExecutorService executor;
+    private TimingWheel timingWheel;
+    private MatchActor actor;
+
+    @BeforeEach
+    void setUp() {
+        executor = Executors.newFixedThreadPool(2);
+        timingWheel = new TimingWheel("test", 1, new SimpleMeterRegistry());
+        actor = new MatchActor(new Match(ObjectId.get(), ObjectId.get(), ObjectId.get()), executor, timingWheel);
+    }
+
+    @AfterEach
+    void tearDown() {
+        timingWheel.close();
+        executor.shutdownNow();
+    }
+
+    @Test
+    void timerFiresOnTheActor() throws InterruptedException {
+        var fired = new CountDownLatch(1);
+        var matches = Collections.synchronizedList(new ArrayList<Match>());
+        actor.schedule(ObjectId.get(), 10, match -> {
+            matches.add(match);
+            fired.countDown();
+        });
+        assertTrue(fired.await(5, TimeUnit.SECONDS));
+        assertEquals(List.of(actor.getMatch()), matches);
+    }
+
+    @Test
+    void timerReplacesThePreviousOfItsKey() throws InterruptedException {
+        var key = ObjectId.get();
+        var fired = Collections.synchronizedList(new ArrayList<Integer>());
+        var done = new CountDownLatch(1);
+        actor.schedule(key, 20, match -> fired.add(1));
+        actor.schedule(key, 40, match -> {
+            fired.add(2);
+            done.countDown();
+        });
+        assertTrue(done.await(5, TimeUnit.SECONDS));
+        Thread.sleep(40);
+        assertEquals(List.of(2), fired);
+    }
+
+    @Test
+    void cancelledTimersDoNotFire() throws InterruptedException {
+        var player = ObjectId.get();
+        var fired = new AtomicInteger();
+        var done = new CountDownLatch(1);
+        actor.schedule(player, 20, match -> fired.incrementAndGet());
+        actor.schedule(ObjectId.get(), 20, match -> fired.incrementAndGet());
+        actor.cancel(player);
+        actor.cancelTimers();
+        actor.schedule(ObjectId.get(), 40, match -> done.countDown());
+        assertTrue(done.await(5, TimeUnit.SECONDS));
+        assertEquals(0, fired.get());
+    }
+
+    @Test
+    void immediateTimersAreNotDropped() throws InterruptedException {
+        // due at the next tick, the wheel may fire them while schedule is still registering them
+        var threads = 4;
+        var count = 2500;
+        var fired = new CountDownLatch(threads * count);
+        var schedulers = new ArrayList<Thread>();
+        for (var i = 0; i < threads; i++) {
+            var thread = new Thread(() -> {
+                for (var j = 0; j < count; j++) {
+                    actor.schedule(ObjectId.get(), 0, match -> fired.countDown());
+                }
+            });
+            thread.start();
+            schedulers.add(thread);
+        }
+        for (var thread : schedulers) {
+            thread.join();
+        }
+        assertTrue(fired.await(5, TimeUnit.SECONDS));
+    }
+}
@@ -0,0 +1,98 @@
+package ch.zxseitz.tbsg.game;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TimingWheelTest {
+    @Test
+    void firesInDeadlineOrder() throws Exception {
+        try (var wheel = new TimingWheel("test", 1, new SimpleMeterRegistry())) {
+            var fired = Collections.synchronizedList(new ArrayList<Integer>());
+            var latch = new CountDownLatch(4);
+            // the last one crosses into the second level
+            for (var delay : List.of(150, 5, 70, 30)) {
+                wheel.schedule(delay, TimeUnit.MILLISECONDS, t -> {
+                    fired.add(delay);
+                    latch.countDown();
+                });
+            }
+            var start = System.nanoTime();
+            assertTrue(latch.await(5, TimeUnit.SECONDS));
+            assertTrue(System.nanoTime() - start >= TimeUnit.MILLISECONDS.toNanos(140));
+            assertEquals(List.of(5, 30, 70, 150), fired);
+            assertEquals(0, wheel.pending());
+        }
+    }
+
+    @Test
+    void cancelledTimeoutsDoNotFire() throws Exception {
+        try (var wheel = new TimingWheel("test", 1, new SimpleMeterRegistry())) {
+            var fired = new CountDownLatch(1);
+            var wrong = new AtomicInteger();
+            var cancelled = new ArrayList<TimingWheel.Timeout>();
+            for (var i = 0; i < 1000; i++) {
+                cancelled.add(wheel.schedule(20, TimeUnit.MILLISECONDS, t -> wrong.incrementAndGet()));
+            }
+            var timeout = wheel.schedule(40, TimeUnit.MILLISECONDS, t -> fired.countDown());
+            assertEquals(1001, wheel.pending());
+            for (var t : cancelled) {
+                assertTrue(t.cancel());
+                assertFalse(t.cancel());
+            }
+            assertTrue(fired.await(5, TimeUnit.SECONDS));
+            assertTrue(timeout.isExpired());
+            assertEquals(0, wrong.get());
+            assertTrue(cancelled.get(0).isCancelled());
+            assertEquals(0, wheel.pending());
+        }
+    }
+
+    @Test
+    void rejectsDelaysBeyondTheWheel() {
+        try (var wheel = new TimingWheel("test", 1, new SimpleMeterRegistry())) {
+            assertThrows(IllegalArgumentException.class,
+                    () -> wheel.schedule(365, TimeUnit.DAYS, t -> {
+                    }));
+            assertEquals(0, wheel.pending());
+        }
+    }
+
+    @Test
+    void acceptsDelaysAfterTheRangeOfTicks() {
+        // more than 64^5 ticks of uptime, 124 days at a tick of 10 ms
+        try (var wheel = new TimingWheel("test", 1, 3L << 30, new SimpleMeterRegistry())) {
+            wheel.schedule(1, TimeUnit.DAYS, t -> {
+            });
+            assertEquals(1, wheel.pending());
+            assertThrows(IllegalArgumentException.class,
+                    () -> wheel.schedule(1L << 30, TimeUnit.MILLISECONDS, t -> {
+                    }));
+        }
+    }
+
+    @Test
+    void firesAcrossTheWrapOfTheTopLevel() throws Exception {
+        try (var wheel = new TimingWheel("test", 1, (1L << 30) - 20, new SimpleMeterRegistry())) {
+            var fired = Collections.synchronizedList(new ArrayList<Integer>());
+            var latch = new CountDownLatch(3);
+            for (var delay : List.of(90, 5, 40)) {
+                wheel.schedule(delay, TimeUnit.MILLISECONDS, t -> {
+                    fired.add(delay);
+                    latch.countDown();
+                });
+            }
+            assertTrue(latch.await(5, TimeUnit.SECONDS));
+            assertEquals(List.of(5, 40, 90), fired);
+            assertEquals(0, wheel.pending());
+        }
+    }
+}
@@ -0,0 +1,75 @@
+package ch.zxseitz.tbsg.game.othello;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class BoardTest {
+    @Test
+    void initialMoves() {
+        var board = Board.initial();
+        assertEquals(Board.square(2, 3) | Board.square(3, 2) | Board.square(4, 5) | Board.square(5, 4),
+                board.legalMoves(0));
+        assertEquals(2, board.count(0));
+        assertEquals(2, board.count(1));
+    }
+
+    @Test
+    void applyAndUndo() {
+        var board = Board.initial();
+        var before = board.snapshot();
+        assertEquals(0, board.apply(0, 0));
+        assertEquals(before, board.snapshot());
+
+        var square = 2 * Board.SIZE + 3;
+        var flips = board.apply(0, square);
+        assertEquals(Board.square(3, 3), flips);
+        assertEquals(4, board.count(0));
+        assertEquals(1, board.count(1));
+        assertEquals(0, board.get(3 * Board.SIZE + 3));
+        assertEquals(board.snapshot(), before.apply(0, square, flips));
+        assertEquals(flips | 1L << square, before.diff(board.snapshot()));
+
+        board.undo(0, square, flips);
+        assertEquals(before, board.snapshot());
+    }
+
+    @Test
+    void flipsDoNotWrapAroundEdges() {
+        // a line from the last column of a row must not continue in the first column of the next
+        var board = new Board(Board.square(1, 1), Board.square(0, 7) | Board.square(1, 0));
+        assertEquals(0, board.flips(0, 6));
+        assertEquals(0, board.legalMoves(0) & 1L << 6);
+    }
+
+    /**
+     * Counts the leaf positions of the game tree, the reference values are well known for othello.
+     */
+    @Test
+    void perft() {
+        long[] expected = {1, 4, 12, 56, 244, 1396, 8200, 55092};
+        for (var depth = 0; depth < expected.length; depth++) {
+            assertEquals(expected[depth], perft(Board.initial(), 0, depth, false), "depth " + depth);
+        }
+    }
+
+    private static long perft(Board board, int player, int depth, boolean passed) {
+        if (depth == 0) {
+            return 1;
+        }
+        var moves = board.legalMoves(player);
+        if (moves == 0) {
+            // two passes in a row end the game
+            return passed ? 1 : perft(board, 1 - player, depth - 1, true);
+        }
+        var count = 0L;
+        while (moves != 0) {
+            var square = Long.numberOfTrailingZeros(moves);
+            moves &= moves - 1;
+            var flips = board.apply(player, square);
+            count += perft(board, 1 - player, depth - 1, false);
+            board.undo(player, square, flips);
+        }
+        return count;
+    }
+}
@@ -0,0 +1,122 @@
+package ch.zxseitz.tbsg.game.othello;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SearchEngineTest {
+    @Test
+    void parallelSearchMatchesMinimax() {
+        var random = new Random(42);
+        var table = new TranspositionTable(1);
+        var pool = new ForkJoinPool(4);
+        try {
+            for (var game = 0; game < 20; game++) {
+                var board = endgame(random, 9);
+                var own = board.getDiscs(0);
+                var opponent = board.getDiscs(1);
+                if (Board.legalMoves(own, opponent) == 0) {
+                    continue;
+                }
+                var empty = Long.bitCount(board.getEmpty());
+                // split at every node to exercise cancellation and the shared alpha
+                var search = new SearchTask.Search(table, 1, System.nanoTime() + TimeUnit.HOURS.toNanos(1), 0);
+                var task = new SearchTask(search, own, opponent, empty);
+                var score = pool.invoke(task);
+                assertEquals(minimax(own, opponent), (int) score);
+
+                var bit = 1L << task.getBestMove();
+                var flips = Board.flips(own, opponent, bit);
+                assertEquals((int) score, -minimax(opponent & ~flips, own | flips | bit));
+            }
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    @Test
+    void stopsAtTheTimeLimit() {
+        var engine = new SearchEngine(new SimpleMeterRegistry(), 2, 1, 4);
+        try {
+            var board = Board.initial();
+            var result = engine.search(board.snapshot(), 0, 50, SearchEngine.MAX_DEPTH);
+            assertTrue(result.getDepth() >= 1);
+            assertTrue(result.getNanos() < TimeUnit.SECONDS.toNanos(1));
+            assertTrue(board.flips(0, result.getMove()) != 0);
+        } finally {
+            engine.shutdown();
+        }
+    }
+
+    @Test
+    void passesWithoutLegalMove() {
+        var engine = new SearchEngine(new SimpleMeterRegistry(), 1, 1, 4);
+        try {
+            // white only, black has no disc left to move from
+            var board = new BoardSnapshot(0, Board.square(3, 3));
+            assertEquals(Board.PASS, engine.search(board, 0, 10, SearchEngine.MAX_DEPTH).getMove());
+        } finally {
+            engine.shutdown();
+        }
+    }
+
+    @Test
+    void tableKeepsEntries() {
+        var table = new TranspositionTable(1);
+        table.store(42, 19, 7, TranspositionTable.LOWER, -1234, 3);
+        var entry = table.probe(42);
+        assertEquals(19, TranspositionTable.move(entry));
+        assertEquals(7, TranspositionTable.depth(entry));
+        assertEquals(TranspositionTable.LOWER, TranspositionTable.bound(entry));
+        assertEquals(-1234, TranspositionTable.score(entry));
+        assertEquals(3, TranspositionTable.generation(entry));
+        assertEquals(0, table.probe(43));
+    }
+
+    private static Board endgame(Random random, int empty) {
+        var board = Board.initial();
+        var player = 0;
+        while (Long.bitCount(board.getEmpty()) > empty) {
+            var moves = board.legalMoves(player);
+            if (moves == 0) {
+                if (!board.hasLegalMove(1 - player)) {
+                    board = Board.initial();
+                    player = 0;
+                    continue;
+                }
+            } else {
+                var square = -1;
+                for (var skip = random.nextInt(Long.bitCount(moves)); skip >= 0; skip--) {
+                    square = Long.numberOfTrailingZeros(moves);
+                    moves &= moves - 1;
+                }
+                board.apply(player, square);
+            }
+            player = 1 - player;
+        }
+        // the searched side is always player 0
+        return player == 0 ? board : new Board(board.getDiscs(1), board.getDiscs(0));
+    }
+
+    private static int minimax(long own, long opponent) {
+        var moves = Board.legalMoves(own, opponent);
+        if (moves == 0) {
+            if (Board.legalMoves(opponent, own) == 0) {
+                return SearchTask.finalScore(own, opponent);
+            }
+            return -minimax(opponent, own);
+        }
+        var best = -SearchTask.INFINITY;
+        for (; moves != 0; moves &= moves - 1) {
+            var bit = Long.lowestOneBit(moves);
+            var flips = Board.flips(own, opponent, bit);
+            best = Math.max(best, -minimax(opponent & ~flips, own | flips | bit));
+        }
+        return best;
+    }
+}
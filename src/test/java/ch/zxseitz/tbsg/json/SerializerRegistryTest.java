@@ -0,0 +1,41 @@
+package ch.zxseitz.tbsg.json;
+
+import ch.zxseitz.tbsg.game.GameMessage;
+import ch.zxseitz.tbsg.model.Role;
+import ch.zxseitz.tbsg.model.User;
+import com.google.gson.GsonBuilder;
+import org.bson.types.ObjectId;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SerializerRegistryTest {
+    private final SerializerRegistry registry = new SerializerRegistry();
+
+    @Test
+    void writesLikeGsonWithStrategy() {
+        var strategy = new FieldBlacklistStrategy("password");
+        var gson = new GsonBuilder()
+                .setExclusionStrategies(strategy)
+                .registerTypeAdapter(ObjectId.class, new ObjectIdAdapter())
+                .create();
+        var user = new User(ObjectId.get(), "username", "user@zxseitz.ch", "hash", List.of(Role.User, Role.Admin));
+        var json = registry.getAdapter(User.class, new FieldBlacklistStrategy("password")).toJson(user);
+        assertEquals(gson.toJson(user), json);
+        assertFalse(json.contains("hash"));
+    }
+
+    @Test
+    void writesLikeGsonWithoutStrategy() {
+        var message = GameMessage.error(ObjectId.get(), "Unknown match");
+        assertEquals(registry.getGson().toJson(message), registry.getAdapter(GameMessage.class).toJson(message));
+    }
+
+    @Test
+    void cachesAdapters() {
+        assertSame(registry.getAdapter(User.class, new FieldWhitelistStrategy("id", "username")),
+                registry.getAdapter(User.class, new FieldWhitelistStrategy("username", "id")));
+    }
+}
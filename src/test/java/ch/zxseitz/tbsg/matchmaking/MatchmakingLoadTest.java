@@ -0,0 +1,101 @@
+package ch.zxseitz.tbsg.matchmaking;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.bson.types.ObjectId;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.LongAdder;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class MatchmakingLoadTest {
+    private static final Logger logger = LoggerFactory.getLogger(MatchmakingLoadTest.class);
+    private static final int PLAYERS = 50_000;
+    private static final int THREADS = 8;
+
+    /**
+     * Queues and pairs 50k players, enable with -Dtbsg.loadtest=true.
+     */
+    @Test
+    @EnabledIfSystemProperty(named = "tbsg.loadtest", matches = "true")
+    void pairsQueuedPlayers() throws Exception {
+        var paired = new ConcurrentHashMap<ObjectId, Boolean>();
+        var pairs = new LongAdder();
+        var service = new MatchmakingService((player1, player2) -> {
+            assertNull(paired.put(player1, true));
+            assertNull(paired.put(player2, true));
+            pairs.increment();
+        }, new SimpleMeterRegistry(), 10, 50);
+
+        var latch = new CountDownLatch(THREADS);
+        for (var t = 0; t < THREADS; t++) {
+            var random = new Random(t);
+            new Thread(() -> {
+                for (var i = 0; i < PLAYERS / THREADS; i++) {
+                    assertTrue(service.join(ObjectId.get(), 800 + random.nextInt(1600), random.nextInt(300)));
+                }
+                latch.countDown();
+            }).start();
+        }
+        latch.await();
+        assertEquals(PLAYERS, service.getQueued());
+
+        var start = System.nanoTime();
+        service.tick();
+        var firstTick = System.nanoTime() - start;
+        var deadline = System.currentTimeMillis() + 10_000;
+        while (pairs.sum() < PLAYERS / 2 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+            service.tick();
+        }
+        var total = System.nanoTime() - start;
+
+        assertEquals(PLAYERS / 2, pairs.sum());
+        assertEquals(0, service.getQueued());
+        logger.info(String.format("Paired %d players, first tick %.1f ms (%.0f pairs/s), all paired after %.1f ms",
+                PLAYERS, firstTick / 1e6, pairs.sum() / (total / 1e9), total / 1e6));
+    }
+
+    @Test
+    void leftPlayersAreNotPaired() {
+        var pairs = new LongAdder();
+        var service = new MatchmakingService((player1, player2) -> pairs.increment(),
+                new SimpleMeterRegistry(), 10, 50);
+        var player1 = ObjectId.get();
+        var player2 = ObjectId.get();
+        assertTrue(service.join(player1, 1500, 20));
+        assertFalse(service.join(player1, 1500, 20));
+        assertTrue(service.join(player2, 1500, 20));
+        assertTrue(service.leave(player1));
+        service.tick();
+        assertEquals(0, pairs.sum());
+        assertEquals(1, service.getQueued());
+    }
+
+    @Test
+    void waitingPlayersArePairedWithTheBot() throws InterruptedException {
+        var pairs = new LongAdder();
+        var bots = new ConcurrentHashMap<ObjectId, Boolean>();
+        var service = new MatchmakingService((player1, player2) -> pairs.increment(),
+                user -> bots.put(user, true), new SimpleMeterRegistry(), 10, 50, 100);
+        // far apart, the rating distance allowed after 100 ms does not reach
+        var player1 = ObjectId.get();
+        var player2 = ObjectId.get();
+        assertTrue(service.join(player1, 100, 20));
+        assertTrue(service.join(player2, 3500, 20));
+        service.tick();
+        assertTrue(bots.isEmpty());
+        Thread.sleep(120);
+        service.tick();
+        assertEquals(0, pairs.sum());
+        assertEquals(Set.of(player1, player2), bots.keySet());
+        assertEquals(0, service.getQueued());
+    }
+}
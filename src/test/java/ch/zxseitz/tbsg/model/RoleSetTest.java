@@ -0,0 +1,34 @@
+package ch.zxseitz.tbsg.model;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RoleSetTest {
+    @Test
+    void resolvesCanonicalInstances() {
+        var roles = RoleSet.of(Role.ADMIN | Role.USER);
+        assertEquals(List.of(Role.Admin, Role.User), roles);
+        assertSame(Role.Admin, roles.get(0));
+        assertSame(roles, RoleSet.of(roles.getMask()));
+        assertSame(roles, RoleSet.of(List.of(new SimpleGrantedAuthority("User"), Role.Admin)));
+    }
+
+    @Test
+    void testsBits() {
+        assertTrue(RoleSet.of(Role.ADMIN).has(Role.ADMIN));
+        assertFalse(RoleSet.of(Role.USER).has(Role.ADMIN));
+        assertTrue(RoleSet.of(Role.USER).has(Role.ADMIN | Role.USER));
+        assertTrue(RoleSet.of(0).isEmpty());
+    }
+
+    @Test
+    void ignoresUnknownRoles() {
+        assertEquals(0, Role.bit("Moderator"));
+        assertEquals(Role.USER, Role.mask(List.of(Role.User, new SimpleGrantedAuthority("Moderator"))));
+        assertEquals(RoleSet.of(Role.USER), RoleSet.of(Role.USER | 1 << 30));
+    }
+}
@@ -0,0 +1,150 @@
+package ch.zxseitz.tbsg.model.request;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+import java.util.function.Function;
+import java.util.function.Predicate;
+import java.util.regex.Pattern;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Compares the single pass checks against the reference patterns on generated input, seeded to be
+ * reproducible. Generators mix grammar fragments of valid input with characters near the class boundaries.
+ */
+class ValidatorPropertyTest {
+    private static final int RUNS = 200_000;
+
+    private static final String[] EMAIL_FRAGMENTS = {
+            "a", "z", "0", "9", "-", ".", "@", "\"", "\\", "[", "]", ":", "!", "#", "_", "~", "`", "{", "|",
+            "A", "Z", " ", "\t", "\n", "\r", "\u0000", "\u0001", "\u007f", "\u0080", "\u00e9",
+            "ab", "x-y", "..", "a.b", "\"q\"", "\\\"", "\\\t", "\\ ", "@a.b", "@[", "1.2.3.4", "255", "256",
+            "25", "199", "099", "1234", "ab:", "-a:", "a-:", "x:y", "]]"
+    };
+
+    @Test
+    void usernameMatchesReference() {
+        check(Validator.usernameRegex, Validator::checkUsername, random -> mutate(random,
+                randomString(random, 24, "aZ09_"), "-. @\u00e9\n"));
+    }
+
+    @Test
+    void passwordMatchesReference() {
+        check(Validator.passwordRegex, Validator::checkPassword, random -> mutate(random,
+                randomString(random, 24, "aZ09_@$!%*#?&"), "-. \n^\u00e9"));
+    }
+
+    @Test
+    void emailMatchesReference() {
+        check(Validator.emailRegex, Validator::checkEmail, ValidatorPropertyTest::randomEmail);
+    }
+
+    @Test
+    void rejectsOverlongInput() {
+        assertFalse(Validator.checkEmail("a@" + "a".repeat(Validator.MAX_EMAIL_LENGTH) + ".ch"));
+        assertFalse(Validator.checkUsername("a".repeat(Validator.MAX_USERNAME_LENGTH + 1)));
+        assertFalse(Validator.checkPassword("a1!".repeat(Validator.MAX_PASSWORD_LENGTH)));
+        assertFalse(Validator.checkEmail(null));
+        assertFalse(Validator.checkUsername(null));
+        assertFalse(Validator.checkPassword(null));
+    }
+
+    private static void check(Pattern reference, Predicate<String> check, Function<Random, String> generator) {
+        var random = new Random(5322);
+        var accepted = 0;
+        for (var i = 0; i < RUNS; i++) {
+            var input = generator.apply(random);
+            var expected = reference.matcher(input).matches();
+            assertEquals(expected, check.test(input), () -> String.format("Mismatch for \"%s\"", escape(input)));
+            if (expected) {
+                accepted++;
+            }
+        }
+        // the generators must cover both outcomes
+        assertTrue(accepted > RUNS / 100, "Too few accepted inputs generated");
+        assertTrue(accepted < RUNS - RUNS / 100, "Too few rejected inputs generated");
+    }
+
+    private static String randomString(Random random, int maxLength, String alphabet) {
+        var length = random.nextInt(maxLength + 1);
+        var builder = new StringBuilder(length);
+        for (var i = 0; i < length; i++) {
+            builder.append(alphabet.charAt(random.nextInt(alphabet.length())));
+        }
+        return builder.toString();
+    }
+
+    private static String mutate(Random random, String input, String alphabet) {
+        if (input.isEmpty() || random.nextBoolean()) {
+            return input;
+        }
+        var builder = new StringBuilder(input);
+        builder.setCharAt(random.nextInt(input.length()), alphabet.charAt(random.nextInt(alphabet.length())));
+        return builder.toString();
+    }
+
+    private static String randomEmail(Random random) {
+        var builder = new StringBuilder();
+        switch (random.nextInt(3)) {
+            case 0:
+                builder.append(randomString(random, 6, "ab0!.-")).append('@').append(randomHostname(random));
+                break;
+            case 1:
+                builder.append('"').append(randomString(random, 6, "a @\"\\\t\u0001")).append("\"@")
+                        .append(randomHostname(random));
+                break;
+            default:
+                builder.append("a@[").append(randomLiteral(random)).append(']');
+        }
+        var mutations = random.nextInt(3);
+        for (var i = 0; i < mutations; i++) {
+            var position = random.nextInt(builder.length() + 1);
+            var fragment = EMAIL_FRAGMENTS[random.nextInt(EMAIL_FRAGMENTS.length)];
+            if (random.nextBoolean() && position < builder.length()) {
+                builder.replace(position, position + 1, fragment);
+            } else {
+                builder.insert(position, fragment);
+            }
+        }
+        return builder.toString();
+    }
+
+    private static String randomHostname(Random random) {
+        var labels = 1 + random.nextInt(3);
+        var builder = new StringBuilder();
+        for (var i = 0; i < labels; i++) {
+            if (i > 0) {
+                builder.append('.');
+            }
+            builder.append(randomString(random, 4, "ab09-"));
+        }
+        return builder.toString();
+    }
+
+    private static String randomLiteral(Random random) {
+        var builder = new StringBuilder();
+        for (var i = 0; i < 3; i++) {
+            builder.append(random.nextInt(300)).append('.');
+        }
+        if (random.nextBoolean()) {
+            builder.append(random.nextInt(300));
+        } else {
+            builder.append(randomString(random, 3, "a0-")).append(':')
+                    .append(randomString(random, 5, "a]\\ \t[\u0001\u007f"));
+        }
+        return builder.toString();
+    }
+
+    private static String escape(String input) {
+        var builder = new StringBuilder();
+        for (var c : input.toCharArray()) {
+            if (c < 0x20 || c > 0x7e) {
+                builder.append(String.format("\\u%04x", (int) c));
+            } else {
+                builder.append(c);
+            }
+        }
+        return builder.toString();
+    }
+}
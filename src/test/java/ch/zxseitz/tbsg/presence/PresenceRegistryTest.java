@@ -0,0 +1,155 @@
+package ch.zxseitz.tbsg.presence;
+
+import ch.zxseitz.tbsg.game.GameMessage;
+import ch.zxseitz.tbsg.game.IPlayerConnection;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.bson.types.ObjectId;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PresenceRegistryTest {
+    @Test
+    void matchesHashMap() {
+        // a single shard grows and shifts the most
+        var registry = new PresenceRegistry(new SimpleMeterRegistry(), 1, 1000, 3000);
+        var expected = new HashMap<ObjectId, IPlayerConnection>();
+        var users = new ArrayList<ObjectId>();
+        for (var i = 0; i < 5000; i++) {
+            users.add(ObjectId.get());
+        }
+        var random = new Random(42);
+        for (var i = 0; i < 50000; i++) {
+            var user = users.get(random.nextInt(users.size()));
+            if (random.nextInt(3) == 0) {
+                var connection = expected.get(user);
+                assertEquals(connection != null, registry.disconnect(user, connection));
+                expected.remove(user);
+            } else {
+                var connection = new Connection();
+                var previous = registry.connect(user, connection);
+                assertEquals(expected.put(user, connection), previous != null ? previous.getConnection() : null);
+            }
+        }
+        assertEquals(expected.size(), registry.size());
+        for (var user : users) {
+            assertEquals(expected.get(user), registry.getConnection(user));
+        }
+        assertEquals(expected.size(), registry.getOnline(users).size());
+    }
+
+    @Test
+    void keepsNewerConnection() {
+        var registry = new PresenceRegistry(new SimpleMeterRegistry(), 4, 1000, 3000);
+        var user = ObjectId.get();
+        var first = new Connection();
+        var second = new Connection();
+        registry.connect(user, first);
+        assertSame(first, registry.connect(user, second).getConnection());
+        // the replaced session closes after the new one connected
+        assertFalse(registry.disconnect(user, first));
+        assertSame(second, registry.getConnection(user));
+
+        var match = ObjectId.get();
+        registry.setMatch(user, match);
+        assertEquals(match, registry.get(user).getMatch());
+        assertTrue(registry.getOnline(List.of(ObjectId.get())).isEmpty());
+    }
+
+    @Test
+    void pingsSilentAndClosesExpiredConnections() {
+        var registry = new PresenceRegistry(new SimpleMeterRegistry(), 4, 1000, 3000);
+        var silent = ObjectId.get();
+        var active = ObjectId.get();
+        var silentConnection = new Connection();
+        var activeConnection = new Connection();
+        registry.connect(silent, silentConnection);
+        registry.connect(active, activeConnection);
+        var connectedAt = registry.get(silent).getConnectedAt();
+
+        registry.heartbeat(active, activeConnection);
+        registry.sweep(connectedAt + 1500);
+        assertEquals(1, silentConnection.pings);
+        assertEquals(1, activeConnection.pings);
+
+        registry.get(active).touch(connectedAt + 2500);
+        registry.sweep(connectedAt + 3000);
+        assertTrue(silentConnection.closed);
+        assertNull(registry.get(silent));
+        assertFalse(activeConnection.closed);
+        assertEquals(1, activeConnection.pings);
+        assertEquals(1, registry.size());
+    }
+
+    @Test
+    void replacedConnectionIsNoHeartbeat() {
+        var registry = new PresenceRegistry(new SimpleMeterRegistry(), 4, 1000, 3000);
+        var user = ObjectId.get();
+        var first = new Connection();
+        var second = new Connection();
+        registry.connect(user, first);
+        registry.connect(user, second);
+        var connectedAt = registry.get(user).getConnectedAt();
+
+        registry.heartbeat(user, first);
+        assertEquals(connectedAt, registry.get(user).getLastSeen());
+        registry.sweep(connectedAt + 3000);
+        assertTrue(second.closed);
+        assertNull(registry.get(user));
+    }
+
+    @Test
+    void failingConnectionDoesNotAbortTheSweep() {
+        // one shard, so all users are swept in the same pass
+        var registry = new PresenceRegistry(new SimpleMeterRegistry(), 1, 1000, 3000);
+        var connections = new ArrayList<Connection>();
+        for (var i = 0; i < 10; i++) {
+            var connection = new Connection();
+            connection.failing = i % 2 == 0;
+            connections.add(connection);
+            registry.connect(ObjectId.get(), connection);
+        }
+        var connectedAt = System.currentTimeMillis();
+
+        registry.sweep(connectedAt + 1500);
+        for (var connection : connections) {
+            assertEquals(1, connection.pings);
+        }
+        registry.sweep(connectedAt + 4000);
+        assertEquals(0, registry.size());
+        for (var connection : connections) {
+            assertTrue(connection.closed);
+        }
+    }
+
+    private static class Connection implements IPlayerConnection {
+        int pings;
+        boolean closed;
+        boolean failing;
+
+        @Override
+        public void send(GameMessage message) {
+        }
+
+        @Override
+        public void ping() {
+            pings++;
+            if (failing) {
+                throw new IllegalStateException("Session closed");
+            }
+        }
+
+        @Override
+        public void close() {
+            closed = true;
+            if (failing) {
+                throw new IllegalStateException("Session closed");
+            }
+        }
+    }
+}
@@ -0,0 +1,117 @@
+package ch.zxseitz.tbsg.ranking;
+
+import org.bson.types.ObjectId;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class LeaderboardTest {
+    @Test
+    void matchesSortedRatings() {
+        var random = new Random(42);
+        var ratings = new HashMap<ObjectId, Integer>();
+        for (var i = 0; i < 2000; i++) {
+            ratings.put(ObjectId.get(), 1300 + random.nextInt(400));
+        }
+        var leaderboard = new Leaderboard();
+        leaderboard.rebuild(new HashMap<>(ratings).entrySet().iterator());
+        var players = new ArrayList<>(ratings.keySet());
+        for (var i = 0; i < 5000; i++) {
+            var player = players.get(random.nextInt(players.size()));
+            if (random.nextInt(10) == 0) {
+                leaderboard.remove(player);
+                ratings.remove(player);
+            } else {
+                var rating = 1300 + random.nextInt(400);
+                leaderboard.update(player, rating);
+                ratings.put(player, rating);
+            }
+        }
+
+        var expected = sorted(ratings);
+        assertEquals(expected.size(), leaderboard.size());
+        assertEquals(expected, ids(leaderboard.getPage(0, expected.size())));
+        assertEquals(expected.subList(150, 250), ids(leaderboard.getPage(150, 100)));
+        assertEquals(expected.subList(expected.size() - 3, expected.size()),
+                ids(leaderboard.getPage(expected.size() - 3, 100)));
+        assertTrue(leaderboard.getPage(expected.size(), 10).isEmpty());
+
+        for (var i = 0; i < expected.size(); i += 37) {
+            var player = expected.get(i);
+            var rank = leaderboard.getRank(player);
+            var rating = ratings.get(player);
+            assertEquals((int) rating, rank.getRating());
+            assertEquals(1 + ratings.values().stream().filter(r -> r > rating).count(), rank.getRank());
+            assertEquals(expected.subList(Math.max(0, i - 5), Math.min(expected.size(), i + 6)),
+                    ids(leaderboard.getAround(player, 5)));
+        }
+    }
+
+    @Test
+    void pagesWithinOneRating() {
+        var ratings = new HashMap<ObjectId, Integer>();
+        for (var i = 0; i < 20000; i++) {
+            ratings.put(ObjectId.get(), 1500);
+        }
+        var top = ObjectId.get();
+        ratings.put(top, 1600);
+        var leaderboard = new Leaderboard();
+        leaderboard.rebuild(new HashMap<>(ratings).entrySet().iterator());
+        var expected = sorted(ratings);
+        assertEquals(expected.subList(12345, 12355), ids(leaderboard.getPage(12345, 10)));
+        assertEquals(expected.subList(0, 3), ids(leaderboard.getPage(0, 3)));
+        assertEquals(2, leaderboard.getPage(12345, 10).get(0).getRank());
+        var player = expected.get(9000);
+        assertEquals(expected.subList(8996, 9005), ids(leaderboard.getAround(player, 4)));
+        assertEquals(expected.subList(0, 4), ids(leaderboard.getAround(expected.get(1), 2)));
+        leaderboard.remove(expected.get(9001));
+        assertEquals(expected.get(9002), leaderboard.getPage(9001, 1).get(0).getPlayer());
+    }
+
+    @Test
+    void sharesRanksAndClampsRatings() {
+        var leaderboard = new Leaderboard();
+        var a = ObjectId.get();
+        var b = ObjectId.get();
+        var c = ObjectId.get();
+        leaderboard.update(a, 1600);
+        leaderboard.update(b, 1600);
+        leaderboard.update(c, -20);
+        assertEquals(1, leaderboard.getRank(a).getRank());
+        assertEquals(1, leaderboard.getRank(b).getRank());
+        assertEquals(3, leaderboard.getRank(c).getRank());
+        assertEquals(0, leaderboard.getRating(c, 1500));
+        assertEquals(1500, leaderboard.getRating(ObjectId.get(), 1500));
+        assertNull(leaderboard.getRank(ObjectId.get()));
+        assertTrue(leaderboard.getAround(ObjectId.get(), 3).isEmpty());
+    }
+
+    @Test
+    void eloIsZeroSumAndFavoursTheUnderdog() {
+        assertEquals(16, RatingService.delta(1500, 1500, 1.0, 32));
+        assertEquals(0, RatingService.delta(1500, 1500, 0.5, 32));
+        assertEquals(-16, RatingService.delta(1500, 1500, 0.0, 32));
+        assertTrue(RatingService.delta(1400, 1600, 1.0, 32) > 16);
+        assertEquals(-RatingService.delta(1400, 1600, 1.0, 32), RatingService.delta(1600, 1400, 0.0, 32));
+    }
+
+    private static List<ObjectId> sorted(Map<ObjectId, Integer> ratings) {
+        return ratings.entrySet().stream()
+                .sorted(Comparator.<Map.Entry<ObjectId, Integer>>comparingInt(Map.Entry::getValue).reversed()
+                        .thenComparing(Map.Entry::getKey))
+                .map(Map.Entry::getKey)
+                .collect(Collectors.toList());
+    }
+
+    private static List<ObjectId> ids(List<Rank> ranks) {
+        return ranks.stream().map(Rank::getPlayer).collect(Collectors.toList());
+    }
+}
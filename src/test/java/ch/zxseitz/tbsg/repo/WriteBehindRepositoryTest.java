@@ -0,0 +1,180 @@
+package ch.zxseitz.tbsg.repo;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.bson.types.ObjectId;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class WriteBehindRepositoryTest {
+    @Test
+    void coalescesWritesPerId() {
+        var store = new MemoryRepository();
+        var a = ObjectId.get();
+        var b = ObjectId.get();
+        var c = ObjectId.get();
+        try (var repository = repository(store, WriteBehindRepository.Mode.ASYNC)) {
+            repository.insert(new Item(a, "a0"));
+            repository.update(a, new Item(a, "a1"));
+            repository.update(a, new Item(a, "a2"));
+            repository.insert(new Item(b, "b0"));
+            repository.delete(b);
+            repository.delete(c);
+            assertEquals(3, repository.pending());
+            assertTrue(store.calls.isEmpty());
+            repository.flush();
+            assertEquals(List.of("deleteAll 2", "insertAll 1", "updateAll 1"), store.calls);
+            assertEquals("a2", store.items.get(a).value);
+            assertFalse(store.items.containsKey(b));
+        }
+    }
+
+    @Test
+    void deleteBeforeInsertReplaces() {
+        var store = new MemoryRepository();
+        var id = ObjectId.get();
+        store.items.put(id, new Item(id, "old"));
+        try (var repository = repository(store, WriteBehindRepository.Mode.ASYNC)) {
+            repository.delete(id);
+            repository.insert(new Item(id, "new"));
+            assertEquals("new", repository.get(id).orElseThrow().value);
+            assertEquals(List.of("deleteAll 1", "insertAll 1"), store.calls);
+        }
+    }
+
+    @Test
+    void closeFlushes() {
+        var store = new MemoryRepository();
+        var repository = repository(store, WriteBehindRepository.Mode.ASYNC);
+        for (var i = 0; i < 100; i++) {
+            repository.insert(new Item(ObjectId.get(), "item"));
+        }
+        repository.close();
+        assertEquals(100, store.items.size());
+        assertThrows(IllegalStateException.class, () -> repository.insert(new Item(ObjectId.get(), "late")));
+    }
+
+    @Test
+    void rejectsInsertsWithoutId() {
+        var store = new MemoryRepository();
+        try (var repository = repository(store, WriteBehindRepository.Mode.ASYNC)) {
+            // would share one buffered write under the null id
+            assertThrows(IllegalArgumentException.class, () -> repository.insert(new Item(null, "item")));
+            assertEquals(0, repository.pending());
+        }
+    }
+
+    @Test
+    void groupCommitWaitsForTheWrite() {
+        var store = new MemoryRepository();
+        try (var repository = repository(store, WriteBehindRepository.Mode.GROUP_COMMIT)) {
+            var id = ObjectId.get();
+            repository.insert(new Item(id, "item"));
+            assertTrue(store.items.containsKey(id));
+            assertEquals(0, repository.pending());
+
+            store.failing = true;
+            assertThrows(IllegalStateException.class, () -> repository.insert(new Item(ObjectId.get(), "item")));
+        }
+    }
+
+    private static WriteBehindRepository<Item> repository(MemoryRepository store, WriteBehindRepository.Mode mode) {
+        return new WriteBehindRepository<>("test", store, item -> item.id, mode, 1000, 10000, 60000,
+                new SimpleMeterRegistry());
+    }
+
+    private static class Item {
+        private final ObjectId id;
+        private final String value;
+
+        private Item(ObjectId id, String value) {
+            this.id = id;
+            this.value = value;
+        }
+    }
+
+    private static class MemoryRepository implements IRepository<Item> {
+        private final Map<ObjectId, Item> items = new HashMap<>();
+        private final List<String> calls = new ArrayList<>();
+        private volatile boolean failing;
+
+        @Override
+        public synchronized void insert(Item item) {
+            items.put(item.id, item);
+        }
+
+        @Override
+        public synchronized List<Item> getAll() {
+            return new ArrayList<>(items.values());
+        }
+
+        @Override
+        public synchronized Optional<Item> get(ObjectId id) {
+            return Optional.ofNullable(items.get(id));
+        }
+
+        @Override
+        public synchronized void update(ObjectId id, Item item) {
+            items.replace(id, item);
+        }
+
+        @Override
+        public synchronized void delete(ObjectId id) {
+            items.remove(id);
+        }
+
+        @Override
+        public synchronized List<Item> getPage(ObjectId after, int limit) {
+            return stream(after).limit(limit).collect(Collectors.toList());
+        }
+
+        @Override
+        public synchronized Stream<Item> stream(ObjectId after) {
+            return getAll().stream()
+                    .filter(item -> after == null || item.id.compareTo(after) > 0)
+                    .sorted((i1, i2) -> i1.id.compareTo(i2.id));
+        }
+
+        @Override
+        public synchronized BulkResult insertAll(List<Item> items) {
+            check("insertAll", items.size());
+            items.forEach(this::insert);
+            return new BulkResult(items.size(), items.size(), Map.of());
+        }
+
+        @Override
+        public synchronized List<Item> getAll(Collection<ObjectId> ids) {
+            return ids.stream().map(items::get).filter(item -> item != null).collect(Collectors.toList());
+        }
+
+        @Override
+        public synchronized BulkResult updateAll(Map<ObjectId, Item> items) {
+            check("updateAll", items.size());
+            items.forEach(this::update);
+            return new BulkResult(items.size(), items.size(), Map.of());
+        }
+
+        @Override
+        public synchronized BulkResult deleteAll(Collection<ObjectId> ids) {
+            check("deleteAll", ids.size());
+            ids.forEach(this::delete);
+            return new BulkResult(ids.size(), ids.size(), Map.of());
+        }
+
+        private void check(String operation, int size) {
+            if (failing) {
+                throw new IllegalStateException("failing");
+            }
+            calls.add(operation + " " + size);
+        }
+    }
+}
@@ -0,0 +1,184 @@
+package ch.zxseitz.tbsg.repo.cache;
+
+import ch.zxseitz.tbsg.model.User;
+import ch.zxseitz.tbsg.repo.BulkResult;
+import ch.zxseitz.tbsg.repo.IUserRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.bson.types.ObjectId;
+import org.junit.jupiter.api.Test;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CachingUserRepositoryTest {
+    @Test
+    void cachesLoads() {
+        var store = new MemoryRepository();
+        var user = store.add("alice");
+        var repository = repository(store);
+        assertEquals("alice", repository.get(user.id).orElseThrow().getUsername());
+        assertEquals("alice", repository.get(user.id).orElseThrow().getUsername());
+        assertEquals("alice", repository.getByUsername("alice").orElseThrow().getUsername());
+        assertEquals(1, store.loads);
+    }
+
+    @Test
+    void doesNotCacheLoadRacingWithWriteOfSameUser() {
+        var store = new MemoryRepository();
+        var user = store.add("alice");
+        var repository = repository(store);
+        // the write commits and invalidates while the load still holds the old user
+        store.duringLoad = () -> repository.update(user.id, new User(user.id, "alice2", null, null, List.of()));
+        assertEquals("alice", repository.get(user.id).orElseThrow().getUsername());
+        store.duringLoad = null;
+        assertEquals("alice2", repository.get(user.id).orElseThrow().getUsername());
+        assertEquals(2, store.loads);
+    }
+
+    @Test
+    void cachesLoadRacingWithWriteOfOtherUser() {
+        var store = new MemoryRepository();
+        var user = store.add("alice");
+        var other = store.add("bob");
+        var repository = repository(store);
+        store.duringLoad = () -> repository.update(other.id, new User(other.id, "bob2", null, null, List.of()));
+        repository.get(user.id);
+        store.duringLoad = null;
+        repository.get(user.id);
+        assertEquals(1, store.loads);
+    }
+
+    @Test
+    void invalidationDropsUsersWrittenAroundTheCache() {
+        var store = new MemoryRepository();
+        var user = store.add("alice");
+        var repository = repository(store);
+        assertEquals("alice", repository.getByUsername("alice").orElseThrow().getUsername());
+        // like a delete through the reactive repository
+        store.users.remove(user.id);
+        assertTrue(repository.get(user.id).isPresent());
+        repository.invalidate(user.id);
+        assertTrue(repository.get(user.id).isEmpty());
+        assertTrue(repository.getByUsername("alice").isEmpty());
+    }
+
+    @Test
+    void failedInsertWithoutIdKeepsException() {
+        var store = new MemoryRepository();
+        var repository = repository(store);
+        var user = new User(null, "alice", null, null, List.of());
+        assertThrows(IllegalStateException.class, () -> repository.insert(user));
+    }
+
+    private static CachingUserRepository repository(IUserRepository store) {
+        return new CachingUserRepository(store, 100, 60000, new SimpleMeterRegistry());
+    }
+
+    private static class MemoryRepository implements IUserRepository {
+        private final Map<ObjectId, User> users = new HashMap<>();
+        private Runnable duringLoad;
+        private int loads;
+
+        User add(String username) {
+            var user = new User(ObjectId.get(), username, null, null, List.of());
+            users.put(user.id, user);
+            return user;
+        }
+
+        private Optional<User> load(Optional<User> user) {
+            loads++;
+            if (duringLoad != null) {
+                duringLoad.run();
+            }
+            return user;
+        }
+
+        @Override
+        public void insert(User user) {
+            if (user.id == null) {
+                throw new IllegalStateException("rejected");
+            }
+            users.put(user.id, user);
+        }
+
+        @Override
+        public Optional<User> get(ObjectId id) {
+            return load(Optional.ofNullable(users.get(id)));
+        }
+
+        @Override
+        public Optional<User> getByUsername(String username) {
+            return load(users.values().stream().filter(user -> username.equals(user.getUsername())).findFirst());
+        }
+
+        @Override
+        public Optional<User> getByEmail(String email) {
+            return load(users.values().stream().filter(user -> email.equals(user.getEmail())).findFirst());
+        }
+
+        @Override
+        public Optional<User> getCredentials(String username) {
+            return getByUsername(username);
+        }
+
+        @Override
+        public Optional<User> getProfile(ObjectId id) {
+            return get(id);
+        }
+
+        @Override
+        public void update(ObjectId id, User user) {
+            users.put(id, user);
+        }
+
+        @Override
+        public void updateRating(ObjectId id, int rating) {
+        }
+
+        @Override
+        public void delete(ObjectId id) {
+            users.remove(id);
+        }
+
+        @Override
+        public List<User> getAll() {
+            return List.copyOf(users.values());
+        }
+
+        @Override
+        public List<User> getPage(ObjectId after, int limit) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public Stream<User> stream(ObjectId after) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public BulkResult insertAll(List<User> users) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public List<User> getAll(Collection<ObjectId> ids) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public BulkResult updateAll(Map<ObjectId, User> users) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public BulkResult deleteAll(Collection<ObjectId> ids) {
+            throw new UnsupportedOperationException();
+        }
+    }
+}
@@ -0,0 +1,110 @@
+package ch.zxseitz.tbsg.repo.mongo;
+
+import ch.zxseitz.tbsg.TbsgApplication;
+import ch.zxseitz.tbsg.game.Match;
+import ch.zxseitz.tbsg.game.othello.Board;
+import ch.zxseitz.tbsg.model.MatchSnapshot;
+import ch.zxseitz.tbsg.model.MatchTurn;
+import ch.zxseitz.tbsg.repo.IMatchLog;
+import org.bson.types.ObjectId;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.data.mongodb.core.MongoTemplate;
+
+import java.util.ArrayList;
+import java.util.Random;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.springframework.data.mongodb.core.query.Criteria.where;
+import static org.springframework.data.mongodb.core.query.Query.query;
+
+/**
+ * Appends random games from several threads, like the match actors do, and restores them afterwards. Needs
+ * the database of mongo.properties, enable with -Dtbsg.loadtest=true.
+ */
+@EnabledIfSystemProperty(named = "tbsg.loadtest", matches = "true")
+class MatchLogLoadTest {
+    private static final Logger logger = LoggerFactory.getLogger(MatchLogLoadTest.class);
+    private static final int MATCHES = 2_000;
+    private static final int TURNS_PER_MATCH = 40;
+    private static final int THREADS = 8;
+    private static final int SNAPSHOT_INTERVAL = 16;
+
+    @Test
+    void appendAndRecover() throws Exception {
+        var context = new SpringApplicationBuilder(TbsgApplication.class).properties("server.port=0").run();
+        var matchLog = context.getBean("mongo_match_log", IMatchLog.class);
+        var mongoTemplate = context.getBean(MongoTemplate.class);
+        var expected = new ConcurrentHashMap<ObjectId, Match>();
+        try {
+            var appended = new LongAdder();
+            var latch = new CountDownLatch(THREADS);
+            var start = System.nanoTime();
+            for (var t = 0; t < THREADS; t++) {
+                var random = new Random(t);
+                new Thread(() -> {
+                    for (var i = 0; i < MATCHES / THREADS; i++) {
+                        var match = new Match(ObjectId.get(), ObjectId.get(), ObjectId.get());
+                        matchLog.snapshot(match);
+                        while (match.getTurn() < TURNS_PER_MATCH && !match.isFinished()) {
+                            var player = match.getCurrent();
+                            var turn = match.getTurn();
+                            var move = randomMove(match.getBoard().legalMoves(player), random);
+                            match.apply(player, turn, move);
+                            matchLog.append(match, turn, player, move);
+                            if (match.getTurn() % SNAPSHOT_INTERVAL == 0) {
+                                matchLog.snapshot(match);
+                            }
+                            appended.increment();
+                        }
+                        expected.put(match.getId(), match);
+                    }
+                    latch.countDown();
+                }).start();
+            }
+            latch.await();
+            matchLog.flush();
+            var appendNanos = System.nanoTime() - start;
+
+            start = System.nanoTime();
+            var recovered = matchLog.recover().stream()
+                    .filter(match -> expected.containsKey(match.getId()))
+                    .collect(Collectors.toMap(Match::getId, match -> match));
+            var recoverNanos = System.nanoTime() - start;
+
+            var unfinished = expected.values().stream().filter(match -> !match.isFinished()).count();
+            assertEquals(unfinished, recovered.size());
+            for (var match : recovered.values()) {
+                var original = expected.get(match.getId());
+                assertEquals(original.getTurn(), match.getTurn());
+                assertEquals(original.getCurrent(), match.getCurrent());
+                assertEquals(original.getBoard(), match.getBoard());
+            }
+            logger.info(String.format("Appended %d turns in %.1f ms (%.0f turns/s), recovered %d matches in %.1f ms",
+                    appended.sum(), appendNanos / 1e6, appended.sum() / (appendNanos / 1e9),
+                    recovered.size(), recoverNanos / 1e6));
+        } finally {
+            var ids = new ArrayList<>(expected.keySet());
+            mongoTemplate.remove(query(where("match").in(ids)), MatchTurn.class);
+            mongoTemplate.remove(query(where("_id").in(ids)), MatchSnapshot.class);
+            context.close();
+        }
+    }
+
+    private static int randomMove(long legal, Random random) {
+        if (legal == 0) {
+            return Board.PASS;
+        }
+        for (var skip = random.nextInt(Long.bitCount(legal)); skip > 0; skip--) {
+            legal &= legal - 1;
+        }
+        return Long.numberOfTrailingZeros(legal);
+    }
+}
@@ -0,0 +1,441 @@
+package ch.zxseitz.tbsg.repo.mongo;
+
+import ch.zxseitz.tbsg.game.Match;
+import ch.zxseitz.tbsg.game.MoveResult;
+import ch.zxseitz.tbsg.game.othello.Board;
+import ch.zxseitz.tbsg.game.othello.BoardSnapshot;
+import ch.zxseitz.tbsg.model.MatchSnapshot;
+import ch.zxseitz.tbsg.model.MatchTurn;
+import com.mongodb.ClientSessionOptions;
+import com.mongodb.MongoBulkWriteException;
+import com.mongodb.ServerAddress;
+import com.mongodb.bulk.BulkWriteError;
+import com.mongodb.bulk.BulkWriteResult;
+import com.mongodb.client.ClientSession;
+import com.mongodb.client.MongoDatabase;
+import com.mongodb.client.result.DeleteResult;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.bson.BsonDocument;
+import org.bson.Document;
+import org.bson.types.ObjectId;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.dao.support.PersistenceExceptionTranslator;
+import org.springframework.data.mongodb.BulkOperationException;
+import org.springframework.data.mongodb.MongoDatabaseFactory;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.FindAndReplaceOptions;
+import org.springframework.data.mongodb.core.MongoExceptionTranslator;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.index.IndexDefinition;
+import org.springframework.data.mongodb.core.index.IndexInfo;
+import org.springframework.data.mongodb.core.index.IndexOperations;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.data.util.CloseableIterator;
+import org.springframework.data.util.Pair;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Objects;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class MongoMatchLogTest {
+    private MemoryTemplate template;
+    private SimpleMeterRegistry meterRegistry;
+    private MongoMatchLog matchLog;
+
+    @BeforeEach
+    void start() {
+        template = new MemoryTemplate();
+        meterRegistry = new SimpleMeterRegistry();
+        matchLog = new MongoMatchLog(template, meterRegistry, 1000, 100);
+        matchLog.start();
+    }
+
+    @AfterEach
+    void stop() throws InterruptedException {
+        matchLog.shutdown();
+    }
+
+    @Test
+    void recoverReplaysTheTurnsAfterTheSnapshot() {
+        var match = new Match(ObjectId.get(), ObjectId.get(), ObjectId.get());
+        var turns = play(match, 4);
+        template.snapshots.add(MatchSnapshot.of(match));
+        turns.addAll(play(match, 4));
+        // turns 2 and 3 are covered by the snapshot, but not compacted yet
+        template.turns.addAll(turns.subList(2, turns.size()));
+
+        var recovered = matchLog.recover();
+        assertEquals(1, recovered.size());
+        assertEquals(8, recovered.get(0).getTurn());
+        assertEquals(match.getCurrent(), recovered.get(0).getCurrent());
+        assertEquals(match.getBoard(), recovered.get(0).getBoard());
+    }
+
+    @Test
+    void recoverQuarantinesMatchesWithAGap() throws InterruptedException {
+        var match = new Match(ObjectId.get(), ObjectId.get(), ObjectId.get());
+        template.snapshots.add(MatchSnapshot.of(match));
+        var turns = play(match, 6);
+        template.turns.addAll(turns.subList(0, 3));
+        template.turns.addAll(turns.subList(4, 6));
+        var other = new Match(ObjectId.get(), ObjectId.get(), ObjectId.get());
+        template.snapshots.add(MatchSnapshot.of(other));
+        template.turns.addAll(play(other, 4));
+
+        var recovered = matchLog.recover();
+        assertEquals(1, recovered.size());
+        assertEquals(other.getId(), recovered.get(0).getId());
+        assertEquals(4, recovered.get(0).getTurn());
+        // left for inspection
+        matchLog.flush();
+        assertEquals(2, template.snapshots.size());
+        assertEquals(List.of(0, 1, 2, 4, 5), turns(match.getId()));
+    }
+
+    @Test
+    void recoverRemovesMatchesFinishedByTheReplay() throws InterruptedException {
+        var match = new Match(ObjectId.get(), ObjectId.get(), ObjectId.get());
+        template.snapshots.add(MatchSnapshot.of(match));
+        template.turns.addAll(play(match, Integer.MAX_VALUE));
+        assertTrue(match.isFinished());
+
+        assertTrue(matchLog.recover().isEmpty());
+        matchLog.flush();
+        assertTrue(template.snapshots.isEmpty());
+        assertTrue(template.turns.isEmpty());
+    }
+
+    @Test
+    void writeSkipsTurnsOfAFailedAttempt() throws InterruptedException {
+        var match = new Match(ObjectId.get(), ObjectId.get(), ObjectId.get());
+        // the first attempt writes half of the turns and fails, the retry hits their unique index
+        template.failures = 1;
+        for (var turn = 0; turn < 10; turn++) {
+            matchLog.append(match, turn, turn % 2, turn);
+        }
+        matchLog.flush();
+
+        assertEquals(10, template.turns.size());
+        assertEquals(10, template.turns.stream().map(MatchTurn::getTurn).distinct().count());
+        assertEquals(1, meterRegistry.counter("tbsg.matchlog.failures").count());
+    }
+
+    @Test
+    void snapshotCompactsTheCoveredTurns() throws InterruptedException {
+        var match = new Match(ObjectId.get(), ObjectId.get(), ObjectId.get());
+        var other = new Match(ObjectId.get(), ObjectId.get(), ObjectId.get());
+        for (var turn : play(match, 8)) {
+            matchLog.append(match, turn.getTurn(), turn.getPlayer(), turn.getMove());
+            matchLog.append(other, turn.getTurn(), turn.getPlayer(), turn.getMove());
+            if (turn.getTurn() == 5) {
+                matchLog.snapshot(new Match(match.getId(), match.getPlayer(0), match.getPlayer(1),
+                        match.getBoard().snapshot(), 6, 0, false));
+            }
+        }
+        matchLog.flush();
+        assertEquals(1, template.snapshots.size());
+        assertEquals(List.of(6, 7), turns(match.getId()));
+        assertEquals(8, turns(other.getId()).size());
+
+        var finished = finished();
+        matchLog.append(finished, 0, 0, Board.PASS);
+        matchLog.snapshot(finished);
+        matchLog.flush();
+        assertEquals(1, template.snapshots.size());
+        assertTrue(turns(finished.getId()).isEmpty());
+    }
+
+    private List<Integer> turns(ObjectId match) {
+        return template.turns.stream()
+                .filter(turn -> turn.getMatch().equals(match))
+                .map(MatchTurn::getTurn)
+                .sorted()
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * Plays up to count turns with the first legal move, returns them as log entries.
+     */
+    private static List<MatchTurn> play(Match match, int count) {
+        var turns = new ArrayList<MatchTurn>();
+        while (turns.size() < count && !match.isFinished()) {
+            var player = match.getCurrent();
+            var turn = match.getTurn();
+            var legal = match.getBoard().legalMoves(player);
+            var move = legal != 0 ? Long.numberOfTrailingZeros(legal) : Board.PASS;
+            assertEquals(MoveResult.OK, match.apply(player, turn, move));
+            turns.add(new MatchTurn(ObjectId.get(), match.getId(), turn, player, move));
+        }
+        return turns;
+    }
+
+    private static Match finished() {
+        return new Match(ObjectId.get(), ObjectId.get(), ObjectId.get(), new BoardSnapshot(-1L, 0L), 60, 0, true);
+    }
+
+    /**
+     * Template on two in-memory collections, understands the few queries of the match log. Fails the given
+     * number of turn inserts after writing the first half of them.
+     */
+    private static final class MemoryTemplate extends MongoTemplate {
+        private final List<MatchSnapshot> snapshots = new ArrayList<>();
+        private final List<MatchTurn> turns = new ArrayList<>();
+        private volatile int failures;
+
+        MemoryTemplate() {
+            super(new NoDatabase());
+        }
+
+        @Override
+        public IndexOperations indexOps(Class<?> entityClass) {
+            return new NoIndexes();
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public synchronized <T> List<T> find(Query query, Class<T> entityClass) {
+            return (List<T>) collection(entityClass).stream()
+                    .filter(entity -> matches(query.getQueryObject(), entity))
+                    .collect(Collectors.toList());
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public synchronized <T> CloseableIterator<T> stream(Query query, Class<T> entityType) {
+            var iterator = ((List<MatchTurn>) find(query, entityType)).stream()
+                    .sorted(Comparator.comparing(MatchTurn::getMatch).thenComparing(MatchTurn::getTurn))
+                    .map(turn -> (T) turn)
+                    .iterator();
+            return new CloseableIterator<>() {
+                @Override
+                public boolean hasNext() {
+                    return iterator.hasNext();
+                }
+
+                @Override
+                public T next() {
+                    return iterator.next();
+                }
+
+                @Override
+                public void close() {
+                }
+            };
+        }
+
+        @Override
+        public synchronized DeleteResult remove(Query query, Class<?> entityClass) {
+            var collection = collection(entityClass);
+            var size = collection.size();
+            collection.removeIf(entity -> matches(query.getQueryObject(), entity));
+            return DeleteResult.acknowledged(size - collection.size());
+        }
+
+        @Override
+        public BulkOperations bulkOps(BulkOperations.BulkMode mode, Class<?> entityClass) {
+            return new MemoryBulk(this, entityClass);
+        }
+
+        private List<?> collection(Class<?> entityClass) {
+            return entityClass == MatchTurn.class ? turns : snapshots;
+        }
+
+        private synchronized void insert(List<MatchTurn> inserts) {
+            var errors = new ArrayList<BulkWriteError>();
+            var limit = failures > 0 ? inserts.size() / 2 : inserts.size();
+            for (var index = 0; index < limit; index++) {
+                var insert = inserts.get(index);
+                if (turns.stream().anyMatch(turn -> turn.getMatch().equals(insert.getMatch())
+                        && turn.getTurn() == insert.getTurn())) {
+                    errors.add(new BulkWriteError(11000, "duplicate key", new BsonDocument(), index));
+                } else {
+                    turns.add(insert);
+                }
+            }
+            if (failures > 0) {
+                failures--;
+                throw new DataAccessResourceFailureException("connection reset");
+            }
+            if (!errors.isEmpty()) {
+                var result = BulkWriteResult.acknowledged(inserts.size() - errors.size(), 0, 0, 0, List.of(),
+                        List.of());
+                throw new BulkOperationException("duplicate key",
+                        new MongoBulkWriteException(result, errors, null, new ServerAddress()));
+            }
+        }
+
+        private synchronized void replace(MatchSnapshot snapshot) {
+            snapshots.removeIf(existing -> existing.id.equals(snapshot.id));
+            snapshots.add(snapshot);
+        }
+
+        private static boolean matches(Document query, Object entity) {
+            for (var condition : query.entrySet()) {
+                var value = field(entity, condition.getKey());
+                var expected = condition.getValue();
+                if (expected instanceof Document) {
+                    var operator = (Document) expected;
+                    if (operator.containsKey("$in") && !((Collection<?>) operator.get("$in")).contains(value)) {
+                        return false;
+                    }
+                    if (operator.containsKey("$lt") && (Integer) value >= (Integer) operator.get("$lt")) {
+                        return false;
+                    }
+                } else if (!Objects.equals(expected, value)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        private static Object field(Object entity, String name) {
+            if (entity instanceof MatchTurn) {
+                var turn = (MatchTurn) entity;
+                return name.equals("match") ? turn.getMatch() : turn.getTurn();
+            }
+            var snapshot = (MatchSnapshot) entity;
+            return name.equals("_id") ? snapshot.id : snapshot.isFinished();
+        }
+    }
+
+    private static final class MemoryBulk implements BulkOperations {
+        private final MemoryTemplate template;
+        private final Class<?> entityClass;
+        private final List<MatchTurn> inserts = new ArrayList<>();
+        private final List<Consumer<MemoryTemplate>> operations = new ArrayList<>();
+
+        private MemoryBulk(MemoryTemplate template, Class<?> entityClass) {
+            this.template = template;
+            this.entityClass = entityClass;
+        }
+
+        @Override
+        public BulkOperations insert(Object document) {
+            inserts.add((MatchTurn) document);
+            return this;
+        }
+
+        @Override
+        public BulkOperations insert(List<?> documents) {
+            documents.forEach(this::insert);
+            return this;
+        }
+
+        @Override
+        public BulkOperations remove(Query remove) {
+            operations.add(t -> t.remove(remove, entityClass));
+            return this;
+        }
+
+        @Override
+        public BulkOperations remove(List<Query> removes) {
+            removes.forEach(this::remove);
+            return this;
+        }
+
+        @Override
+        public BulkOperations replaceOne(Query query, Object replacement, FindAndReplaceOptions options) {
+            operations.add(t -> t.replace((MatchSnapshot) replacement));
+            return this;
+        }
+
+        @Override
+        public BulkWriteResult execute() {
+            if (!inserts.isEmpty()) {
+                template.insert(inserts);
+            }
+            operations.forEach(operation -> operation.accept(template));
+            return BulkWriteResult.unacknowledged();
+        }
+
+        @Override
+        public BulkOperations updateOne(Query query, Update update) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public BulkOperations updateOne(List<Pair<Query, Update>> updates) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public BulkOperations updateMulti(Query query, Update update) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public BulkOperations updateMulti(List<Pair<Query, Update>> updates) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public BulkOperations upsert(Query query, Update update) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public BulkOperations upsert(List<Pair<Query, Update>> updates) {
+            throw new UnsupportedOperationException();
+        }
+    }
+
+    private static final class NoIndexes implements IndexOperations {
+        @Override
+        public String ensureIndex(IndexDefinition indexDefinition) {
+            return "index";
+        }
+
+        @Override
+        public void dropIndex(String name) {
+        }
+
+        @Override
+        public void dropAllIndexes() {
+        }
+
+        @Override
+        public List<IndexInfo> getIndexInfo() {
+            return List.of();
+        }
+    }
+
+    /**
+     * Only what the template needs to be constructed, any database access fails.
+     */
+    private static final class NoDatabase implements MongoDatabaseFactory {
+        @Override
+        public MongoDatabase getMongoDatabase() {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public MongoDatabase getMongoDatabase(String dbName) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public PersistenceExceptionTranslator getExceptionTranslator() {
+            return new MongoExceptionTranslator();
+        }
+
+        @Override
+        public ClientSession getSession(ClientSessionOptions options) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public MongoDatabaseFactory withSession(ClientSession session) {
+            throw new UnsupportedOperationException();
+        }
+    }
+}
@@ -0,0 +1,92 @@
+package ch.zxseitz.tbsg.security;
+
+import ch.zxseitz.tbsg.model.RoleSet;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.bson.types.ObjectId;
+import org.junit.jupiter.api.Test;
+
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class JwtCacheTest {
+    @Test
+    void returnsCachedUsersAndNullOnMiss() {
+        var cache = new JwtCache(100, new SimpleMeterRegistry());
+        var user = user();
+        assertNull(cache.get("header.payload.signature"));
+        cache.put("header.payload.signature", System.currentTimeMillis() + 60000, user);
+        assertSame(user, cache.get("header.payload.signature"));
+        assertEquals(1, cache.getHits());
+        assertEquals(1, cache.getMisses());
+    }
+
+    @Test
+    void comparesTheWholeToken() {
+        var cache = new JwtCache(100, new SimpleMeterRegistry());
+        cache.put("header.payload.signature", System.currentTimeMillis() + 60000, user());
+        // same digest, the payload was tampered with
+        assertNull(cache.get("header.forged.signature"));
+        assertEquals(1, cache.getMisses());
+    }
+
+    @Test
+    void expiresWithTheToken() {
+        var cache = new JwtCache(100, new SimpleMeterRegistry());
+        cache.put("header.payload.signature", System.currentTimeMillis() - 1, user());
+        assertNull(cache.get("header.payload.signature"));
+        assertEquals(0, cache.size());
+    }
+
+    @Test
+    void evictsExpiredTokensFirstWhenFull() {
+        var cache = new JwtCache(8, new SimpleMeterRegistry());
+        var now = System.currentTimeMillis();
+        for (var i = 0; i < 4; i++) {
+            cache.put("header.payload.expired" + i, now - 1, user());
+            cache.put("header.payload.valid" + i, now + 60000, user());
+        }
+        assertEquals(8, cache.size());
+        cache.put("header.payload.new", now + 60000, user());
+        assertEquals(5, cache.size());
+        for (var i = 0; i < 4; i++) {
+            assertNotNull(cache.get("header.payload.valid" + i));
+        }
+        assertNotNull(cache.get("header.payload.new"));
+    }
+
+    @Test
+    void staysBoundedWithoutExpiredTokens() {
+        var cache = new JwtCache(8, new SimpleMeterRegistry());
+        for (var i = 0; i < 100; i++) {
+            cache.put("header.payload.signature" + i, System.currentTimeMillis() + 60000, user());
+            assertTrue(cache.size() <= 8);
+        }
+    }
+
+    @Test
+    void maxSizeZeroDisablesTheCache() {
+        var cache = new JwtCache(0, new SimpleMeterRegistry());
+        cache.put("header.payload.signature", System.currentTimeMillis() + 60000, user());
+        assertEquals(0, cache.size());
+        assertNull(cache.get("header.payload.signature"));
+    }
+
+    @Test
+    void invalidatesTheTokensOfAUser() {
+        var cache = new JwtCache(100, new SimpleMeterRegistry());
+        var user = user();
+        var other = user();
+        cache.put("header.payload.first", System.currentTimeMillis() + 60000, user);
+        cache.put("header.payload.second", System.currentTimeMillis() + 60000, user);
+        cache.put("header.payload.other", System.currentTimeMillis() + 60000, other);
+        cache.invalidate(user.getKey());
+        assertNull(cache.get("header.payload.first"));
+        assertNull(cache.get("header.payload.second"));
+        assertSame(other, cache.get("header.payload.other"));
+    }
+
+    private static Map.Entry<ObjectId, RoleSet> user() {
+        return Map.entry(ObjectId.get(), RoleSet.of(0));
+    }
+}
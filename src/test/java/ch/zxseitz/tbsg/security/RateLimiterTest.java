@@ -0,0 +1,79 @@
+package ch.zxseitz.tbsg.security;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RateLimiterTest {
+    private static final long SECOND = 1_000_000_000L;
+
+    private final AtomicLong now = new AtomicLong(42 * SECOND);
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+
+    @Test
+    void grantsBurstThenRefillsAtRate() {
+        var limiter = new RateLimiter("test", 2, 3, 10, registry, now::get);
+        for (var i = 0; i < 3; i++) {
+            assertEquals(0, limiter.acquire("a"));
+        }
+        var wait = limiter.acquire("a");
+        assertEquals(SECOND / 2, wait);
+        assertEquals(1, RateLimiter.toSeconds(wait));
+        assertEquals(0, limiter.acquire("b"));
+
+        now.addAndGet(SECOND / 2);
+        assertEquals(0, limiter.acquire("a"));
+        assertTrue(limiter.acquire("a") > 0);
+        assertEquals(2, registry.counter("tbsg.ratelimit.rejected", "limiter", "test").count());
+    }
+
+    @Test
+    void sweepsIdleKeysAndFallsBackToOverflow() {
+        var limiter = new RateLimiter("test", 1, 1, 2, registry, now::get);
+        assertEquals(0, limiter.acquire("a"));
+        assertEquals(0, limiter.acquire("b"));
+        // both buckets are still draining, new keys fall back to their overflow bucket
+        assertEquals(0, limiter.acquire("c"));
+        assertTrue(limiter.acquire("c") > 0);
+        assertEquals(2, limiter.size());
+
+        now.addAndGet(2 * SECOND);
+        assertEquals(0, limiter.acquire("e"));
+        assertEquals(1, limiter.size());
+    }
+
+    @Test
+    void overflowKeysDoNotShareOneBucket() {
+        var limiter = new RateLimiter("test", 1, 1, 1, registry, now::get);
+        assertEquals(0, limiter.acquire("a"));
+        var granted = 0;
+        for (var i = 0; i < 1000; i++) {
+            if (limiter.acquire("k" + i) == 0) {
+                granted++;
+            }
+        }
+        // one permit per overflow bucket
+        assertEquals(64, granted);
+        assertEquals(1, limiter.size());
+    }
+
+    @Test
+    void releaseReturnsAPermit() {
+        var limiter = new RateLimiter("test", 1, 2, 10, registry, now::get);
+        assertEquals(0, limiter.acquire("a"));
+        assertEquals(0, limiter.acquire("a"));
+        limiter.release("a");
+        assertEquals(0, limiter.acquire("a"));
+        assertTrue(limiter.acquire("a") > 0);
+
+        // a full bucket does not grow beyond its burst
+        limiter.release("b");
+        limiter.release("b");
+        assertEquals(0, limiter.acquire("b"));
+        assertEquals(0, limiter.acquire("b"));
+        assertTrue(limiter.acquire("b") > 0);
+    }
+}
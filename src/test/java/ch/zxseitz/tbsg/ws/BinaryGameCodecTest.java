@@ -0,0 +1,87 @@
+package ch.zxseitz.tbsg.ws;
+
+import ch.zxseitz.tbsg.game.GameMessage;
+import ch.zxseitz.tbsg.game.othello.Board;
+import org.bson.types.ObjectId;
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class BinaryGameCodecTest {
+    @Test
+    void roundTrip() {
+        var match = ObjectId.get();
+        var message = new GameMessage(GameMessage.Type.TURN, match, 7, 1, -1, 120, "hello");
+        var decoded = BinaryGameCodec.decode(BinaryGameCodec.encode(message));
+        assertEquals(GameMessage.Type.TURN, decoded.getType());
+        assertEquals(match, decoded.getMatch());
+        assertEquals(7, decoded.getTurn());
+        assertEquals(1, decoded.getPlayer());
+        assertEquals(-1, decoded.getMove());
+        assertEquals(120, decoded.getLatency());
+        assertEquals("hello", decoded.getMessage());
+    }
+
+    @Test
+    void roundTripWithBoard() {
+        var board = Board.initial().snapshot();
+        var message = new GameMessage(GameMessage.Type.STATE, ObjectId.get(), 3, 0, -1, 0, "state",
+                0x8000000000000001L, board);
+        var frame = new GameFrame();
+        assertTrue(frame.wrap(BinaryGameCodec.encode(message)));
+        assertEquals(0x8000000000000001L, frame.flips());
+        assertEquals(board, frame.board());
+        assertEquals(board.getDiscs(1), frame.discs(1));
+        assertEquals("state", frame.text());
+    }
+
+    @Test
+    void roundTripWithoutOptionalFields() {
+        var buffer = BinaryGameCodec.encode(GameMessage.queued());
+        assertEquals(BinaryGameCodec.FIXED_LENGTH, buffer.remaining());
+        var frame = new GameFrame();
+        assertTrue(frame.wrap(buffer));
+        assertEquals(GameMessage.Type.QUEUE, frame.type());
+        assertNull(frame.match());
+        assertNull(frame.board());
+        assertNull(frame.text());
+    }
+
+    @Test
+    void truncatesTextAtCharacterBoundary() {
+        var text = "a".repeat(BinaryGameCodec.MAX_TEXT_LENGTH - 1) + "\u00e9\u00e9";
+        var decoded = BinaryGameCodec.decode(BinaryGameCodec.encode(GameMessage.error(null, text)));
+        assertEquals("a".repeat(BinaryGameCodec.MAX_TEXT_LENGTH - 1), decoded.getMessage());
+
+        // a four byte character ending exactly at the limit is kept
+        text = "a".repeat(BinaryGameCodec.MAX_TEXT_LENGTH - 4) + "\ud83d\ude00" + "a";
+        decoded = BinaryGameCodec.decode(BinaryGameCodec.encode(GameMessage.error(null, text)));
+        assertEquals(text.substring(0, text.length() - 1), decoded.getMessage());
+    }
+
+    @Test
+    void appendsNewTypeCodes() {
+        // codes of released types must never change
+        assertEquals(6, BinaryGameCodec.code(GameMessage.Type.LEAVE));
+        assertEquals(7, BinaryGameCodec.code(GameMessage.Type.HINT));
+        var decoded = BinaryGameCodec.decode(BinaryGameCodec.encode(GameMessage.hint(ObjectId.get(), 4, 1, 19)));
+        assertEquals(GameMessage.Type.HINT, decoded.getType());
+        assertEquals(19, decoded.getMove());
+    }
+
+    @Test
+    void rejectsInvalidFrames() {
+        var frame = new GameFrame();
+        assertFalse(frame.wrap(ByteBuffer.allocate(3)));
+
+        var truncated = BinaryGameCodec.encode(GameMessage.error(null, "error"));
+        truncated.limit(truncated.limit() - 1);
+        assertFalse(frame.wrap(truncated));
+
+        var wrongVersion = BinaryGameCodec.encode(GameMessage.queued());
+        wrongVersion.put(BinaryGameCodec.VERSION_OFFSET, (byte) 99);
+        assertFalse(frame.wrap(wrongVersion));
+    }
+}